@@ -0,0 +1,72 @@
+package qrcode.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import reedsolomon.ErrorCorrectionEncoding;
+
+/**
+ * Reed-Solomon encoding of many short messages with the same number of error correction
+ * codewords: one message at a time, and 8 messages at a time in the bytes of a long
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class BatchEncodingBenchmark {
+
+	private static final int COUNT = 1024;
+
+	@Param({ "19", "55" })
+	public int length;
+
+	@Param({ "7", "22" })
+	public int eccLength;
+
+	/*
+	 * The same messages, one after the other and as a structure of arrays
+	 */
+	private int[] messages;
+	private byte[] batch;
+	private int[] result;
+	private byte[] batchResult;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(39);
+		messages = new int[COUNT * length];
+		batch = new byte[COUNT * length];
+		for (int m = 0; m < COUNT; ++m) {
+			for (int i = 0; i < length; ++i) {
+				int value = random.nextInt(256);
+				messages[m * length + i] = value;
+				batch[i * COUNT + m] = (byte) value;
+			}
+		}
+		result = new int[COUNT * eccLength];
+		batchResult = new byte[COUNT * eccLength];
+	}
+
+	@Benchmark
+	public int[] oneByOne() {
+		for (int m = 0; m < COUNT; ++m) {
+			ErrorCorrectionEncoding.encode(messages, m * length, length, eccLength, result, m * eccLength, 1);
+		}
+		return result;
+	}
+
+	@Benchmark
+	public byte[] batch() {
+		ErrorCorrectionEncoding.encodeBatch(batch, COUNT, length, eccLength, batchResult);
+		return batchResult;
+	}
+
+}
@@ -0,0 +1,132 @@
+package qrcode.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import qrcode.QRCodeInfos;
+import qrcode.QRCodeInfos.CorrectionLvl;
+import reedsolomon.ErrorCorrectionDecoding;
+import reedsolomon.ErrorCorrectionEncoding;
+
+/**
+ * Recovery throughput of the Reed-Solomon decoder: the blocks of a QR code damaged up to a
+ * percentage of what their error correction codewords can repair, corrected by one decoder
+ * reused for every block. The damage is split between erasures and unknown errors, or made
+ * of unknown errors only. The damaged blocks are copied back before each correction, which
+ * is also measured (see copy).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class DecodingBenchmark {
+
+	@Param({ "10", "40" })
+	public int version;
+
+	@Param({ "L", "H" })
+	public CorrectionLvl level;
+
+	/*
+	 * Damage of each block, in percent of its error correction codewords: an unknown error
+	 * counts twice, an erasure once
+	 */
+	@Param({ "0", "50", "100" })
+	public int damage;
+
+	private int eccLength;
+	private ErrorCorrectionDecoding decoder;
+
+	private int[][] mixed;
+	private int[][] erasures;
+	private int[][] errors;
+
+	private int[][] blocks;
+	private int[] corrected;
+
+	@Setup
+	public void setUp() {
+		eccLength = QRCodeInfos.getECCLength(version, level);
+		final int BLOCKS = QRCodeInfos.getBlockCount(version, level);
+		final int DATA_LENGTH = QRCodeInfos.getCodeWordsLength(version, level) / BLOCKS;
+		final int BUDGET = eccLength * damage / 100;
+		final int ERASURES = BUDGET / 2;
+		Random random = new Random(version * 100 + damage);
+
+		decoder = new ErrorCorrectionDecoding(eccLength);
+		mixed = new int[BLOCKS][];
+		erasures = new int[BLOCKS][];
+		errors = new int[BLOCKS][];
+		blocks = new int[BLOCKS][];
+		corrected = new int[BLOCKS];
+		for (int i = 0; i < BLOCKS; ++i) {
+			int[] block = block(random, DATA_LENGTH);
+			mixed[i] = block.clone();
+			int[] positions = damage(random, mixed[i], ERASURES + (BUDGET - ERASURES) / 2);
+			erasures[i] = new int[ERASURES];
+			System.arraycopy(positions, 0, erasures[i], 0, ERASURES);
+			errors[i] = block.clone();
+			damage(random, errors[i], BUDGET / 2);
+			blocks[i] = new int[block.length];
+		}
+	}
+
+	private int[] block(Random random, int dataLength) {
+		int[] block = new int[dataLength + eccLength];
+		for (int i = 0; i < dataLength; ++i) {
+			block[i] = random.nextInt(256);
+		}
+		System.arraycopy(ErrorCorrectionEncoding.encode(block.clone(), eccLength), 0, block, dataLength, eccLength);
+		return block;
+	}
+
+	/*
+	 * Replace count distinct codewords, returning their indices
+	 */
+	private static int[] damage(Random random, int[] block, int count) {
+		boolean[] used = new boolean[block.length];
+		int[] positions = new int[count];
+		for (int i = 0; i < count;) {
+			int position = random.nextInt(block.length);
+			if (!used[position]) {
+				used[position] = true;
+				block[position] ^= 1 + random.nextInt(255);
+				positions[i++] = position;
+			}
+		}
+		return positions;
+	}
+
+	private static void copy(int[][] from, int[][] to) {
+		for (int i = 0; i < from.length; ++i) {
+			System.arraycopy(from[i], 0, to[i], 0, from[i].length);
+		}
+	}
+
+	@Benchmark
+	public int[][] copy() {
+		copy(mixed, blocks);
+		return blocks;
+	}
+
+	@Benchmark
+	public int correctAllMixed() {
+		copy(mixed, blocks);
+		return decoder.correctAll(blocks, eccLength, erasures, corrected);
+	}
+
+	@Benchmark
+	public int correctAllErrors() {
+		copy(errors, blocks);
+		return decoder.correctAll(blocks, eccLength, corrected);
+	}
+
+}
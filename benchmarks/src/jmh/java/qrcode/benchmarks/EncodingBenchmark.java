@@ -0,0 +1,38 @@
+package qrcode.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import qrcode.DataEncoding;
+import qrcode.QREncoder;
+import reedsolomon.ErrorCorrectionEncoding;
+
+/**
+ * Data encoding stages: byte mode encoding with error correction (through the static API,
+ * and with the encoder of the thread which should not allocate), and Reed-Solomon
+ * encoding of a single block
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EncodingBenchmark {
+
+	@Benchmark
+	public boolean[] byteModeEncoding(PipelineState state) {
+		return DataEncoding.byteModeEncoding(state.input, state.version, state.level);
+	}
+
+	@Benchmark
+	public boolean[] encoder(PipelineState state) {
+		return QREncoder.get().encode(state.input, state.version, state.level);
+	}
+
+	@Benchmark
+	public int[] errorCorrectionEncoding(PipelineState state) {
+		return ErrorCorrectionEncoding.encode(state.block, state.eccLength);
+	}
+
+}
@@ -0,0 +1,101 @@
+package qrcode.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import qrcode.BitmapWriter;
+import qrcode.DataEncoding;
+import qrcode.Helpers;
+import qrcode.MatrixConstruction;
+import qrcode.PngWriter;
+import qrcode.Rasterizer;
+
+/**
+ * PNG output through Helpers.writeMatrix, which writes in the images directory of the
+ * working directory, and streamed to memory by PngWriter and BitmapWriter; scaling into an image as Helpers
+ * does for display
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class ImageBenchmark {
+
+	private static final String NAME = "benchmark";
+	private static final PngWriter FASTEST = new PngWriter(10, 4, Deflater.BEST_SPEED);
+	private static final PngWriter DEFAULT = new PngWriter(10, 4, Deflater.DEFAULT_COMPRESSION);
+	private static final BitmapWriter PBM = new BitmapWriter(BitmapWriter.Format.PBM, 10, 4);
+
+	private final ByteArrayOutputStream stream = new ByteArrayOutputStream(1 << 20);
+
+	@Param({ "1", "10", "25", "40" })
+	public int version;
+
+	private int[][] matrix;
+	private File file;
+	private boolean createdDirectory;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		boolean[] data = DataEncoding.byteModeEncoding("Programming is a skill best acquired by practice.", version);
+		matrix = MatrixConstruction.renderQRCodeMatrix(version, data, 0);
+
+		File directory = new File(System.getProperty("user.dir"), "images");
+		createdDirectory = directory.mkdirs();
+		file = new File(directory, NAME + ".png");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		file.delete();
+		if (createdDirectory) {
+			file.getParentFile().delete();
+		}
+	}
+
+	@Benchmark
+	public void writeMatrix() {
+		Helpers.writeMatrix(NAME, matrix);
+	}
+
+	/*
+	 * Streaming to memory, scaled with the quiet zone, at the fastest and default levels
+	 */
+	@Benchmark
+	public long streamFastest() throws IOException {
+		stream.reset();
+		return FASTEST.write(matrix, stream);
+	}
+
+	@Benchmark
+	public long streamDefault() throws IOException {
+		stream.reset();
+		return DEFAULT.write(matrix, stream);
+	}
+
+	@Benchmark
+	public long streamPbm() throws IOException {
+		stream.reset();
+		return PBM.write(matrix, stream);
+	}
+
+	@Benchmark
+	public BufferedImage rasterize() {
+		return Rasterizer.toImage(matrix, 10, 40);
+	}
+
+}
@@ -0,0 +1,112 @@
+package qrcode.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import qrcode.DataEncoding;
+import qrcode.MaskDecision;
+import qrcode.MaskHintCache;
+import qrcode.MatrixConstruction;
+import qrcode.PackedPenaltyScorer;
+import qrcode.PenaltyScorer;
+import qrcode.QRCodeInfos;
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+/**
+ * Scalar (on the matrix and on a row-major buffer) and bit-packed penalty scores, alone and
+ * in the whole mask search (the scalar search running in a JVM where qrcode.scalarMaskSearch
+ * is set), and the rendering with a mask decision given as a hint or cached
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class MaskSearchBenchmark {
+
+	@Param({ "10", "25", "40" })
+	public int version;
+
+	private boolean[] data;
+	private int[][] matrix;
+	private byte[] modules;
+	private MaskDecision decision;
+	private final MaskHintCache cache = new MaskHintCache(16);
+
+	@Setup
+	public void setUp() {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < QRCodeInfos.getMaxInputLength(version, CorrectionLvl.M); ++i) {
+			builder.append((char) (' ' + i % 95));
+		}
+		data = DataEncoding.byteModeEncoding(builder.toString(), version, CorrectionLvl.M);
+		matrix = MatrixConstruction.renderQRCodeMatrix(version, data, version % 8, CorrectionLvl.M);
+		modules = MatrixConstruction.toModules(matrix);
+		decision = MatrixConstruction.decideMasking(version, data, CorrectionLvl.M);
+	}
+
+	@Benchmark
+	public int scalarEvaluate() {
+		return PenaltyScorer.forVersion(version).evaluate(matrix);
+	}
+
+	@Benchmark
+	public int flatEvaluate() {
+		return MatrixConstruction.evaluate(modules);
+	}
+
+	@Benchmark
+	public int packedEvaluate() {
+		return PackedPenaltyScorer.forVersion(version).evaluate(matrix);
+	}
+
+	@Benchmark
+	public int[] packedEvaluateMasks() {
+		return PackedPenaltyScorer.forVersion(version).evaluateMasks(data, CorrectionLvl.M);
+	}
+
+	@Benchmark
+	@Fork(jvmArgsAppend = "-Dqrcode.scalarMaskSearch=true")
+	public int[][] scalarMaskSearch() {
+		return MatrixConstruction.renderQRCodeMatrix(version, data, CorrectionLvl.M);
+	}
+
+	@Benchmark
+	public int[][] packedMaskSearch() {
+		return MatrixConstruction.renderQRCodeMatrix(version, data, CorrectionLvl.M);
+	}
+
+	@Benchmark
+	@Fork(jvmArgsAppend = "-Dqrcode.scalarMaskSearch=true")
+	public byte[] flatScalarMaskSearch() {
+		return MatrixConstruction.renderQRCodeModules(version, data, CorrectionLvl.M);
+	}
+
+	@Benchmark
+	public byte[] flatMaskSearch() {
+		return MatrixConstruction.renderQRCodeModules(version, data, CorrectionLvl.M);
+	}
+
+	@Benchmark
+	public int[][] hintedMask() {
+		return MatrixConstruction.renderQRCodeMatrix(version, data, CorrectionLvl.M, decision, false);
+	}
+
+	@Benchmark
+	public int[][] verifiedHintedMask() {
+		return MatrixConstruction.renderQRCodeMatrix(version, data, CorrectionLvl.M, decision, true);
+	}
+
+	@Benchmark
+	public int[][] cachedMask() {
+		return MatrixConstruction.renderQRCodeMatrix(version, data, CorrectionLvl.M, cache);
+	}
+
+}
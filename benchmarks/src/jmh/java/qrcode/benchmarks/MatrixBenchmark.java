@@ -0,0 +1,69 @@
+package qrcode.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import qrcode.MatrixConstruction;
+import qrcode.PenaltyScorer;
+import qrcode.QRCodeDecoder;
+
+/**
+ * Matrix stages: function patterns, data placement, penalty score (generic and per
+ * version), mask search and decoding of the rendered QR code
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MatrixBenchmark {
+
+	@Benchmark
+	public int[][] constructMatrix(PipelineState state) {
+		return MatrixConstruction.constructMatrix(state.version, state.mask, state.level);
+	}
+
+	/*
+	 * addDataInformation only fills the empty modules: the function patterns are copied
+	 * first, which is also measured
+	 */
+	@Benchmark
+	public int[][] addDataInformation(PipelineState state) {
+		int[][] matrix = new int[state.template.length][];
+		for (int col = 0; col < matrix.length; ++col) {
+			matrix[col] = state.template[col].clone();
+		}
+		MatrixConstruction.addDataInformation(matrix, state.data, state.mask);
+		return matrix;
+	}
+
+	@Benchmark
+	public int evaluate(PipelineState state) {
+		return MatrixConstruction.evaluate(state.matrix);
+	}
+
+	@Benchmark
+	public int penaltyScorer(PipelineState state) {
+		return PenaltyScorer.forVersion(state.version).evaluate(state.matrix);
+	}
+
+	@Benchmark
+	public int findBestMasking(PipelineState state) {
+		return MatrixConstruction.findBestMasking(state.version, state.data, state.level);
+	}
+
+	@Benchmark
+	public int[][] renderBestMask(PipelineState state) {
+		return MatrixConstruction.renderQRCodeMatrix(state.version, state.data, state.level);
+	}
+
+	/*
+	 * Verification cost, to be compared with renderBestMask
+	 */
+	@Benchmark
+	public String decode(PipelineState state) {
+		return QRCodeDecoder.decode(state.matrix);
+	}
+
+}
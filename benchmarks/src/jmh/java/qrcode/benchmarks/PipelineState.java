@@ -0,0 +1,67 @@
+package qrcode.benchmarks;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import qrcode.DataEncoding;
+import qrcode.MatrixConstruction;
+import qrcode.QRCodeInfos;
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+/**
+ * Inputs of every stage of the generation pipeline, for a version, a correction level and
+ * a payload given as a percentage of the capacity of the version
+ */
+@State(Scope.Thread)
+public class PipelineState {
+
+	@Param({ "1", "10", "25", "40" })
+	public int version;
+
+	@Param({ "L", "H" })
+	public CorrectionLvl level;
+
+	@Param({ "10", "100" })
+	public int payload;
+
+	public String input;
+	public int mask;
+
+	/*
+	 * First block of data codewords and its number of error correction codewords
+	 */
+	public int[] block;
+	public int eccLength;
+
+	public boolean[] data;
+
+	/*
+	 * Matrix with the function patterns only, and the complete QR code
+	 */
+	public int[][] template;
+	public int[][] matrix;
+
+	@Setup
+	public void setUp() {
+		int length = Math.max(1, QRCodeInfos.getMaxInputLength(version, level) * payload / 100);
+		StringBuilder builder = new StringBuilder(length);
+		for (int i = 0; i < length; ++i) {
+			builder.append((char) (' ' + i % 95));
+		}
+		input = builder.toString();
+		mask = version % 8;
+
+		eccLength = QRCodeInfos.getECCLength(version, level);
+		block = new int[QRCodeInfos.getCodeWordsLength(version, level) / QRCodeInfos.getBlockCount(version, level)];
+		for (int i = 0; i < block.length; ++i) {
+			block[i] = (i * 31 + 7) & 0xFF;
+		}
+
+		data = DataEncoding.byteModeEncoding(input, version, level);
+		template = MatrixConstruction.constructMatrix(version, mask, level);
+		matrix = MatrixConstruction.renderQRCodeMatrix(version, data, mask, level);
+	}
+
+}
@@ -0,0 +1,427 @@
+package qrcode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Batch output of many QR codes in a single ZIP or TAR archive instead of one file each.
+ * The images are encoded by the threads calling submit, in parallel, then handed through a
+ * bounded queue to a single writer thread which appends them to the archive in the order
+ * they were queued. A sink can be shared by several threads.
+ */
+public final class ArchiveSink implements AutoCloseable {
+
+	/**
+	 * Archive formats
+	 */
+	public enum Format {
+		/** ZIP archive, with stored (not compressed again) entries for deflated images */
+		ZIP,
+		/** POSIX ustar archive */
+		TAR
+	}
+
+	private static final int TAR_BLOCK = 512;
+	private static final int TAR_NAME_LEN = 100;
+
+	/*
+	 * Entry queued after the last one by close
+	 */
+	private static final Entry END = new Entry(null, null, 0);
+
+	/*
+	 * Time between two checks of the writer thread while the queue is full
+	 */
+	private static final long PUT_TIMEOUT_MILLIS = 100;
+
+	private final Format format;
+	private final String nameTemplate;
+	private final PngWriter writer;
+	private final BlockingQueue<Entry> queue;
+	private final AtomicLong submitted = new AtomicLong();
+	private final LongAdder imageBytes = new LongAdder();
+	private final Thread writerThread;
+
+	private final OutputStream out;
+	private final ZipOutputStream zip;
+
+	/*
+	 * First error of the writer thread, reported to the next submit and to close
+	 */
+	private volatile IOException failure;
+	private volatile boolean closed;
+
+	/*
+	 * Held by the threads queuing an image (read) and by close queuing END (write), so that
+	 * no image is queued after END
+	 */
+	private final ReadWriteLock closing = new ReentrantReadWriteLock();
+
+	/**
+	 * Create a sink and start its writer thread
+	 *
+	 * @param out
+	 *            the stream receiving the archive, closed by close
+	 * @param format
+	 *            the archive format
+	 * @param nameTemplate
+	 *            the name of the entries, as a String.format pattern given the index of the
+	 *            entry, e.g. "qrcode_%06d.png"
+	 * @param writer
+	 *            the PNG writer of the images
+	 * @param queueCapacity
+	 *            the number of encoded images waiting to be written before submit blocks
+	 */
+	public ArchiveSink(OutputStream out, Format format, String nameTemplate, PngWriter writer, int queueCapacity) {
+		if (queueCapacity < 1)
+		  {
+			throw new IllegalArgumentException("The queue capacity has to be at least 1");
+		  }
+		this.out = out;
+		this.format = format;
+		this.nameTemplate = nameTemplate;
+		this.writer = writer;
+		queue = new ArrayBlockingQueue<>(queueCapacity);
+		zip = (format == Format.ZIP) ? new ZipOutputStream(out) : null;
+
+		writerThread = new Thread(this::writeEntries, "archive-writer");
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	/**
+	 * Encode a QR code and queue it, its entry being named after the template with the
+	 * number of QR codes submitted before it
+	 *
+	 * @param matrix
+	 *            the QR code
+	 * @return the name of the entry
+	 * @throws IOException
+	 *             if the archive could not be written, or if the thread is interrupted
+	 *             while waiting for the queue
+	 */
+	public String submit(int[][] matrix) throws IOException {
+		return submit(String.format(Locale.ROOT, nameTemplate, submitted.getAndIncrement()), matrix);
+	}
+
+	/**
+	 * Encode a QR code and queue it under the given entry name
+	 *
+	 * @param name
+	 *            the name of the entry in the archive
+	 * @param matrix
+	 *            the QR code
+	 * @return the name of the entry
+	 * @throws IOException
+	 *             if the archive could not be written, or if the thread is interrupted
+	 *             while waiting for the queue
+	 */
+	public String submit(String name, int[][] matrix) throws IOException {
+		checkOpen();
+		checkFailure();
+		Image image = new Image();
+		writer.write(matrix, image);
+
+		closing.readLock().lock();
+		try
+		  {
+			//close may have queued END while the image was encoded
+			checkOpen();
+			put(new Entry(name, image.buffer(), image.size()));
+		  }
+		finally
+		  {
+			closing.readLock().unlock();
+		  }
+		imageBytes.add(image.size());
+		return name;
+	}
+
+	/**
+	 * @return the total size of the images submitted, without the archive headers
+	 */
+	public long getImageBytes() {
+		return imageBytes.sum();
+	}
+
+	/**
+	 * Write the queued entries, end the archive and close the stream
+	 *
+	 * @throws IOException
+	 *             if the archive could not be written
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed)
+		  {
+			return;
+		  }
+		closing.writeLock().lock();
+		try
+		  {
+			closed = true;
+			put(END);
+		  }
+		catch (IOException e)
+		  {
+			//the writer thread is dead: the stream is already closed
+		  }
+		finally
+		  {
+			closing.writeLock().unlock();
+		  }
+		try
+		  {
+			writerThread.join();
+		  }
+		catch (InterruptedException e)
+		  {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while writing the archive");
+		  }
+		checkFailure();
+	}
+
+	private void checkOpen() {
+		if (closed)
+		  {
+			throw new IllegalStateException("The archive is closed");
+		  }
+	}
+
+	/**
+	 * Queue an entry, unless the writer thread stops while the queue is full
+	 */
+	private void put(Entry entry) throws IOException {
+		try
+		  {
+			while (!queue.offer(entry, PUT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
+			  {
+				if (!writerThread.isAlive())
+				  {
+					checkFailure();
+					throw new IOException("The archive writer has stopped");
+				  }
+			  }
+		  }
+		catch (InterruptedException e)
+		  {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while queuing an entry");
+		  }
+	}
+
+	private void checkFailure() throws IOException {
+		IOException error = failure;
+		if (error != null)
+		  {
+			throw new IOException("The archive could not be written", error);
+		  }
+	}
+
+	/**
+	 * Loop of the writer thread. After an error, the entries are only dequeued so that the
+	 * submitting threads are not blocked. An error the loop cannot go past (e.g. thrown while
+	 * ending the archive) closes the stream and stops the thread, submit and close then
+	 * report it instead of waiting for the queue.
+	 */
+	private void writeEntries() {
+		try
+		  {
+			Entry entry;
+			while ((entry = queue.take()) != END)
+			  {
+				if (failure != null)
+				  {
+					continue;
+				  }
+				try
+				  {
+					writeEntry(entry);
+				  }
+				catch (IOException | RuntimeException e)
+				  {
+					fail(e);
+				  }
+			  }
+			finish();
+		  }
+		catch (InterruptedException e)
+		  {
+			fail(new InterruptedIOException("The archive writer was interrupted"));
+			closeQuietly();
+		  }
+		catch (Throwable e)
+		  {
+			fail(e);
+			closeQuietly();
+		  }
+	}
+
+	/**
+	 * Record the first error of the writer thread
+	 */
+	private void fail(Throwable error) {
+		if (failure == null)
+		  {
+			failure = (error instanceof IOException) ? (IOException) error
+					: new IOException("The archive writer failed", error);
+		  }
+	}
+
+	private void closeQuietly() {
+		try
+		  {
+			((zip != null) ? zip : out).close();
+		  }
+		catch (IOException | RuntimeException e)
+		  {
+			//the archive is already reported as failed
+		  }
+	}
+
+	private void writeEntry(Entry entry) throws IOException {
+		if (format == Format.ZIP)
+		  {
+			ZipEntry zipEntry = new ZipEntry(entry.name);
+			//a PNG without compression still gains from a deflated entry
+			if (writer.getCompressionLevel() == 0)
+			  {
+				zipEntry.setMethod(ZipEntry.DEFLATED);
+			  }
+			else
+			  {
+				CRC32 crc = new CRC32();
+				crc.update(entry.bytes, 0, entry.length);
+				zipEntry.setMethod(ZipEntry.STORED);
+				zipEntry.setSize(entry.length);
+				zipEntry.setCompressedSize(entry.length);
+				zipEntry.setCrc(crc.getValue());
+			  }
+			zip.putNextEntry(zipEntry);
+			zip.write(entry.bytes, 0, entry.length);
+			zip.closeEntry();
+		  }
+		else
+		  {
+			out.write(tarHeader(entry.name, entry.length));
+			out.write(entry.bytes, 0, entry.length);
+			int padding = (TAR_BLOCK - entry.length % TAR_BLOCK) % TAR_BLOCK;
+			out.write(new byte[padding]);
+		  }
+
+		PipelineListener listener = PipelineMetrics.getListener();
+		if (listener != null)
+		  {
+			listener.imageWritten(entry.name, entry.length);
+		  }
+	}
+
+	private void finish() throws IOException {
+		if (format == Format.ZIP)
+		  {
+			if (failure == null)
+			  {
+				zip.finish();
+			  }
+			zip.close();
+		  }
+		else
+		  {
+			try
+			  {
+				if (failure == null)
+				  {
+					//end of archive: two empty blocks
+					out.write(new byte[2*TAR_BLOCK]);
+				  }
+			  }
+			finally
+			  {
+				out.close();
+			  }
+		  }
+	}
+
+	/**
+	 * ustar header of a regular file
+	 */
+	private static byte[] tarHeader(String name, int size) throws IOException {
+		byte[] header = new byte[TAR_BLOCK];
+		byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		if (nameBytes.length > TAR_NAME_LEN)
+		  {
+			throw new IOException("The entry name '"+name+"' is longer than "+TAR_NAME_LEN+" bytes");
+		  }
+		System.arraycopy(nameBytes, 0, header, 0, nameBytes.length);
+		putOctal(header, 100, 8, 0644);                                     //mode
+		putOctal(header, 108, 8, 0);                                        //owner
+		putOctal(header, 116, 8, 0);                                        //group
+		putOctal(header, 124, 12, size);
+		putOctal(header, 136, 12, System.currentTimeMillis() / 1000);       //modification time
+		header[156] = '0';                                                  //regular file
+		System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+
+		//the checksum is computed with its own field made of spaces
+		Arrays.fill(header, 148, 156, (byte) ' ');
+		int checksum = 0;
+		for (byte b : header)
+		  {
+			checksum += b & 0xFF;
+		  }
+		putOctal(header, 148, 7, checksum);
+		return header;
+	}
+
+	/**
+	 * Write a number as length-1 octal digits followed by a NUL
+	 */
+	private static void putOctal(byte[] header, int offset, int length, long value) {
+		for (int i = offset + length - 2; i >= offset; --i)
+		  {
+			header[i] = (byte) ('0' + (value & 7));
+			value >>>= 3;
+		  }
+		header[offset + length - 1] = 0;
+	}
+
+	/**
+	 * Encoded image waiting to be written
+	 */
+	private static final class Entry {
+		private final String name;
+		private final byte[] bytes;
+		private final int length;
+
+		private Entry(String name, byte[] bytes, int length) {
+			this.name = name;
+			this.bytes = bytes;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * Stream giving access to its buffer, to queue an image without copying it
+	 */
+	private static final class Image extends ByteArrayOutputStream {
+		private byte[] buffer() {
+			return buf;
+		}
+	}
+
+}
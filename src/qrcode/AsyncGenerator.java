@@ -0,0 +1,171 @@
+package qrcode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+/**
+ * Non blocking generation of QR codes on an executor. Every request gives a
+ * CompletableFuture of the matrix, failed with a TimeoutException when its deadline passes,
+ * even if it is still waiting for a thread. A request which is cancelled or times out stops
+ * at its next checkpoint: between the stages of the pipeline (version choice, encoding,
+ * mask search) and between two masks of the search.
+ */
+public final class AsyncGenerator {
+
+	/*
+	 * Thread failing the futures at their deadline
+	 */
+	private static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1, runnable -> {
+		Thread thread = new Thread(runnable, "qrcode-deadlines");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	static {
+		TIMER.setRemoveOnCancelPolicy(true);
+	}
+
+	private final Executor executor;
+
+	/**
+	 * Create a generator running in the common fork join pool
+	 */
+	public AsyncGenerator() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param executor
+	 *            the executor rendering the QR codes
+	 */
+	public AsyncGenerator(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Render the QR code of an input, in the smallest version able to hold it, without
+	 * deadline
+	 *
+	 * @param input
+	 *            the text to encode
+	 * @param lvl
+	 *            the error correction level
+	 * @return the future matrix
+	 */
+	public CompletableFuture<int[][]> render(String input, CorrectionLvl lvl) {
+		return submit(input, lvl, 0, false);
+	}
+
+	/**
+	 * Render the QR code of an input, in the smallest version able to hold it
+	 *
+	 * @param input
+	 *            the text to encode
+	 * @param lvl
+	 *            the error correction level
+	 * @param timeout
+	 *            the time given to the request, from now
+	 * @param unit
+	 *            the unit of the timeout
+	 * @return the future matrix, failed with a TimeoutException after the timeout
+	 */
+	public CompletableFuture<int[][]> render(String input, CorrectionLvl lvl, long timeout, TimeUnit unit) {
+		return submit(input, lvl, System.nanoTime() + unit.toNanos(timeout), true);
+	}
+
+	/**
+	 * Render the QR codes of several inputs with a common deadline, each one in a task of
+	 * its own
+	 *
+	 * @param inputs
+	 *            the texts to encode
+	 * @param lvl
+	 *            the error correction level
+	 * @param timeout
+	 *            the time given to the whole batch, from now
+	 * @param unit
+	 *            the unit of the timeout
+	 * @return the future matrices, in the order of the inputs, each completing on its own
+	 */
+	public List<CompletableFuture<int[][]>> renderAll(List<String> inputs, CorrectionLvl lvl, long timeout,
+			TimeUnit unit) {
+		final long DEADLINE = System.nanoTime() + unit.toNanos(timeout);
+		List<CompletableFuture<int[][]>> futures = new ArrayList<>(inputs.size());
+		for (String input : inputs)
+		  {
+			futures.add(submit(input, lvl, DEADLINE, true));
+		  }
+		return futures;
+	}
+
+	private CompletableFuture<int[][]> submit(String input, CorrectionLvl lvl, long deadline, boolean hasDeadline) {
+		CompletableFuture<int[][]> future = new CompletableFuture<>();
+		Checkpoint checkpoint = new Checkpoint(future, deadline, hasDeadline);
+		if (hasDeadline)
+		  {
+			ScheduledFuture<?> timeout = TIMER.schedule(() -> expire(future),
+					deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+			future.whenComplete((matrix, error) -> timeout.cancel(false));
+		  }
+		try
+		  {
+			executor.execute(() -> run(input, lvl, future, checkpoint));
+		  }
+		catch (RejectedExecutionException e)
+		  {
+			future.completeExceptionally(e);
+		  }
+		return future;
+	}
+
+	private static void expire(CompletableFuture<int[][]> future) {
+		future.completeExceptionally(new TimeoutException("The QR code was not rendered before its deadline"));
+	}
+
+	private static void run(String input, CorrectionLvl lvl, CompletableFuture<int[][]> future, Checkpoint checkpoint) {
+		final Checkpoint PREVIOUS = checkpoint.enter();
+		try
+		  {
+			Checkpoint.check();
+			final int VERSION = DataEncoding.chooseVersion(input, lvl, QRCodeInfos.MIN_VERSION, QRCodeInfos.MAX_VERSION);
+			Checkpoint.check();
+			boolean[] data = QREncoder.get().encode(input, VERSION, lvl);
+			Checkpoint.check();
+			future.complete(MatrixConstruction.renderQRCodeMatrix(VERSION, data, lvl));
+		  }
+		catch (CancellationException e)
+		  {
+			//the future is normally done already, unless the deadline passed before the timer
+			if (checkpoint.isExpired())
+			  {
+				expire(future);
+			  }
+			future.cancel(false);
+		  }
+		catch (Throwable e)
+		  {
+			//a request without deadline would never complete otherwise
+			future.completeExceptionally(e);
+			if (e instanceof Error)
+			  {
+				throw (Error) e;
+			  }
+		  }
+		finally
+		  {
+			Checkpoint.exit(PREVIOUS);
+		  }
+	}
+
+}
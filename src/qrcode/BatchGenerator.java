@@ -0,0 +1,543 @@
+package qrcode;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+/**
+ * Command line generator of one QR code per line of a file or of the standard input. The
+ * lines are read as a stream and rendered by a pool of workers, the reader waiting when
+ * they are behind. The images are written in a directory, a ZIP or TAR archive, or as a TAR
+ * archive on the standard output; the throughput is printed on the standard error.
+ *
+ * <pre>
+ * java qrcode.BatchGenerator [options] [file]
+ *   file                 the payloads, one per line; - or nothing for the standard input
+ *   --csv                lines of payload[,version[,level[,mask]]], payloads with commas
+ *                        or quotes being quoted as in CSV, empty fields keeping the default
+ *   --level L|M|Q|H      the error correction level (default L)
+ *   --version 1-40       the version (default: the smallest fitting the payload)
+ *   --mask 0-7           the mask (default: the mask of lowest penalty)
+ *   --workers n          the number of rendering threads (default: one per processor)
+ *   --out target         a directory, a .zip or .tar file, or - for a TAR on the standard
+ *                        output (default: the current directory)
+ *   --name template      the name of the images, a String.format pattern given the number
+ *                        of the line counted from 0 (default qrcode_%06d.png)
+ *   --scale n            the width in pixels of a module (default 1)
+ *   --quiet-zone n       the width in modules of the border (default 4)
+ *   --compression -1..9  the Deflater level of the images (default 1)
+ * </pre>
+ */
+public final class BatchGenerator {
+
+	private static final String USAGE = "Usage: java qrcode.BatchGenerator [--csv] [--level L|M|Q|H] [--version 1-40]"
+			+ " [--mask 0-7] [--workers n] [--out directory|file.zip|file.tar|-] [--name template] [--scale n]"
+			+ " [--quiet-zone n] [--compression -1..9] [file|-]";
+
+	/*
+	 * Payloads waiting for a worker, per worker
+	 */
+	private static final int QUEUED_PER_WORKER = 64;
+
+	private final boolean csv;
+	private final CorrectionLvl level;
+	private final int version;
+	private final int mask;
+	private final int workers;
+	private final String input;
+	private final String output;
+	private final String nameTemplate;
+	private final PngWriter writer;
+
+	private final AtomicInteger failures = new AtomicInteger();
+
+	/*
+	 * Latencies recorded by every thread without synchronization, added up at the end
+	 */
+	private final Queue<Latencies> allLatencies = new ConcurrentLinkedQueue<>();
+	private final ThreadLocal<Latencies> latencies = ThreadLocal.withInitial(() -> {
+		Latencies threadLatencies = new Latencies();
+		allLatencies.add(threadLatencies);
+		return threadLatencies;
+	});
+
+	public static void main(String[] args) {
+		final int STATUS = run(args, System.in, System.out, System.err);
+		if (STATUS != 0)
+		  {
+			System.exit(STATUS);
+		  }
+	}
+
+	/**
+	 * Run the generator
+	 *
+	 * @param args
+	 *            the command line
+	 * @param in
+	 *            the standard input
+	 * @param out
+	 *            the standard output
+	 * @param err
+	 *            the standard error, receiving the errors and the throughput
+	 * @return the exit status: 0, 1 if some lines could not be rendered, 2 for an invalid
+	 *         command line, an input which could not be read or an output which could not
+	 *         be written
+	 */
+	public static int run(String[] args, InputStream in, OutputStream out, PrintStream err) {
+		BatchGenerator generator;
+		try
+		  {
+			generator = new BatchGenerator(args);
+		  }
+		catch (IllegalArgumentException e)
+		  {
+			err.println(e.getMessage());
+			err.println(USAGE);
+			return 2;
+		  }
+		//the input is opened first, so that a missing one leaves the output untouched
+		BufferedReader reader;
+		try
+		  {
+			reader = generator.openInput(in);
+		  }
+		catch (IOException e)
+		  {
+			err.println("The input could not be read: " + e);
+			return 2;
+		  }
+		try (BufferedReader lines = reader)
+		  {
+			return generator.generate(lines, out, err);
+		  }
+		catch (UncheckedIOException e)
+		  {
+			err.println("The input could not be read: " + e.getCause());
+			return 2;
+		  }
+		catch (IOException e)
+		  {
+			err.println("The QR codes could not be written: " + e.getMessage());
+			return 2;
+		  }
+	}
+
+	private BatchGenerator(String[] args) {
+		boolean csv = false;
+		CorrectionLvl level = CorrectionLvl.L;
+		int version = 0, mask = -1, scale = 1, quietZone = 4, compression = Deflater.BEST_SPEED;
+		int workers = Runtime.getRuntime().availableProcessors();
+		String input = "-", output = ".", nameTemplate = "qrcode_%06d.png";
+
+		for (int i = 0; i < args.length; ++i)
+		  {
+			final String ARG = args[i];
+			if (ARG.equals("--csv"))
+			  {
+				csv = true;
+				continue;
+			  }
+			if (!ARG.startsWith("--") || ARG.equals("--"))
+			  {
+				input = ARG;
+				continue;
+			  }
+			if (i + 1 == args.length)
+			  {
+				throw new IllegalArgumentException("Missing value of " + ARG);
+			  }
+			final String VALUE = args[++i];
+			switch (ARG)
+			    {
+					case "--level": level = parseLevel(VALUE); break;
+					case "--version": version = parseInt(ARG, VALUE, QRCodeInfos.MIN_VERSION, QRCodeInfos.MAX_VERSION); break;
+					case "--mask": mask = parseInt(ARG, VALUE, 0, 7); break;
+					case "--workers": workers = parseInt(ARG, VALUE, 1, 1024); break;
+					case "--out": output = VALUE; break;
+					case "--name": nameTemplate = VALUE; break;
+					case "--scale": scale = parseInt(ARG, VALUE, 1, 1000); break;
+					case "--quiet-zone": quietZone = parseInt(ARG, VALUE, 0, 1000); break;
+					case "--compression": compression = parseInt(ARG, VALUE, Deflater.DEFAULT_COMPRESSION, Deflater.BEST_COMPRESSION); break;
+					default: throw new IllegalArgumentException("Unknown option " + ARG);
+			    }
+		  }
+		//fails now rather than on the first line
+		String.format(Locale.ROOT, nameTemplate, 0);
+
+		this.csv = csv;
+		this.level = level;
+		this.version = version;
+		this.mask = mask;
+		this.workers = workers;
+		this.input = input;
+		this.output = output;
+		this.nameTemplate = nameTemplate;
+		writer = new PngWriter(scale, quietZone, compression);
+	}
+
+	private static CorrectionLvl parseLevel(String value) {
+		try
+		  {
+			return CorrectionLvl.valueOf(value.trim().toUpperCase(Locale.ROOT));
+		  }
+		catch (IllegalArgumentException e)
+		  {
+			throw new IllegalArgumentException("Invalid error correction level " + value);
+		  }
+	}
+
+	private static int parseInt(String option, String value, int min, int max) {
+		try
+		  {
+			final int NUMBER = Integer.parseInt(value.trim());
+			if (NUMBER >= min && NUMBER <= max)
+			  {
+				return NUMBER;
+			  }
+		  }
+		catch (NumberFormatException e)
+		  {
+			//reported below
+		  }
+		throw new IllegalArgumentException("The value of " + option + " has to be between " + min + " and " + max
+				+ ": " + value);
+	}
+
+	private BufferedReader openInput(InputStream in) throws IOException {
+		return new BufferedReader(new InputStreamReader(
+				input.equals("-") ? in : Files.newInputStream(Paths.get(input)), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Render the QR codes of the lines of the input
+	 *
+	 * @throws UncheckedIOException if the input cannot be read
+	 * @throws IOException if the QR codes cannot be written
+	 */
+	private int generate(BufferedReader reader, OutputStream out, PrintStream err) throws IOException {
+		final long START = System.nanoTime();
+		Target target = openTarget(out);
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(QUEUED_PER_WORKER*workers), new ThreadPoolExecutor.CallerRunsPolicy());
+
+		int lines = 0;
+		try
+		  {
+			String line;
+			while ((line = readLine(reader)) != null)
+			  {
+				final int INDEX = lines++;
+				final String LINE = line;
+				pool.execute(() -> render(INDEX, LINE, target, err));
+			  }
+		  }
+		finally
+		  {
+			pool.shutdown();
+			try
+			  {
+				while (!pool.awaitTermination(1, TimeUnit.MINUTES))
+				  {
+					//rendering
+				  }
+			  }
+			catch (InterruptedException e)
+			  {
+				pool.shutdownNow();
+				Thread.currentThread().interrupt();
+			  }
+			target.close();
+		  }
+
+		printStatistics(lines, target.getWrittenBytes(), System.nanoTime() - START, err);
+		return (failures.get() == 0) ? 0 : 1;
+	}
+
+	/**
+	 * Read a line of the input, its errors being told apart from the ones of the output
+	 */
+	private static String readLine(BufferedReader reader) {
+		try
+		  {
+			return reader.readLine();
+		  }
+		catch (IOException e)
+		  {
+			throw new UncheckedIOException(e);
+		  }
+	}
+
+	/**
+	 * Render the QR code of a line and write it
+	 */
+	private void render(int index, String line, Target target, PrintStream err) {
+		final long START = System.nanoTime();
+		try
+		  {
+			String payload = line;
+			CorrectionLvl lineLevel = level;
+			int lineVersion = version, lineMask = mask;
+			if (csv)
+			  {
+				List<String> fields = parseCsv(line);
+				payload = fields.get(0);
+				if (fields.size() > 1 && !fields.get(1).trim().isEmpty())
+				  {
+					lineVersion = parseInt("version", fields.get(1), QRCodeInfos.MIN_VERSION, QRCodeInfos.MAX_VERSION);
+				  }
+				if (fields.size() > 2 && !fields.get(2).trim().isEmpty())
+				  {
+					lineLevel = parseLevel(fields.get(2));
+				  }
+				if (fields.size() > 3 && !fields.get(3).trim().isEmpty())
+				  {
+					lineMask = parseInt("mask", fields.get(3), 0, 7);
+				  }
+			  }
+			//a forced version still has to hold the whole payload
+			lineVersion = (lineVersion == 0)
+					? DataEncoding.chooseVersion(payload, lineLevel, QRCodeInfos.MIN_VERSION, QRCodeInfos.MAX_VERSION)
+					: DataEncoding.chooseVersion(payload, lineLevel, lineVersion, lineVersion);
+
+			boolean[] data = QREncoder.get().encode(payload, lineVersion, lineLevel);
+			int[][] matrix = (lineMask < 0)
+					? MatrixConstruction.renderQRCodeMatrix(lineVersion, data, lineLevel)
+					: MatrixConstruction.renderQRCodeMatrix(lineVersion, data, lineMask, lineLevel);
+			target.write(String.format(Locale.ROOT, nameTemplate, index), matrix);
+			latencies.get().add(System.nanoTime() - START);
+		  }
+		catch (IllegalArgumentException | IOException e)
+		  {
+			failures.incrementAndGet();
+			err.println("Line " + (index + 1) + ": " + e.getMessage());
+		  }
+		catch (RuntimeException e)
+		  {
+			//a bug rather than an invalid line, still counted so that the status is not 0
+			failures.incrementAndGet();
+			err.println("Line " + (index + 1) + ": " + e);
+		  }
+	}
+
+	/**
+	 * Split a CSV line into its fields, a quoted field possibly holding commas and doubled
+	 * quotes
+	 */
+	static List<String> parseCsv(String line) {
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); ++i)
+		  {
+			final char C = line.charAt(i);
+			if (quoted)
+			  {
+				if (C != '"')
+				  {
+					field.append(C);
+				  }
+				else if (i + 1 < line.length() && line.charAt(i + 1) == '"')
+				  {
+					field.append('"');
+					++i;
+				  }
+				else
+				  {
+					quoted = false;
+				  }
+			  }
+			else if (C == '"')
+			  {
+				quoted = true;
+			  }
+			else if (C == ',')
+			  {
+				fields.add(field.toString());
+				field.setLength(0);
+			  }
+			else
+			  {
+				field.append(C);
+			  }
+		  }
+		if (quoted)
+		  {
+			throw new IllegalArgumentException("Unterminated quoted field");
+		  }
+		fields.add(field.toString());
+		return fields;
+	}
+
+	private Target openTarget(OutputStream out) throws IOException {
+		if (output.equals("-"))
+		  {
+			//the sink closes its stream, the standard output stays open
+			ArchiveSink sink = new ArchiveSink(new UnclosedStream(out), ArchiveSink.Format.TAR, nameTemplate, writer,
+					QUEUED_PER_WORKER);
+			return archiveTarget(sink);
+		  }
+		final String LOWER = output.toLowerCase(Locale.ROOT);
+		if (LOWER.endsWith(".zip") || LOWER.endsWith(".tar"))
+		  {
+			ArchiveSink sink = new ArchiveSink(new BufferedOutputStream(Files.newOutputStream(Paths.get(output)), 1 << 16),
+					LOWER.endsWith(".zip") ? ArchiveSink.Format.ZIP : ArchiveSink.Format.TAR, nameTemplate, writer,
+					QUEUED_PER_WORKER);
+			return archiveTarget(sink);
+		  }
+
+		Path directory = Files.createDirectories(Paths.get(output));
+		LongAdder writtenBytes = new LongAdder();
+		return new Target() {
+			@Override
+			public void write(String name, int[][] matrix) throws IOException {
+				try (OutputStream file = Files.newOutputStream(directory.resolve(name)))
+				  {
+					writtenBytes.add(writer.write(matrix, file));
+				  }
+			}
+
+			@Override
+			public long getWrittenBytes() {
+				return writtenBytes.sum();
+			}
+
+			@Override
+			public void close() {
+				//every file is closed once written
+			}
+		};
+	}
+
+	private static Target archiveTarget(ArchiveSink sink) {
+		return new Target() {
+			@Override
+			public void write(String name, int[][] matrix) throws IOException {
+				sink.submit(name, matrix);
+			}
+
+			@Override
+			public long getWrittenBytes() {
+				return sink.getImageBytes();
+			}
+
+			@Override
+			public void close() throws IOException {
+				sink.close();
+			}
+		};
+	}
+
+	private void printStatistics(int lines, long bytes, long nanos, PrintStream err) {
+		int count = 0;
+		for (Latencies threadLatencies : allLatencies)
+		  {
+			count += threadLatencies.count;
+		  }
+		long[] all = new long[count];
+		int filled = 0;
+		for (Latencies threadLatencies : allLatencies)
+		  {
+			System.arraycopy(threadLatencies.nanos, 0, all, filled, threadLatencies.count);
+			filled += threadLatencies.count;
+		  }
+		Arrays.sort(all);
+
+		final double SECONDS = nanos / 1e9;
+		err.println(String.format(Locale.ROOT,
+				"%d QR codes written, %d failed, in %.3f s: %.1f codes/s, %.2f MB/s, latency p50 %.3f ms, p99 %.3f ms",
+				count, lines - count, SECONDS, count / SECONDS, bytes / 1e6 / SECONDS,
+				percentile(all, 0.50) / 1e6, percentile(all, 0.99) / 1e6));
+	}
+
+	/**
+	 * @return the value of the sorted values below which a fraction of them lies, 0 without values
+	 */
+	private static long percentile(long[] sorted, double fraction) {
+		if (sorted.length == 0)
+		  {
+			return 0;
+		  }
+		return sorted[Math.max(0, (int) Math.ceil(fraction*sorted.length) - 1)];
+	}
+
+	/**
+	 * Destination of the images, shared by the workers
+	 */
+	private interface Target {
+		void write(String name, int[][] matrix) throws IOException;
+
+		/**
+		 * @return the total size of the images written
+		 */
+		long getWrittenBytes();
+
+		void close() throws IOException;
+	}
+
+	/**
+	 * Latencies in nanoseconds of the QR codes of a thread
+	 */
+	private static final class Latencies {
+		private long[] nanos = new long[1024];
+		private int count;
+
+		private void add(long latency) {
+			if (count == nanos.length)
+			  {
+				nanos = Arrays.copyOf(nanos, 2*count);
+			  }
+			nanos[count++] = latency;
+		}
+	}
+
+	/**
+	 * Stream flushed but not closed by close
+	 */
+	private static final class UnclosedStream extends OutputStream {
+		private final OutputStream out;
+
+		private UnclosedStream(OutputStream out) {
+			this.out = out;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			out.write(bytes, offset, length);
+		}
+
+		@Override
+		public void close() throws IOException {
+			out.flush();
+		}
+	}
+
+}
@@ -0,0 +1,229 @@
+package qrcode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import qrcode.PipelineMetrics.Span;
+import qrcode.PipelineMetrics.Stage;
+
+/**
+ * Uncompressed output of a module matrix, for printers and pipelines which do not need a
+ * PNG: binary PBM, binary PGM, or raw rows of 1 bit per pixel. Every row of modules is
+ * drawn once in a row buffer, then copied scale times into a block which is written when
+ * full; both buffers are kept by the thread for its next bitmaps.
+ */
+public final class BitmapWriter {
+
+	/**
+	 * Bitmap formats
+	 */
+	public enum Format {
+		/** Binary PBM (P4): 1 bit per pixel, 1 for black, rows padded to a byte */
+		PBM,
+		/** Binary PGM (P5): 1 byte per pixel, 0 for black and 255 for white */
+		PGM,
+		/** The rows of a PBM without header */
+		RAW
+	}
+
+	private static final int B = 0xFF_00_00_00;
+	private static final byte BLACK = 0;
+	private static final byte WHITE = (byte) 0xFF;
+
+	/*
+	 * Size of the blocks of rows given to the stream or channel
+	 */
+	private static final int BLOCK_SIZE = 1 << 16;
+
+	private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+	private final Format format;
+	private final int scale;
+	private final int quietZone;
+
+	/**
+	 * Create a writer of one pixel per module, without quiet zone
+	 *
+	 * @param format
+	 *            the format of the bitmaps
+	 */
+	public BitmapWriter(Format format) {
+		this(format, 1, 0);
+	}
+
+	/**
+	 * @param format
+	 *            the format of the bitmaps
+	 * @param scale
+	 *            the width in pixels of a module, at least 1
+	 * @param quietZone
+	 *            the width in modules of the white border
+	 */
+	public BitmapWriter(Format format, int scale, int quietZone) {
+		if (scale < 1 || quietZone < 0)
+		  {
+			throw new IllegalArgumentException("The scale has to be positive and the quiet zone non negative");
+		  }
+		this.format = format;
+		this.scale = scale;
+		this.quietZone = quietZone;
+	}
+
+	/**
+	 * Write the bitmap of a matrix to a stream, which is neither flushed nor closed
+	 *
+	 * @param matrix
+	 *            the matrix to write, the modules other than black being white
+	 * @param out
+	 *            the stream receiving the bitmap
+	 * @return the number of bytes written
+	 * @throws IOException if the stream cannot be written
+	 */
+	public long write(int[][] matrix, OutputStream out) throws IOException {
+		return write(matrix, ImageSink.of(out));
+	}
+
+	/**
+	 * Write the bitmap of a matrix to a blocking channel, which is not closed
+	 *
+	 * @param matrix
+	 *            the matrix to write, the modules other than black being white
+	 * @param channel
+	 *            the channel receiving the bitmap
+	 * @return the number of bytes written
+	 * @throws IOException if the channel cannot be written
+	 */
+	public long write(int[][] matrix, WritableByteChannel channel) throws IOException {
+		return write(matrix, ImageSink.of(channel));
+	}
+
+	private long write(int[][] matrix, ImageSink sink) throws IOException {
+		if (matrix.length == 0 || matrix[0].length == 0)
+		  {
+			throw new IllegalArgumentException("The matrix is empty");
+		  }
+		final Span SPAN = PipelineMetrics.begin();
+
+		final int COLUMNS = matrix.length, ROWS = matrix[0].length;
+		final int WIDTH = (COLUMNS + 2*quietZone)*scale, HEIGHT = (ROWS + 2*quietZone)*scale;
+		final int ROW_BYTES = (format == Format.PGM) ? WIDTH : (WIDTH + 7) / 8;
+
+		byte[] header = header(format, WIDTH, HEIGHT);
+		sink.write(header, 0, header.length);
+
+		Buffers buffers = BUFFERS.get();
+		byte[] row = buffers.row(ROW_BYTES);
+		buffers.block(ROW_BYTES);
+		buffers.filled = 0;
+
+		//the quiet zone rows, then every row of modules repeated scale times
+		fillRow(row, ROW_BYTES, null, 0);
+		append(sink, buffers, row, ROW_BYTES, quietZone*scale);
+		for (int moduleRow = 0; moduleRow < ROWS; ++moduleRow)
+		  {
+			fillRow(row, ROW_BYTES, matrix, moduleRow);
+			append(sink, buffers, row, ROW_BYTES, scale);
+		  }
+		fillRow(row, ROW_BYTES, null, 0);
+		append(sink, buffers, row, ROW_BYTES, quietZone*scale);
+		if (buffers.filled > 0)
+		  {
+			sink.write(buffers.block, 0, buffers.filled);
+		  }
+
+		SPAN.end(Stage.IMAGE_OUTPUT);
+		return header.length + (long) ROW_BYTES*HEIGHT;
+	}
+
+	/**
+	 * @return the header of a bitmap of the format, empty for RAW
+	 */
+	static byte[] header(Format format, int width, int height) {
+		switch (format)
+		    {
+				case PBM: return ("P4\n" + width + " " + height + "\n").getBytes(StandardCharsets.US_ASCII);
+				case PGM: return ("P5\n" + width + " " + height + "\n255\n").getBytes(StandardCharsets.US_ASCII);
+				default: return new byte[0];
+		    }
+	}
+
+	/**
+	 * Copy a row count times in the block, writing the block each time it is full
+	 */
+	private static void append(ImageSink sink, Buffers buffers, byte[] row, int length, int count) throws IOException {
+		byte[] block = buffers.block;
+		for (int i = 0; i < count; ++i)
+		  {
+			if (buffers.filled + length > block.length)
+			  {
+				sink.write(block, 0, buffers.filled);
+				buffers.filled = 0;
+			  }
+			System.arraycopy(row, 0, block, buffers.filled, length);
+			buffers.filled += length;
+		  }
+	}
+
+	/**
+	 * Fill a row of pixels with one row of modules of the matrix, the modules of the quiet
+	 * zone being white
+	 *
+	 * @param matrix
+	 *            the matrix, null for a row of the quiet zone
+	 */
+	private void fillRow(byte[] row, int length, int[][] matrix, int moduleRow) {
+		if (format == Format.PGM)
+		  {
+			Arrays.fill(row, 0, length, WHITE);
+		  }
+		else
+		  {
+			//black is 1, the padding bits of the last byte stay 0
+			Arrays.fill(row, 0, length, (byte) 0);
+		  }
+		if (matrix == null)
+		  {
+			return;
+		  }
+
+		for (int col = 0; col < matrix.length; ++col)
+		  {
+			if (matrix[col][moduleRow] != B)
+			  {
+				continue;
+			  }
+			final int FIRST = (quietZone + col)*scale;
+			if (format == Format.PGM)
+			  {
+				Arrays.fill(row, FIRST, FIRST + scale, BLACK);
+			  }
+			else
+			  {
+				for (int pixel = FIRST; pixel < FIRST + scale; ++pixel)
+				  {
+					row[pixel >> 3] |= 0x80 >>> (pixel & 7);
+				  }
+			  }
+		  }
+	}
+
+	/**
+	 * Buffers of the writes of a thread
+	 */
+	private static final class Buffers extends ImageSink.RowBuffer {
+		private byte[] block = new byte[BLOCK_SIZE];
+		//bytes of the block waiting to be written
+		private int filled;
+
+		private void block(int rowLength) {
+			if (block.length < rowLength)
+			  {
+				block = new byte[rowLength];
+			  }
+		}
+	}
+
+}
@@ -0,0 +1,80 @@
+package qrcode;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+
+/**
+ * Cancellation point of the pipeline: the request rendered by the current thread can be
+ * abandoned between two stages or two masks of the search, once its future is completed
+ * by someone else (cancelled, or failed at its deadline) or once its deadline is past.
+ * Without a request, check does nothing.
+ */
+final class Checkpoint {
+
+	private static final ThreadLocal<Checkpoint> CURRENT = new ThreadLocal<>();
+
+	private final Future<?> future;
+	private final long deadline;
+	private final boolean hasDeadline;
+
+	/**
+	 * @param future
+	 *            the future of the request
+	 * @param deadline
+	 *            the System.nanoTime after which the request is abandoned
+	 * @param hasDeadline
+	 *            false if the request has no deadline
+	 */
+	Checkpoint(Future<?> future, long deadline, boolean hasDeadline) {
+		this.future = future;
+		this.deadline = deadline;
+		this.hasDeadline = hasDeadline;
+	}
+
+	/**
+	 * Make this checkpoint the one of the current thread, until exit
+	 *
+	 * @return the checkpoint it replaces, e.g. when the executor runs the request in the
+	 *         thread of another one
+	 */
+	Checkpoint enter() {
+		Checkpoint previous = CURRENT.get();
+		CURRENT.set(this);
+		return previous;
+	}
+
+	/**
+	 * Give back to the current thread the checkpoint replaced by enter
+	 */
+	static void exit(Checkpoint previous) {
+		if (previous == null)
+		  {
+			CURRENT.remove();
+		  }
+		else
+		  {
+			CURRENT.set(previous);
+		  }
+	}
+
+	/**
+	 * @return true if the deadline is past
+	 */
+	boolean isExpired() {
+		return hasDeadline && System.nanoTime() - deadline >= 0;
+	}
+
+	/**
+	 * Stop the request of the current thread if it is done or expired
+	 *
+	 * @throws CancellationException if the request has to be stopped
+	 */
+	static void check() {
+		Checkpoint checkpoint = CURRENT.get();
+		if (checkpoint != null && (checkpoint.future.isDone() || checkpoint.isExpired()))
+		  {
+			throw new CancellationException("The request was abandoned");
+		  }
+	}
+
+}
@@ -1,6 +1,10 @@
 package qrcode;
 
 import java.nio.charset.StandardCharsets;
+
+import qrcode.PipelineMetrics.Span;
+import qrcode.PipelineMetrics.Stage;
+import qrcode.QRCodeInfos.CorrectionLvl;
 import reedsolomon.ErrorCorrectionEncoding;
 
 public final class DataEncoding {
@@ -14,17 +18,62 @@ public final class DataEncoding {
 	 *         encoded message in boolean[] format
 	 */
 	public static boolean[] byteModeEncoding(String input, int version) {
+		return byteModeEncoding(input, version, CorrectionLvl.L);
+	}
 
-		final int MAX_CHAR_LENGTH = QRCodeInfos.getMaxInputLength(version);
-		final int CORRECTION_BYTES = QRCodeInfos.getECCLength(version);
-		final int FINAL_LENGTH = QRCodeInfos.getCodeWordsLength(version);
+	/**
+	 * Apply encoding methods to input string, for any version and correction level
+	 *
+	 * @param input
+	 * @param version
+	 * @param lvl
+	 *         the error correction level
+	 * @return
+	 *         encoded message in boolean[] format, blocks interleaved
+	 */
+	public static boolean[] byteModeEncoding(String input, int version, CorrectionLvl lvl) {
 
-		int[] encodedMessage = encodeString(input, MAX_CHAR_LENGTH);
-		encodedMessage = addInformations(encodedMessage);
-		encodedMessage = fillSequence(encodedMessage,FINAL_LENGTH);
-		encodedMessage = addErrorCorrection(encodedMessage,CORRECTION_BYTES);
+		final Span SPAN = PipelineMetrics.begin();
 
-		return bytesToBinaryArray(encodedMessage);
+		//same steps as encodeString, addInformations, fillSequence, addErrorCorrection and
+		//bytesToBinaryArray, in the buffers of the encoder of the thread
+		boolean[] binaryMessage = QREncoder.get().encode(input, version, lvl).clone();
+		SPAN.end(Stage.DATA_ENCODING);
+		return binaryMessage;
+	}
+
+	/**
+	 * Find the smallest version able to hold the whole input with the correction level L
+	 *
+	 * @param input
+	 * @return the version to give to byteModeEncoding so that the input is not truncated
+	 * @throws IllegalArgumentException if the input does not fit in a version 40 QR code
+	 */
+	public static int chooseVersion(String input) {
+		return chooseVersion(input, CorrectionLvl.L, QRCodeInfos.MIN_VERSION, QRCodeInfos.MAX_VERSION);
+	}
+
+	/**
+	 * Find the smallest version between minVersion and maxVersion able to hold the whole input
+	 *
+	 * @param input
+	 * @param lvl
+	 *         the error correction level
+	 * @param minVersion
+	 * @param maxVersion
+	 * @return the version to give to byteModeEncoding so that the input is not truncated
+	 * @throws IllegalArgumentException if the input does not fit in any version of the range
+	 */
+	public static int chooseVersion(String input, CorrectionLvl lvl, int minVersion, int maxVersion) {
+		final int BYTE_LEN = input.getBytes(StandardCharsets.ISO_8859_1).length;
+		final int VERSION = QRCodeInfos.getMinimumVersion(BYTE_LEN, lvl, minVersion, maxVersion);
+
+		final PipelineListener LISTENER = PipelineMetrics.getListener();
+		if (LISTENER != null)
+		  {
+			LISTENER.versionChosen(VERSION, lvl, BYTE_LEN);
+		  }
+		return VERSION;
 	}
 
 	/**
@@ -61,30 +110,87 @@ public final class DataEncoding {
 	 * @return The input bytes with an header giving the type and size of the data
 	 */
 	public static int[] addInformations(int[] inputBytes) {
+		return addInformations(inputBytes, QRCodeInfos.MIN_VERSION);
+	}
+
+	/**
+	 * Add the information data (4 bits mode and 8 or 16 bits length depending on the version)
+	 * and concatenate the bytes to it
+	 *
+	 * @param inputBytes
+	 *            the data byte sequence
+	 * @param version
+	 *            the version of the QR code, giving the size of the length field
+	 * @return The input bytes with an header giving the type and size of the data
+	 */
+	public static int[] addInformations(int[] inputBytes, int version) {
 
 		final int INPUT_LEN = inputBytes.length;
+		final int COUNT_BYTES = QRCodeInfos.getCharCountBits(version)/8;
 
 		int byteMode = 0b0100;
 		int lastBit = 0b0000;
 
-		int bitsLength1 = INPUT_LEN >>4 & 0xF;
-		int bitsLength2 = INPUT_LEN & 0xF;
+		int header = byteMode << (8*COUNT_BYTES) | INPUT_LEN;
+
+		int[]byteSequence = new int[INPUT_LEN+COUNT_BYTES+1];
+
+		for (int k = 0; k < COUNT_BYTES; ++k)
+		  {
+			byteSequence[k] = header >> (4 + 8*(COUNT_BYTES-1-k)) & 0xFF;
+		  }
+		byteSequence[COUNT_BYTES]= (header & 0xF) << 4;
 
-		int[]byteSequence = new int[INPUT_LEN+2];
-		
-		byteSequence[0] = byteMode << 4 | bitsLength1; // byte 0 
-		byteSequence[1]= bitsLength2 << 4;
-				
 		for (int j = 0; j < INPUT_LEN ;++j)
 		  {
 			int bitsLessSignificant = inputBytes[j]>>4 & 0xF;
 			int bitsMoreSignificant = (inputBytes[j] & 0xF);
 
-			byteSequence[j+1] = byteSequence[j+1] | bitsLessSignificant;
-			byteSequence[j+2] = bitsMoreSignificant << 4;
+			byteSequence[j+COUNT_BYTES] = byteSequence[j+COUNT_BYTES] | bitsLessSignificant;
+			byteSequence[j+COUNT_BYTES+1] = bitsMoreSignificant << 4;
 		  }
 
-		byteSequence[INPUT_LEN+1] = byteSequence[INPUT_LEN+1] | lastBit;
+		byteSequence[INPUT_LEN+COUNT_BYTES] = byteSequence[INPUT_LEN+COUNT_BYTES] | lastBit;
+
+		return byteSequence;
+	}
+
+	/**
+	 * Prepend the 20 bits structured append header (mode 0011, position and total
+	 * number of symbols on 4 bits each, parity byte) to a sequence produced by addInformations
+	 *
+	 * @param informations
+	 *            the data byte sequence with its mode and length header
+	 * @param position
+	 *            the index of this symbol, between 0 and 15
+	 * @param total
+	 *            the number of symbols of the set, between 1 and 16
+	 * @param parity
+	 *            the xor of all the bytes of the whole input
+	 * @return The sequence shifted by 20 bits behind the structured append header,
+	 *         padded with zero bits to a whole number of bytes
+	 */
+	public static int[] addStructuredAppend(int[] informations, int position, int total, int parity) {
+		if (position < 0 || position >= total || total > 16)
+		  {
+			throw new IllegalArgumentException("A structured append set holds between 1 and 16 symbols");
+		  }
+
+		final int INFO_LEN = informations.length;
+		final int STRUCTURED_APPEND_MODE = 0b0011;
+
+		int[] byteSequence = new int[INFO_LEN+3];
+
+		byteSequence[0] = STRUCTURED_APPEND_MODE << 4 | position;
+		byteSequence[1] = (total-1) << 4 | (parity >> 4 & 0xF);
+		byteSequence[2] = (parity & 0xF) << 4;
+
+		//the header is 2.5 bytes long, the sequence is shifted by half a byte
+		for (int j = 0; j < INFO_LEN; ++j)
+		  {
+			byteSequence[j+2] = byteSequence[j+2] | (informations[j] >> 4 & 0xF);
+			byteSequence[j+3] = (informations[j] & 0xF) << 4;
+		  }
 
 		return byteSequence;
 	}
@@ -143,6 +249,58 @@ public final class DataEncoding {
 		return encodedDataCorrected;
 	}
 
+	/**
+	 * Split the data into the error correction blocks of the version, compute the error
+	 * correction of every block and interleave the blocks codeword by codeword. For
+	 * versions with a single block, this is the same as addErrorCorrection(encodedData, eccLength)
+	 *
+	 * @param encodedData
+	 *            The byte array representing the data encoded, of the length given by
+	 *            QRCodeInfos.getCodeWordsLength(version, lvl)
+	 * @param version
+	 *            the version of the QR code
+	 * @param lvl
+	 *            the error correction level
+	 * @return the interleaved data codewords followed by the interleaved error correction codewords
+	 */
+	public static int[] addErrorCorrection(int[] encodedData, int version, CorrectionLvl lvl) {
+		final Span SPAN = PipelineMetrics.begin();
+
+		final int ENC_DATA_LEN = encodedData.length;
+		final int BLOCKS = QRCodeInfos.getBlockCount(version, lvl);
+		final int ECC_LEN = QRCodeInfos.getECCLength(version, lvl);
+		final int SHORT_LEN = ENC_DATA_LEN / BLOCKS;
+		final int SHORT_BLOCKS = BLOCKS - ENC_DATA_LEN % BLOCKS;
+
+		int[] interleaved = new int[ENC_DATA_LEN + BLOCKS*ECC_LEN];
+		int start = 0;
+
+		for (int b = 0; b < BLOCKS; ++b)
+		  {
+			int blockLen = (b < SHORT_BLOCKS) ? SHORT_LEN : SHORT_LEN+1;
+			int[] block = new int[blockLen];
+			System.arraycopy(encodedData, start, block, 0, blockLen);
+			start += blockLen;
+
+			//the k-th codeword of every block comes before the (k+1)-th of any block,
+			//the last codeword of the long blocks coming after all the short blocks ended
+			for (int k = 0; k < blockLen; ++k)
+			  {
+				int offset = (k < SHORT_LEN) ? k*BLOCKS : SHORT_LEN*BLOCKS - SHORT_BLOCKS;
+				interleaved[offset + b] = block[k];
+			  }
+
+			int[] encodings = ErrorCorrectionEncoding.encode(block, ECC_LEN);
+			for (int k = 0; k < ECC_LEN; ++k)
+			  {
+				interleaved[ENC_DATA_LEN + k*BLOCKS + b] = encodings[k];
+			  }
+		  }
+
+		SPAN.end(Stage.ERROR_CORRECTION);
+		return interleaved;
+	}
+
 	/**
 	 * Encode the byte array into a binary array represented with boolean using the
 	 * most significant bit first.
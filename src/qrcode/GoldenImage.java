@@ -0,0 +1,242 @@
+package qrcode;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Reference QR code decoded once for comparisons. Every row of modules is held as bit planes
+ * of its black and its white modules, so that a matrix is compared 64 modules at a time by
+ * XOR; the modules of any other colour (e.g. empty) are compared on their exact value. A
+ * reference can be shared by several threads.
+ */
+public final class GoldenImage {
+
+	private static final int B = 0xFF_00_00_00;
+	private static final int W = 0xFF_FF_FF_FF;
+
+	private final int size;
+	private final int words;
+
+	/*
+	 * Bit col of the row row of black (white) modules, at word row*words + col/64
+	 */
+	private final long[] black;
+	private final long[] white;
+
+	/*
+	 * Colour of the module col,row at row*size + col
+	 */
+	private final int[] colors;
+
+	private GoldenImage(int size) {
+		this.size = size;
+		words = (size + 63) / 64;
+		black = new long[size*words];
+		white = new long[size*words];
+		colors = new int[size*size];
+	}
+
+	/**
+	 * Decode a reference image of one or more pixels per module, reading the pixel in the
+	 * middle of every module
+	 *
+	 * @param image
+	 *            the image of the QR code
+	 * @param moduleSize
+	 *            the width in pixels of a module
+	 * @param quietZone
+	 *            the width in modules of the border around the QR code, skipped
+	 * @return the reference
+	 */
+	public static GoldenImage of(BufferedImage image, int moduleSize, int quietZone) {
+		final int WIDTH = image.getWidth();
+		if (moduleSize < 1 || quietZone < 0)
+		  {
+			throw new IllegalArgumentException("The module size has to be positive and the quiet zone non negative");
+		  }
+		if (image.getHeight() != WIDTH || WIDTH % moduleSize != 0 || WIDTH / moduleSize <= 2*quietZone)
+		  {
+			throw new IllegalArgumentException("The image is not a square of "+moduleSize+" pixels wide modules"
+					+ " with a quiet zone of "+quietZone);
+		  }
+		GoldenImage golden = new GoldenImage(WIDTH / moduleSize - 2*quietZone);
+		int[] line = new int[WIDTH];
+		for (int row = 0; row < golden.size; ++row)
+		  {
+			image.getRGB(0, (quietZone + row)*moduleSize + moduleSize / 2, WIDTH, 1, line, 0, WIDTH);
+			for (int col = 0; col < golden.size; ++col)
+			  {
+				golden.set(col, row, line[(quietZone + col)*moduleSize + moduleSize / 2]);
+			  }
+		  }
+		return golden;
+	}
+
+	/**
+	 * @param matrix
+	 *            the reference QR code, matrix[col][row] being an ARGB colour
+	 * @return the reference
+	 */
+	public static GoldenImage of(int[][] matrix) {
+		if (matrix.length == 0 || matrix[0].length != matrix.length)
+		  {
+			throw new IllegalArgumentException("The matrix must be squared");
+		  }
+		GoldenImage golden = new GoldenImage(matrix.length);
+		for (int col = 0; col < golden.size; ++col)
+		  {
+			for (int row = 0; row < golden.size; ++row)
+			  {
+				golden.set(col, row, matrix[col][row]);
+			  }
+		  }
+		return golden;
+	}
+
+	private void set(int col, int row, int color) {
+		colors[row*size + col] = color;
+		if (color == B)
+		  {
+			black[row*words + (col >> 6)] |= 1L << col;
+		  }
+		else if (color == W)
+		  {
+			white[row*words + (col >> 6)] |= 1L << col;
+		  }
+	}
+
+	/**
+	 * @return the number of modules of a side of the reference
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * @return the colour of the module col,row of the reference
+	 */
+	public int getModule(int col, int row) {
+		return colors[row*size + col];
+	}
+
+	/**
+	 * Compare a matrix with the reference
+	 *
+	 * @param matrix
+	 *            the matrix, of the size of the reference
+	 * @return the modules which differ
+	 */
+	public Diff compare(int[][] matrix) {
+		if (matrix.length != size || matrix[0].length != size)
+		  {
+			throw new IllegalArgumentException("The size of the two QR code does not match: matrix:"+matrix.length
+					+ "  image:"+size);
+		  }
+		long[] rowBlack = new long[words];
+		long[] rowWhite = new long[words];
+		int[] mismatches = new int[16];
+		int count = 0;
+
+		for (int row = 0; row < size; ++row)
+		  {
+			Arrays.fill(rowBlack, 0);
+			Arrays.fill(rowWhite, 0);
+			for (int col = 0; col < size; ++col)
+			  {
+				final int COLOR = matrix[col][row];
+				if (COLOR == B)
+				  {
+					rowBlack[col >> 6] |= 1L << col;
+				  }
+				else if (COLOR == W)
+				  {
+					rowWhite[col >> 6] |= 1L << col;
+				  }
+			  }
+
+			for (int word = 0; word < words; ++word)
+			  {
+				final long BLACK = black[row*words + word], WHITE = white[row*words + word];
+				long different = (rowBlack[word] ^ BLACK) | (rowWhite[word] ^ WHITE);
+
+				//modules of other colours in both: compared on their value
+				final long VALID = (word == words - 1 && size % 64 != 0) ? (1L << (size % 64)) - 1 : -1L;
+				long others = ~(rowBlack[word] | rowWhite[word] | BLACK | WHITE) & VALID;
+				while (others != 0)
+				  {
+					final int COL = word << 6 | Long.numberOfTrailingZeros(others);
+					if (matrix[COL][row] != colors[row*size + COL])
+					  {
+						different |= others & -others;
+					  }
+					others &= others - 1;
+				  }
+
+				while (different != 0)
+				  {
+					if (count == mismatches.length)
+					  {
+						mismatches = Arrays.copyOf(mismatches, 2*count);
+					  }
+					mismatches[count++] = (word << 6 | Long.numberOfTrailingZeros(different)) << 16 | row;
+					different &= different - 1;
+				  }
+			  }
+		  }
+		return new Diff(Arrays.copyOf(mismatches, count));
+	}
+
+	/**
+	 * Modules of a matrix which differ from the reference, row by row
+	 */
+	public static final class Diff {
+
+		/*
+		 * col << 16 | row of every mismatch
+		 */
+		private final int[] mismatches;
+
+		private Diff(int[] mismatches) {
+			this.mismatches = mismatches;
+		}
+
+		/**
+		 * @return true if the matrix is the reference
+		 */
+		public boolean isSimilar() {
+			return mismatches.length == 0;
+		}
+
+		/**
+		 * @return the number of modules which differ
+		 */
+		public int getMismatchCount() {
+			return mismatches.length;
+		}
+
+		/**
+		 * @return the column of the mismatch i
+		 */
+		public int getColumn(int i) {
+			return mismatches[i] >>> 16;
+		}
+
+		/**
+		 * @return the row of the mismatch i
+		 */
+		public int getRow(int i) {
+			return mismatches[i] & 0xFFFF;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder().append(mismatches.length).append(" mismatches");
+			for (int i = 0; i < Math.min(mismatches.length, 10); ++i)
+			  {
+				builder.append((i == 0) ? ": " : ", ").append(getColumn(i)).append(',').append(getRow(i));
+			  }
+			return builder.append((mismatches.length > 10) ? ", ..." : "").toString();
+		}
+	}
+
+}
@@ -2,9 +2,15 @@ package qrcode;
 
 import java.awt.BorderLayout;
 import java.awt.Font;
+import java.awt.GraphicsEnvironment;
 import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.imageio.ImageIO;
 import javax.swing.ImageIcon;
@@ -22,7 +28,6 @@ public final class Helpers {
 	private static final String PATH_HEADER = "images" + SEP;
 	
 	
-	private static final int BACKGROUND_COLOR = -1;
 	private static final int SCALE = 10;
 	private static final int BORDER = 4*SCALE; //quiet zone is 4 module large
 	
@@ -30,34 +35,39 @@ public final class Helpers {
 	private static final int GREEN_WHITE = 0xFF_90_FF_90;
 	private static final int RED = 0xFF_80_00_00;
 	
+	private static final PngWriter PNG_WRITER = new PngWriter();
+	private static final Map<String, GoldenImage> GOLDEN_IMAGES = new ConcurrentHashMap<>();
+	
 	
 	/**
-	 * compare a matrix loaded from file with a 2D-array given in arguments.
+	 * compare a matrix loaded from file with a 2D-array given in arguments. The differences
+	 * are shown in a window, unless the JVM is headless.
 	 * @param matrix the 2-dimensional array
 	 * @param imagePath the path of the image to compare with the matrix
 	 * @return true if the 2 images are similar, false otherwise
 	 */
 	public static boolean compare(int [][] matrix,String imagePath) {
-		int[][] expected= readMatrix(imagePath);
-		if(expected.length != matrix.length || expected.length!=expected[0].length || matrix.length!=matrix[0].length) {
-			throw new IllegalArgumentException("The size of the two QR code does not match: matrix:"+matrix.length+"  image:"+expected.length);
+		GoldenImage golden = golden(imagePath);
+		GoldenImage.Diff result = golden.compare(matrix);
+		if (GraphicsEnvironment.isHeadless()) {
+			return result.isSimilar();
 		}
+
+		int[][] expected = new int[golden.getSize()][golden.getSize()];
 		int[][] diff = new int[expected.length][expected.length];
-		boolean similar = true;
 		for(int x=0;x<matrix.length;x++) {
 			for(int y=0;y<matrix.length;y++) {
-				if(matrix[x][y]!=expected[x][y]) {
-					diff[x][y] = RED;
-					similar = false;
-				}else {
-					if(expected[x][y]== -1) {
-						diff[x][y] = GREEN_WHITE;
-					}else if(expected[x][y]== -16777216){
-						diff[x][y] = GREEN_BLACK;
-					}
+				expected[x][y] = golden.getModule(x, y);
+				if(expected[x][y]== -1) {
+					diff[x][y] = GREEN_WHITE;
+				}else if(expected[x][y]== -16777216){
+					diff[x][y] = GREEN_BLACK;
 				}
 			}
 		}
+		for (int i = 0; i < result.getMismatchCount(); i++) {
+			diff[result.getColumn(i)][result.getRow(i)] = RED;
+		}
 		BufferedImage imageExpected = scale(expected, SCALE, BORDER/2);
 		BufferedImage imageGiven = scale(matrix, SCALE, BORDER/2);
 		BufferedImage imagediff = scale(diff, SCALE, BORDER/2);
@@ -111,10 +121,22 @@ public final class Helpers {
 			}
 		});
 		
-		return similar;
+		return result.isSimilar();
 		
 	}
 
+	/**
+	 * Compare a matrix with an image of the images directory, without showing anything.
+	 * The image is decoded on the first comparison only, and again once writeMatrix has
+	 * replaced it.
+	 * @param matrix the 2-dimensional array
+	 * @param imagePath the path of the image to compare with the matrix
+	 * @return the modules of the matrix which differ from the image
+	 */
+	public static GoldenImage.Diff diff(int[][] matrix, String imagePath) {
+		return golden(imagePath).compare(matrix);
+	}
+
 	/**
 	 * Shows a matrix in a new window. The matrix is scaled for visualization
 	 * 
@@ -122,8 +144,7 @@ public final class Helpers {
 	 * @param scale 
 	 */
 	public static void show(int[][] matrix, int scale) {
-		BufferedImage qrCode = Helpers.matrixToImage(matrix);
-		BufferedImage image = reshape(qrCode, scale, 4*scale);
+		BufferedImage image = scale(matrix, scale, 4*scale);
 		SwingUtilities.invokeLater(new Runnable() {
 			public void run() {
 				JFrame editorFrame = new JFrame("QR Code");
@@ -161,7 +182,12 @@ public final class Helpers {
 	 *            the matrix to write
 	 */
 	public static void writeMatrix(String name, int[][] matrix) {
-		write(name, matrixToImage(matrix));
+		//the image output stage is measured by the PNG writer
+		long bytes = write(name, matrix);
+		PipelineListener listener = PipelineMetrics.getListener();
+		if (listener != null) {
+			listener.imageWritten(name, bytes);
+		}
 	}
 	
 	/*
@@ -191,46 +217,24 @@ public final class Helpers {
 	}
 
 	/**
-	 * Transform a 2 dimensional int array into an image
-	 * 
-	 * @param matrix
-	 *            the 2-dimensional array representing the QR code
-	 * @return The image of the QR code
-	 */
-	private static BufferedImage matrixToImage(int[][] matrix) {
-		BufferedImage image = new BufferedImage(matrix.length, matrix[0].length, BufferedImage.TYPE_INT_ARGB);
-		for (int x = 0; x < matrix.length; x++) {
-			for (int y = 0; y < matrix[0].length; y++) {
-				image.setRGB(x, y, matrix[x][y]);
-			}
-		}
-
-		return image;
-	}
-
-	/**
-	 * Write an image on a file
+	 * Write a matrix on a file, one pixel per module
 	 * @param name
 	 *            the name of the file
-	 * @param image
-	 *            the image to write on disk
+	 * @param matrix
+	 *            the matrix to write on disk
+	 * @return the size of the file, -1 if it could not be written
 	 */
-	private static void write(String name, BufferedImage image) {
-		String projectPath = System.getProperty("user.dir");
-		try {
-			// Output file path
-			String path = projectPath + SEP +  PATH_HEADER + name;
-			if (!name.contains(".png")) {
-				path = path + ".png";
-			}
-			File output_file = new File(path);
-
-			// Writing to file taking type and path as
-			ImageIO.write(image, "png", output_file);
-
-			//System.out.println("Writing complete.");
+	private static long write(String name, int[][] matrix) {
+		// Output file path
+		String path = imagePath(name);
+		try (OutputStream output = new BufferedOutputStream(new FileOutputStream(path))) {
+			return PNG_WRITER.write(matrix, output);
 		} catch (IOException e) {
 			e.printStackTrace();
+			return -1;
+		} finally {
+			// the reference of the old image, if any, is outdated
+			GOLDEN_IMAGES.remove(path);
 		}
 
 	}
@@ -243,13 +247,8 @@ public final class Helpers {
 	 * @return The loaded image
 	 */
 	private static BufferedImage read(String name) {
-		String projectPath = System.getProperty("user.dir");
-		String path = projectPath + SEP + PATH_HEADER + name;
+		String path = imagePath(name);
 		try {
-			
-			if (!name.contains(".png")) {
-				path = path + ".png";
-			}
 			File pathToFile = new File(path);
 			BufferedImage image = ImageIO.read(pathToFile);
 			return image;
@@ -259,50 +258,31 @@ public final class Helpers {
 		}
 	}
 	
-	private static BufferedImage scale(int[][] image, int scale, int borderSize) {
-		return reshape(Helpers.matrixToImage(image), scale, borderSize);
+	/**
+	 * Get the reference of an image of the images directory, one pixel per module
+	 */
+	private static GoldenImage golden(String name) {
+		return GOLDEN_IMAGES.computeIfAbsent(imagePath(name), path -> GoldenImage.of(read(name), 1, 0));
 	}
-	private static BufferedImage reshape(BufferedImage image, int scale, int borderSize) {
-		if (image.getHeight() != image.getWidth()) {
-			throw new IllegalArgumentException("The image must be squared");
-		}
-		int previousSize = image.getWidth();
-		int size = previousSize * scale + borderSize * 2;
-		BufferedImage ehancedIm = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
 
-		/*
-		 * Border
-		 */
-		for (int i = 0; i < size; i++) {
-			for (int j = 0; j < borderSize; j++) {
-				ehancedIm.setRGB(i, j, BACKGROUND_COLOR);
-				ehancedIm.setRGB(i, j + size - borderSize, BACKGROUND_COLOR);
-				if (i >= borderSize && i < size - borderSize) {
-					ehancedIm.setRGB(j, i, BACKGROUND_COLOR);
-					ehancedIm.setRGB(j + size - borderSize, i, BACKGROUND_COLOR);
-				}
-			}
+	/**
+	 * @return the path of an image of the images directory, the extension .png being added
+	 *         if missing
+	 */
+	private static String imagePath(String name) {
+		String projectPath = System.getProperty("user.dir");
+		String path = projectPath + SEP + PATH_HEADER + name;
+		if (!name.contains(".png")) {
+			path = path + ".png";
 		}
+		return path;
+	}
 
-		/*
-		 * Scaling
-		 */
-		for (int x = 0; x < previousSize; x++) {
-			for (int y = 0; y < previousSize; y++) {
-
-				int color = image.getRGB(x, y);
-				int startX = x * scale + borderSize;
-				int startY = y * scale + borderSize;
-
-				for (int i = startX; i < startX + scale; i++) {
-					for (int j = startY; j < startY + scale; j++) {
-						ehancedIm.setRGB(i, j, color);
-					}
-				}
-			}
+	private static BufferedImage scale(int[][] image, int scale, int borderSize) {
+		if (image.length != image[0].length) {
+			throw new IllegalArgumentException("The image must be squared");
 		}
-
-		return ehancedIm;
+		return Rasterizer.toImage(image, scale, borderSize);
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,56 @@
+package qrcode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Destination of the bytes of an image, a stream or a blocking channel, shared by the
+ * writers of the package
+ */
+interface ImageSink {
+
+	void write(byte[] bytes, int offset, int length) throws IOException;
+
+	/**
+	 * @return a sink writing to the stream, which is neither flushed nor closed
+	 */
+	static ImageSink of(OutputStream out) {
+		return out::write;
+	}
+
+	/**
+	 * @return a sink writing to the blocking channel, which is not closed
+	 */
+	static ImageSink of(WritableByteChannel channel) {
+		return (bytes, offset, length) -> writeFully(channel, ByteBuffer.wrap(bytes, offset, length));
+	}
+
+	/**
+	 * Write the remaining bytes of a buffer, a blocking channel possibly writing only part
+	 * of them per call
+	 */
+	static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining())
+		  {
+			channel.write(buffer);
+		  }
+	}
+
+	/**
+	 * Row buffer of the writes of a thread, grown to the longest row
+	 */
+	class RowBuffer {
+		private byte[] row = new byte[0];
+
+		final byte[] row(int length) {
+			if (row.length < length)
+			  {
+				row = new byte[length];
+			  }
+			return row;
+		}
+	}
+
+}
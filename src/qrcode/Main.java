@@ -1,5 +1,7 @@
 package qrcode;
 
+import qrcode.QRCodeInfos.CorrectionLvl;
+
 public class Main {
 
 	public static final String INPUT = "https://fr.wikihow.com/aller-%C3%A0-la-MAN-%C3%A0-l%27EPFL";
@@ -7,22 +9,31 @@ public class Main {
 	/*
 	 * Parameters
 	 */
-	public static final int VERSION = 4;
+	public static final CorrectionLvl LEVEL = CorrectionLvl.L;
 	public static final int MASK = 2;
 	public static final int SCALING = 15;
 
+	/**
+	 * Show the QR code of INPUT, or generate QR codes in batch when there are arguments
+	 * (see BatchGenerator)
+	 */
 	public static void main(String[] args) {
+		if (args.length > 0) {
+			BatchGenerator.main(args);
+			return;
+		}
 
 		/*
-		 * Encoding
+		 * Encoding, in the smallest version able to hold the whole input
 		 */
-		boolean[] encodedData = DataEncoding.byteModeEncoding(INPUT, VERSION);
+		final int VERSION = DataEncoding.chooseVersion(INPUT, LEVEL, QRCodeInfos.MIN_VERSION, QRCodeInfos.MAX_VERSION);
+		boolean[] encodedData = DataEncoding.byteModeEncoding(INPUT, VERSION, LEVEL);
 		
 		/*
 		 * image
 		 */
-		//int[][] qrCode = MatrixConstruction.renderQRCodeMatrix(VERSION, encodedData,MASK);
-		int[][] qrCode = MatrixConstruction.renderQRCodeMatrix(VERSION, encodedData);
+		//int[][] qrCode = MatrixConstruction.renderQRCodeMatrix(VERSION, encodedData,MASK,LEVEL);
+		int[][] qrCode = MatrixConstruction.renderQRCodeMatrix(VERSION, encodedData, LEVEL);
 
 
 		/*
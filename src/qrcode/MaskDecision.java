@@ -0,0 +1,141 @@
+package qrcode;
+
+import java.util.Arrays;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+/**
+ * Result of the mask search of a QR code: the penalty of each of the 8 masks and the mask
+ * chosen, the first one of lowest penalty. A decision can be persisted as its toString and
+ * read back by parse, then given back to MatrixConstruction.renderQRCodeMatrix as a hint to
+ * skip the search. Since every mask gives a valid QR code, a wrong hint only costs a higher
+ * penalty.
+ */
+public final class MaskDecision {
+
+	private static final int MASKS = 8;
+
+	private final int version;
+	private final CorrectionLvl lvl;
+	private final int mask;
+	private final int[] penalties;
+
+	/**
+	 * @param version
+	 *            the version of the QR code
+	 * @param lvl
+	 *            its error correction level
+	 * @param penalties
+	 *            the penalty of every mask
+	 */
+	public MaskDecision(int version, CorrectionLvl lvl, int[] penalties) {
+		if (version < QRCodeInfos.MIN_VERSION || version > QRCodeInfos.MAX_VERSION)
+		  {
+			throw new IllegalArgumentException("The version has to be between " + QRCodeInfos.MIN_VERSION + " and "
+					+ QRCodeInfos.MAX_VERSION);
+		  }
+		if (penalties.length != MASKS)
+		  {
+			throw new IllegalArgumentException("A decision needs the penalties of the " + MASKS + " masks");
+		  }
+		this.version = version;
+		this.lvl = lvl;
+		this.penalties = penalties.clone();
+
+		int best = 0;
+		for (int i = 1; i < MASKS; ++i)
+		  {
+			if (penalties[i] < penalties[best])
+			  {
+				best = i;
+			  }
+		  }
+		mask = best;
+	}
+
+	/**
+	 * Read a decision written by toString
+	 *
+	 * @param decision
+	 *            the decision, as version/level/penalty of mask 0,...,penalty of mask 7
+	 * @return the decision
+	 */
+	public static MaskDecision parse(String decision) {
+		String[] parts = decision.trim().split("/");
+		String[] values = (parts.length == 3) ? parts[2].split(",") : new String[0];
+		if (values.length != MASKS)
+		  {
+			throw new IllegalArgumentException("Invalid mask decision '" + decision + "'");
+		  }
+		try
+		  {
+			int[] penalties = new int[MASKS];
+			for (int i = 0; i < MASKS; ++i)
+			  {
+				penalties[i] = Integer.parseInt(values[i]);
+			  }
+			return new MaskDecision(Integer.parseInt(parts[0]), CorrectionLvl.valueOf(parts[1]), penalties);
+		  }
+		catch (IllegalArgumentException e)
+		  {
+			throw new IllegalArgumentException("Invalid mask decision '" + decision + "'", e);
+		  }
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	public CorrectionLvl getLevel() {
+		return lvl;
+	}
+
+	/**
+	 * @return the mask of lowest penalty
+	 */
+	public int getMask() {
+		return mask;
+	}
+
+	/**
+	 * @param mask
+	 *            a mask, between 0 and 7
+	 * @return the penalty of the QR code with this mask
+	 */
+	public int getPenalty(int mask) {
+		return penalties[mask];
+	}
+
+	/**
+	 * @return the penalty of every mask
+	 */
+	public int[] getPenalties() {
+		return penalties.clone();
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof MaskDecision))
+		  {
+			return false;
+		  }
+		MaskDecision decision = (MaskDecision) other;
+		return version == decision.version && lvl == decision.lvl && Arrays.equals(penalties, decision.penalties);
+	}
+
+	@Override
+	public int hashCode() {
+		return (version*31 + lvl.hashCode())*31 + Arrays.hashCode(penalties);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder().append(version).append('/').append(lvl).append('/');
+		for (int i = 0; i < MASKS; ++i)
+		  {
+			builder.append((i == 0) ? "" : ",").append(penalties[i]);
+		  }
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,87 @@
+package qrcode;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+/**
+ * Mask decisions of the QR codes already rendered, by a 64 bits hash of their encoded data,
+ * for payloads rendered again and again. A collision can only give a suboptimal mask, every
+ * mask giving a valid QR code. Once full, the cache keeps its decisions and stops adding new
+ * ones. A cache can be shared by several threads.
+ */
+public final class MaskHintCache {
+
+	private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+	private static final long FNV_PRIME = 0x100000001B3L;
+
+	private final int maxEntries;
+	private final Map<Long, MaskDecision> decisions = new ConcurrentHashMap<>();
+
+	/**
+	 * @param maxEntries
+	 *            the maximal number of decisions kept
+	 */
+	public MaskHintCache(int maxEntries) {
+		if (maxEntries < 1)
+		  {
+			throw new IllegalArgumentException("The cache has to hold at least one decision");
+		  }
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * @param data
+	 *            the encoded data of a QR code
+	 * @return the decision recorded for the data, null if none
+	 */
+	public MaskDecision get(int version, CorrectionLvl lvl, boolean[] data) {
+		MaskDecision decision = decisions.get(hash(version, lvl, data));
+		return (decision != null && decision.getVersion() == version && decision.getLevel() == lvl) ? decision : null;
+	}
+
+	/**
+	 * Record the decision of the data, unless the cache is full
+	 *
+	 * @param data
+	 *            the encoded data of a QR code
+	 * @param decision
+	 *            its mask decision
+	 */
+	public void put(boolean[] data, MaskDecision decision) {
+		if (decisions.size() < maxEntries)
+		  {
+			decisions.put(hash(decision.getVersion(), decision.getLevel(), data), decision);
+		  }
+	}
+
+	/**
+	 * @return the number of decisions recorded
+	 */
+	public int size() {
+		return decisions.size();
+	}
+
+	public void clear() {
+		decisions.clear();
+	}
+
+	/**
+	 * FNV-1a hash of the version, the level and the data packed in bytes
+	 */
+	static long hash(int version, CorrectionLvl lvl, boolean[] data) {
+		long hash = (FNV_OFFSET ^ (version << 2 | lvl.ordinal())) * FNV_PRIME;
+		for (int i = 0; i < data.length; i += 8)
+		  {
+			int bits = 0;
+			for (int k = i; k < Math.min(i + 8, data.length); ++k)
+			  {
+				bits = bits << 1 | (data[k] ? 1 : 0);
+			  }
+			hash = (hash ^ bits) * FNV_PRIME;
+		  }
+		return (hash ^ data.length) * FNV_PRIME;
+	}
+
+}
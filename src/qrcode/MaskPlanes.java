@@ -0,0 +1,251 @@
+package qrcode;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Data modules of a version in the order of MatrixConstruction.addDataInformation, and the
+ * modules inverted by each mask. The data is laid out once without mask, every masked
+ * variant being obtained by inverting the modules of its plane (and back).
+ */
+final class MaskPlanes {
+
+	private static final int B = 0xFF_00_00_00;
+	private static final int W = 0xFF_FF_FF_FF;
+
+	/*
+	 * XOR turning a light module into a dark one and conversely
+	 */
+	private static final int INVERT = B ^ W;
+
+	private static final int MASKS = 8;
+
+	private static final AtomicReferenceArray<MaskPlanes> PLANES =
+			new AtomicReferenceArray<>(QRCodeInfos.MAX_VERSION);
+
+	/*
+	 * Position (col << 8 | row) of the data module receiving the bit i of the data
+	 */
+	private final int[] modules;
+
+	/*
+	 * Same modules, as their index row*size+col in a row-major buffer of MatrixConstruction
+	 */
+	private final int[] offsets;
+
+	/*
+	 * Bit i of planes[mask] set when the mask inverts the data module i
+	 */
+	private final long[][] planes;
+
+	/**
+	 * Get the planes of a version, built on first use
+	 *
+	 * @param version
+	 *            the version of the QR codes
+	 * @return the planes, which can be shared by several threads
+	 */
+	static MaskPlanes forVersion(int version) {
+		MaskPlanes planes = PLANES.get(version-1);
+		if (planes == null)
+		  {
+			//the level only changes the format modules, which are skipped
+			planes = new MaskPlanes(MatrixConstruction.constructMatrix(version, 0));
+			if (!PLANES.compareAndSet(version-1, null, planes))
+			  {
+				planes = PLANES.get(version-1);
+			  }
+		  }
+		return planes;
+	}
+
+	/**
+	 * @param matrix
+	 *            the function patterns and format information of the version, 0 for the data modules
+	 */
+	private MaskPlanes(int[][] matrix) {
+		final int LEN_1 = matrix.length-1;
+		final int TIMING_COLUMN = 6;
+
+		int count = 0;
+		for (int[] column : matrix)
+		  {
+			for (int module : column)
+			  {
+				if (module == 0)
+				  {
+					++count;
+				  }
+			  }
+		  }
+		modules = new int[count];
+		offsets = new int[count];
+		planes = new long[MASKS][(count + 63) / 64];
+
+		//same zigzag as addDataInformation
+		int col = LEN_1, row = LEN_1, index = 0;
+		boolean goUpwards = true;
+		do
+		  {
+			if ((row < 0) || (row > LEN_1))
+			  {
+				row = (goUpwards) ? row+1 : row-1;
+				goUpwards = !goUpwards;
+				col -= 2;
+				if (col == TIMING_COLUMN)
+				  {
+					col -= 1;
+				  }
+				continue;
+			  }
+
+			for (int c = col; c >= col-1; --c)
+			  {
+				if (matrix[c][row] == 0)
+				  {
+					modules[index] = c << 8 | row;
+					offsets[index] = row*matrix.length + c;
+					for (int mask = 0; mask < MASKS; ++mask)
+					  {
+						//maskColor gives a dark module for a 0 bit when the mask inverts it
+						if (MatrixConstruction.maskColor(c, row, false, mask) == B)
+						  {
+							planes[mask][index >> 6] |= 1L << index;
+						  }
+					  }
+					++index;
+				  }
+			  }
+
+			row = (goUpwards) ? row-1 : row+1;
+
+		  } while (col >= 0);
+	}
+
+	/**
+	 * @return the number of data modules of the version
+	 */
+	int getModuleCount() {
+		return modules.length;
+	}
+
+	/**
+	 * @param index
+	 *            the index of a data bit
+	 * @return the position (col << 8 | row) of the module receiving it
+	 */
+	int getModule(int index) {
+		return modules[index];
+	}
+
+	/**
+	 * Write the data in the data modules without mask, like addDataInformation with an
+	 * invalid mask: the modules left after the end of the data are light
+	 *
+	 * @param matrix
+	 *            the matrix of the version
+	 * @param data
+	 *            the data bits
+	 */
+	void placeData(int[][] matrix, boolean[] data) {
+		final int DATA_LEN = Math.min(data.length, modules.length);
+		for (int i = 0; i < DATA_LEN; ++i)
+		  {
+			matrix[modules[i] >> 8][modules[i] & 0xFF] = (data[i]) ? B : W;
+		  }
+		for (int i = DATA_LEN; i < modules.length; ++i)
+		  {
+			matrix[modules[i] >> 8][modules[i] & 0xFF] = W;
+		  }
+	}
+
+	/**
+	 * Read the data modules of a masked matrix back, the inverse of placeData followed by
+	 * applyMask
+	 *
+	 * @param matrix
+	 *            the QR code, any module other than black being light
+	 * @param mask
+	 *            the mask of the QR code
+	 * @param codeWords
+	 *            receives the bits, 8 per codeword from the highest bit, the remainder
+	 *            bits after the last codeword being ignored
+	 */
+	void readData(int[][] matrix, int mask, int[] codeWords) {
+		final long[] PLANE = planes[mask];
+		final int BITS = Math.min(modules.length, 8*codeWords.length);
+		for (int i = 0; i < BITS; ++i)
+		  {
+			final boolean DARK = matrix[modules[i] >> 8][modules[i] & 0xFF] == B;
+			if (DARK != ((PLANE[i >> 6] >>> i & 1) != 0))
+			  {
+				codeWords[i >> 3] |= 0x80 >> (i & 7);
+			  }
+		  }
+	}
+
+	/**
+	 * Invert the data modules selected by a mask. Applying the same mask twice restores
+	 * the matrix.
+	 *
+	 * @param matrix
+	 *            the matrix of the version, its data modules being filled
+	 * @param mask
+	 *            the mask, between 0 and 7
+	 */
+	void applyMask(int[][] matrix, int mask) {
+		final long[] PLANE = planes[mask];
+		for (int word = 0; word < PLANE.length; ++word)
+		  {
+			long bits = PLANE[word];
+			while (bits != 0)
+			  {
+				final int MODULE = modules[word << 6 | Long.numberOfTrailingZeros(bits)];
+				matrix[MODULE >> 8][MODULE & 0xFF] ^= INVERT;
+				bits &= bits - 1;
+			  }
+		  }
+	}
+
+	/**
+	 * Write the data in the data modules of a row-major buffer without mask, like
+	 * placeData
+	 *
+	 * @param modules
+	 *            the buffer of the version, see MatrixConstruction.renderQRCodeModules
+	 * @param data
+	 *            the data bits
+	 */
+	void placeData(byte[] modules, boolean[] data) {
+		final int DATA_LEN = Math.min(data.length, offsets.length);
+		for (int i = 0; i < DATA_LEN; ++i)
+		  {
+			modules[offsets[i]] = (data[i]) ? MatrixConstruction.DARK : 0;
+		  }
+		for (int i = DATA_LEN; i < offsets.length; ++i)
+		  {
+			modules[offsets[i]] = 0;
+		  }
+	}
+
+	/**
+	 * Invert the data modules of a row-major buffer selected by a mask, like applyMask
+	 *
+	 * @param modules
+	 *            the buffer of the version, its data modules being filled
+	 * @param mask
+	 *            the mask, between 0 and 7
+	 */
+	void applyMask(byte[] modules, int mask) {
+		final long[] PLANE = planes[mask];
+		for (int word = 0; word < PLANE.length; ++word)
+		  {
+			long bits = PLANE[word];
+			while (bits != 0)
+			  {
+				modules[offsets[word << 6 | Long.numberOfTrailingZeros(bits)]] ^= MatrixConstruction.DARK;
+				bits &= bits - 1;
+			  }
+		  }
+	}
+
+}
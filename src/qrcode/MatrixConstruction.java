@@ -3,6 +3,11 @@ package qrcode;
 
 import java.util.Arrays;
     //Arrays.equals method used in bonus
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import qrcode.PipelineMetrics.Span;
+import qrcode.PipelineMetrics.Stage;
+import qrcode.QRCodeInfos.CorrectionLvl;
 
 public class MatrixConstruction {
 
@@ -19,6 +24,43 @@ public class MatrixConstruction {
 	private static final int B = 0xFF_00_00_00;
 	private static final int W = 0xFF_FF_FF_FF;
 
+	/*
+	 * Function patterns of each version (everything except the format information
+	 * and the data), built the first time a version is used then copied
+	 */
+	private static final AtomicReferenceArray<int[][]> TEMPLATES =
+			new AtomicReferenceArray<>(QRCodeInfos.MAX_VERSION);
+
+	/*
+	 * Row-major module buffers (see renderQRCodeModules): one byte per module, the module
+	 * (col, row) being at index row*size + col
+	 *
+	 * DARK = bit set for a dark module
+	 *
+	 * FUNCTION = bit set for a function pattern or format module, clear for a data module
+	 */
+	public static final byte DARK = 0b01;
+	public static final byte FUNCTION = 0b10;
+
+	/*
+	 * Function patterns of each version in row-major buffers, the format modules being
+	 * flagged but light
+	 */
+	private static final AtomicReferenceArray<byte[]> MODULE_TEMPLATES =
+			new AtomicReferenceArray<>(QRCodeInfos.MAX_VERSION);
+
+	/*
+	 * Penalties of evaluate on a row-major buffer, read without branch:
+	 *
+	 * STREAK_PENALTIES = by length of a streak up to its last module (6 and more), 3 for the
+	 * 5th module of the same colour and 1 for each next one
+	 *
+	 * SQUARE_PENALTIES = by colours of the 4 modules of a 2x2 square, one per bit, 3 when
+	 * they are all equal
+	 */
+	private static final int[] STREAK_PENALTIES = {0, 0, 0, 0, 0, 3, 1};
+	private static final int[] SQUARE_PENALTIES = {3, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 3};
+
 	/**
 	 * Create the matrix of a QR code with the given data.
 	 *
@@ -32,11 +74,29 @@ public class MatrixConstruction {
 	 * @return The matrix of the QR code
 	 */
 	public static int[][] renderQRCodeMatrix(int version, boolean[] data, int mask) {
+		return renderQRCodeMatrix(version, data, mask, CorrectionLvl.L);
+	}
+
+	/**
+	 * Create the matrix of a QR code with the given data and error correction level.
+	 *
+	 * @param version
+	 *            The version of the QR code
+	 * @param data
+	 *            The data to be written on the QR code, encoded with the same level
+	 * @param mask
+	 *            The mask used on the data. If not valid (e.g: -1), then no mask is
+	 *            used.
+	 * @param lvl
+	 *            The error correction level written in the format information
+	 * @return The matrix of the QR code
+	 */
+	public static int[][] renderQRCodeMatrix(int version, boolean[] data, int mask, CorrectionLvl lvl) {
 
 		/*
 		 * PART 2
 		 */
-		int[][] matrix = constructMatrix(version, mask);
+		int[][] matrix = constructMatrix(version, mask, lvl);
 		/*
 		 * PART 3
 		 */
@@ -57,7 +117,7 @@ public class MatrixConstruction {
 	 * Create a matrix (2D array) ready to accept data for a given version and mask
 	 *
 	 * @param version
-	 *            the version number of QR code (has to be between 1 and 4 included)
+	 *            the version number of QR code (has to be between 1 and 40 included)
 	 * @param mask
 	 *            the mask id to use to mask the data modules. Has to be between 0
 	 *            and 7 included to have a valid matrix. If the mask id is not
@@ -67,21 +127,66 @@ public class MatrixConstruction {
 	 *         initialized. The modules where the data should be remain empty.
 	 */
 	public static int[][] constructMatrix(int version, int mask) {
-		int[][] finalMatrix = initializeMatrix(version);
-		addFinderPatterns(finalMatrix);
-		addAlignmentPatterns(finalMatrix,version);
-		addTimingPatterns(finalMatrix);
-		addDarkModule(finalMatrix);
-		addFormatInformation(finalMatrix,mask);
+		return constructMatrix(version, mask, CorrectionLvl.L);
+	}
+
+	/**
+	 * Create a matrix (2D array) ready to accept data for a given version, mask
+	 * and error correction level
+	 *
+	 * @param version
+	 *            the version number of QR code
+	 * @param mask
+	 *            the mask id to use to mask the data modules
+	 * @param lvl
+	 *            the error correction level written in the format information
+	 * @return the qrcode with the patterns and format information modules
+	 *         initialized. The modules where the data should be remain empty.
+	 */
+	public static int[][] constructMatrix(int version, int mask, CorrectionLvl lvl) {
+		int[][] template = getTemplate(version);
+		int[][] finalMatrix = new int[template.length][];
+		for (int i = 0; i < template.length; ++i)
+		  {
+			finalMatrix[i] = template[i].clone();
+		  }
+		addFormatInformation(finalMatrix,mask,lvl);
 		return finalMatrix;
 	}
 
+	/**
+	 * Get the function patterns shared by all the QR codes of a version, building
+	 * them on first use
+	 *
+	 * @param version
+	 *            the version number of the QR code
+	 * @return the cached template, which must not be modified
+	 */
+	static int[][] getTemplate(int version) {
+		int[][] template = TEMPLATES.get(version-1);
+		if (template == null)
+		  {
+			template = initializeMatrix(version);
+			addFinderPatterns(template);
+			addAlignmentPatterns(template,version);
+			addTimingPatterns(template);
+			addDarkModule(template);
+			addVersionInformation(template,version);
+			//two threads may build the same template, only one of them is kept
+			if (!TEMPLATES.compareAndSet(version-1, null, template))
+			  {
+				template = TEMPLATES.get(version-1);
+			  }
+		  }
+		return template;
+	}
+
 	/**
 	 * Create an empty 2d array of integers of the size needed for a QR code of the
 	 * given version
 	 *
 	 * @param version
-	 *            the version number of the qr code (has to be between 1 and 4
+	 *            the version number of the qr code (has to be between 1 and 40
 	 *            included
 	 * @return an empty matrix
 	 */
@@ -116,23 +221,55 @@ public class MatrixConstruction {
 	}
 
 	/**
-	 * Add the alignment pattern if needed, does nothing for version 1
+	 * Add the alignment patterns if needed, does nothing for version 1
 	 *
 	 * @param matrix
 	 *            The 2D array to modify
 	 * @param version
-	 *            the version number of the QR code needs to be between 1 and 4
+	 *            the version number of the QR code needs to be between 1 and 40
 	 *            included
 	 */
 	public static void addAlignmentPatterns(int[][] matrix, int version) {
 
-		if (version == 1)
+		final int COUNT = QRCodeInfos.getAlignmentPatternCount(version);
+		final int LAST = COUNT-1;
+		//No alignment pattern needed for version 1 (COUNT == 0)
+
+		for (int i = 0; i < COUNT; ++i)
 		  {
-			return; //No alignment pattern needed for version 1
+			for (int j = 0; j < COUNT; ++j)
+			  {
+				//the three corners are taken by the finder patterns
+				if ((i == 0 && j == 0) || (i == 0 && j == LAST) || (i == LAST && j == 0))
+				  {
+					continue;
+				  }
+				placeAlignmentPattern(matrix, QRCodeInfos.getAlignmentPatternCenter(version, i),
+						QRCodeInfos.getAlignmentPatternCenter(version, j));
+			  }
+		  }
+	}
+
+	/**
+	 * Draw a 5x5 alignment pattern around the given centre, ring by ring,
+	 * without going through a pattern array
+	 *
+	 * @param matrix
+	 *            The 2D array to modify
+	 * @param col,row
+	 *            the coordinates of the centre of the pattern
+	 */
+	private static void placeAlignmentPattern(int[][] matrix, int col, int row) {
+
+		for (int i = -2; i <= 2; ++i)
+		  {
+			for (int j = -2; j <= 2; ++j)
+			  {
+				//only the middle ring is white
+				int ring = Math.max(Math.abs(i), Math.abs(j));
+				matrix[col+i][row+j] = (ring == 1) ? W : B;
+			  }
 		  }
-		int[][] align = createPatterns('a');
-		int coord = matrix.length-9; //top left corner of the square
-		placePattern(matrix,align,coord,coord);
 	}
 
 	/**
@@ -159,6 +296,31 @@ public class MatrixConstruction {
 		matrix[8][matrix.length-8]=B;
 	}
 
+	/**
+	 * Add the two version information blocks (6x3 and 3x6 modules, next to the
+	 * top-right and bottom-left finder patterns), does nothing below version 7
+	 *
+	 * @param matrix
+	 *            the 2-dimensional array representing the QR code
+	 * @param version
+	 *            the version number of the QR code
+	 */
+	public static void addVersionInformation(int[][] matrix, int version) {
+
+		if (version < 7)
+		  {
+			return; //No version information needed for versions 1 to 6
+		  }
+		final int SEQUENCE = QRCodeInfos.getVersionWord(version);
+		final int LEN_11 = matrix.length-11;
+
+		for (int i = 0; i < 18; ++i)
+		  {
+			int colour = (((SEQUENCE >> i) & 1) != 0) ? B : W;
+			matrix[LEN_11 + i%3][i/3] = matrix[i/3][LEN_11 + i%3] = colour;
+		  }
+	}
+
 	/**
 	 * Add the format information to the matrix
 	 *
@@ -168,6 +330,20 @@ public class MatrixConstruction {
 	 *            the mask id
 	 */
 	public static void addFormatInformation(int[][] matrix, int mask) {
+		addFormatInformation(matrix, mask, CorrectionLvl.L);
+	}
+
+	/**
+	 * Add the format information of a given error correction level to the matrix
+	 *
+	 * @param matrix
+	 *            the 2-dimensional array representing the QR code to modify
+	 * @param mask
+	 *            the mask id
+	 * @param lvl
+	 *            the error correction level
+	 */
+	public static void addFormatInformation(int[][] matrix, int mask, CorrectionLvl lvl) {
 
 		final int LEN = matrix.length;
 		final int LEN_9 = LEN - 9;
@@ -175,23 +351,24 @@ public class MatrixConstruction {
 		final int LEN_10 = LEN - 10;
 		final int LEN_7 = LEN - 7;
 
-		boolean[] sequence = QRCodeInfos.getFormatSequence(mask);
+		//15 bits word, the element i of the sequence being the bit 14-i
+		final int SEQUENCE = QRCodeInfos.getFormatWord(mask, lvl);
 		boolean addingData;
 
 		int seqIndex1 = 0, seqIndex2 = 0;
-		//seq1 and 2 are (post-)incremented every time a value in []sequence is used,
-		//therefore all values in []sequence will be used exactly twice (once for
+		//seq1 and 2 are (post-)incremented every time a value in the sequence is used,
+		//therefore all values in the sequence will be used exactly twice (once for
 		//every format line).
 		for (int i = 0; i < LEN; ++i)
 		  {
-			addingData = useFormatSequence(matrix, sequence[seqIndex1],i,8,8,LEN_9,
+			addingData = useFormatSequence(matrix, ((SEQUENCE >> (14-seqIndex1)) & 1) != 0,i,8,8,LEN_9,
 					6,seqIndex1,i);
 			if (addingData)
 			  {
 				++seqIndex1;
 			  }
 
-			addingData = useFormatSequence(matrix, sequence[seqIndex2],8,LEN_1-i,7,
+			addingData = useFormatSequence(matrix, ((SEQUENCE >> (14-seqIndex2)) & 1) != 0,8,LEN_1-i,7,
 					LEN_10,LEN_7,seqIndex2,i);
 			if (addingData)
 			  {
@@ -248,7 +425,7 @@ public class MatrixConstruction {
 	 *           the coordinates in the matrix of the top-left-most point
 	 *           of the pattern that will be placed inside
 	 */
-	private static void placePattern(int[][] matrix, int[][] pattern, int y, int x) {
+	static void placePattern(int[][] matrix, int[][] pattern, int y, int x) {
 
 		for (int i = 0; i < pattern.length; ++i)
 		{
@@ -268,12 +445,11 @@ public class MatrixConstruction {
 	 *            the desired pattern's type,
 	 *               'f': finder
 	 *               's': separator
-	 *               'a': alignment
 	 *               Other: null
 	 * @return [pattern]Template
 	 *            a square 2-dimensional array with the desired colour configuration and size
 	 */
-	private static int[][] createPatterns(char patternType) {
+	static int[][] createPatterns(char patternType) {
 
 		if (patternType == 'f')
 		  {
@@ -297,16 +473,6 @@ public class MatrixConstruction {
 			return separator;
 		  }
 
-		if (patternType == 'a')
-		  {
-			int[][] alignTemplate = new int [5][5];
-			makeRing(alignTemplate,B,0);
-			makeRing(alignTemplate,W,1);
-			alignTemplate[2][2] = B;
-
-			return alignTemplate;
-		  }
-
 		return null;
 	}
 
@@ -431,7 +597,8 @@ public class MatrixConstruction {
 		  	if (matrix[colLeft][row] == 0)
 		  	// The left side is always blank whenever the right side is blank, therefore
 		  	// if the left side is not blank, there is no way the right side is blank.
-		  		// These statements are valid for (at least) versions 1 through 4 of QRCodes.
+		  		// These statements are valid for all versions: alignment patterns and
+		  		// version information always start on the right column of a pair.
 			  {
 			    if (matrix[col][row] == 0)
 			      {
@@ -499,10 +666,28 @@ public class MatrixConstruction {
 	 * @return The matrix of the QR code
 	 */
 	public static int[][] renderQRCodeMatrix(int version, boolean[] data) {
+		return renderQRCodeMatrix(version, data, CorrectionLvl.L);
+	}
+
+	/**
+	 * Create the matrix of a QR code with the given data and error correction level,
+	 * the mask being computed automatically
+	 *
+	 * @param version
+	 *            The version of the QR code
+	 * @param data
+	 *            The data to be written on the QR code, encoded with the same level
+	 * @param lvl
+	 *            The error correction level
+	 * @return The matrix of the QR code
+	 */
+	public static int[][] renderQRCodeMatrix(int version, boolean[] data, CorrectionLvl lvl) {
 
-		int mask = findBestMasking(version, data);
+		//the matrix left by the mask search is already the one of the best mask
+		int[][] matrix = constructMatrix(version, 0, lvl);
+		placeBestMasking(matrix, version, data, lvl);
 
-		return renderQRCodeMatrix(version, data, mask);
+		return matrix;
 	}
 
 	/**
@@ -513,28 +698,178 @@ public class MatrixConstruction {
 	 * @return the mask number that minimize the penalty
 	 */
 	public static int findBestMasking(int version, boolean[] data) {
+		return findBestMasking(version, data, CorrectionLvl.L);
+	}
 
-		int temp = Integer.MAX_VALUE, mask = 0, eval;
+	/**
+	 * Find the best mask for a QRcode of the given error correction level
+	 *
+	 * @param version
+	 * @param data
+	 * @param lvl
+	 * @return the mask number that minimize the penalty
+	 */
+	public static int findBestMasking(int version, boolean[] data, CorrectionLvl lvl) {
+		return decideMasking(version, data, lvl).getMask();
+	}
+
+	/**
+	 * Score the 8 masks of a QRcode, the decision being able to be persisted and given back
+	 * as a hint to renderQRCodeMatrix
+	 *
+	 * @param version
+	 * @param data
+	 * @param lvl
+	 * @return the penalty of every mask and the mask that minimize it
+	 */
+	public static MaskDecision decideMasking(int version, boolean[] data, CorrectionLvl lvl) {
+		return placeBestMasking(constructMatrix(version, 0, lvl), version, data, lvl);
+	}
 
-		for (int i = 0; i < 8; ++i)
+	/**
+	 * Create the matrix of a QR code with the mask of a previous decision, without scoring
+	 * the masks. When verified, the penalty of the QR code with the hinted mask is computed
+	 * (one evaluation instead of 8) and the masks are searched again if it is not the
+	 * recorded one, i.e. if the data is not the one of the decision.
+	 *
+	 * @param version
+	 *            The version of the QR code
+	 * @param data
+	 *            The data to be written on the QR code, encoded with the same level
+	 * @param lvl
+	 *            The error correction level
+	 * @param hint
+	 *            the decision of a previous mask search, of the same version and level
+	 * @param verify
+	 *            true to check the penalty of the hinted mask
+	 * @return The matrix of the QR code
+	 */
+	public static int[][] renderQRCodeMatrix(int version, boolean[] data, CorrectionLvl lvl, MaskDecision hint,
+			boolean verify) {
+		if (hint.getVersion() != version || hint.getLevel() != lvl)
 		  {
-		  	int[][] tempMatrix = initializeMatrix(version);
-		  	addFinderPatterns(tempMatrix);
-		    addAlignmentPatterns(tempMatrix,version);
-		    addTimingPatterns(tempMatrix);
-		    addDarkModule(tempMatrix);
-		    addFormatInformation(tempMatrix,i);
-		    addDataInformation(tempMatrix, data, i);
+			throw new IllegalArgumentException("The hint is a decision for a version " + hint.getVersion()
+					+ " QR code of level " + hint.getLevel());
+		  }
+		int[][] matrix = constructMatrix(version, 0, lvl);
+		searchMasks(new MatrixStore(matrix), version, data, lvl, hint, verify, PackedPenaltyScorer.isEnabled());
+		return matrix;
+	}
 
-		    eval = evaluate(tempMatrix);
-		    if (temp > eval)
-			{
-			  temp = eval;
-			  mask = i;
-			}
+	/**
+	 * Create the matrix of a QR code with the mask recorded in a cache for the same data,
+	 * or with the best mask, which is then recorded
+	 *
+	 * @param version
+	 *            The version of the QR code
+	 * @param data
+	 *            The data to be written on the QR code, encoded with the same level
+	 * @param lvl
+	 *            The error correction level
+	 * @param cache
+	 *            the mask decisions of the data already rendered
+	 * @return The matrix of the QR code
+	 */
+	public static int[][] renderQRCodeMatrix(int version, boolean[] data, CorrectionLvl lvl, MaskHintCache cache) {
+		MaskDecision hint = cache.get(version, lvl, data);
+		if (hint != null)
+		  {
+			return renderQRCodeMatrix(version, data, lvl, hint, false);
+		  }
+		int[][] matrix = constructMatrix(version, 0, lvl);
+		cache.put(data, placeBestMasking(matrix, version, data, lvl));
+		return matrix;
+	}
+
+	/**
+	 * Search the best mask of a matrix from constructMatrix, and leave the QR code with it
+	 * in the matrix
+	 *
+	 * @param matrix
+	 *            a matrix of the version from constructMatrix, receiving the QR code
+	 * @param version
+	 * @param data
+	 * @param lvl
+	 * @return the penalty of every mask and the mask that minimize it
+	 */
+	private static MaskDecision placeBestMasking(int[][] matrix, int version, boolean[] data, CorrectionLvl lvl) {
+		return searchMasks(new MatrixStore(matrix), version, data, lvl, null, false, PackedPenaltyScorer.isEnabled());
+	}
+
+	/**
+	 * Lay the data out once without mask, score the 8 masks (on packed lines, or by
+	 * inverting the modules of their planes for the scalar search), and leave the modules
+	 * with the best mask applied. With a hint, its mask is applied without scoring the
+	 * others, unless verify finds that its penalty is not the recorded one.
+	 *
+	 * @param store
+	 *            the function patterns of the version, receiving the QR code
+	 * @param version
+	 * @param data
+	 * @param lvl
+	 * @param hint
+	 *            the decision of a previous search for the same data, or null
+	 * @param verify
+	 *            true to check the penalty of the hinted mask
+	 * @param packed
+	 *            true to score the masks with the PackedPenaltyScorer
+	 * @return the penalty of every mask and the mask that minimize it
+	 */
+	private static MaskDecision searchMasks(ModuleStore store, int version, boolean[] data, CorrectionLvl lvl,
+			MaskDecision hint, boolean verify, boolean packed) {
+
+		final Span SPAN = PipelineMetrics.begin();
+
+		final MaskPlanes PLANES = MaskPlanes.forVersion(version);
+		store.placeData(PLANES, data);
+
+		MaskDecision decision = hint;
+		if (hint != null)
+		  {
+			final int MASK = hint.getMask();
+			store.applyMask(PLANES, MASK);
+			store.addFormatInformation(MASK, lvl);
+			if (verify && store.evaluate(version, packed) != hint.getPenalty(MASK))
+			  {
+				//not the data of the decision: back to the unmasked data
+				store.applyMask(PLANES, MASK);
+				decision = null;
+			  }
+		  }
+		if (decision == null)
+		  {
+			int[] penalties;
+			if (packed)
+			  {
+				//the masks are scored on bit-packed lines, the modules are only masked once chosen
+				penalties = PackedPenaltyScorer.forVersion(version).evaluateMasks(data, lvl);
+			  }
+			else
+			  {
+				penalties = new int[8];
+				for (int i = 0; i < 8; ++i)
+				  {
+					//a request abandoned (see AsyncGenerator) stops between two masks
+					Checkpoint.check();
+					store.applyMask(PLANES, i);
+					store.addFormatInformation(i, lvl);
+
+					penalties[i] = store.evaluate(version, false);
+					//back to the unmasked data
+					store.applyMask(PLANES, i);
+				  }
+			  }
+			decision = new MaskDecision(version, lvl, penalties);
+			store.applyMask(PLANES, decision.getMask());
+			store.addFormatInformation(decision.getMask(), lvl);
 		  }
 
-		return mask;
+		SPAN.end(Stage.MASK_SEARCH);
+		if (SPAN.getListener() != null)
+		  {
+			SPAN.getListener().maskChosen(version, decision.getMask(), decision.getPenalty(decision.getMask()));
+		  }
+		return decision;
 	}
 
 	/**
@@ -546,6 +881,8 @@ public class MatrixConstruction {
 	 */
 	public static int evaluate(int[][] matrix) {
 
+		final Span SPAN = PipelineMetrics.begin();
+
 		final int LEN = matrix.length;
 		int penalty = 0;
 		int blackModules = 0;
@@ -583,6 +920,7 @@ public class MatrixConstruction {
 
 		penalty += Math.min(percentAbove,percentUnder)*2;
 
+		SPAN.end(Stage.EVALUATION);
 		return penalty;
 	}
 
@@ -746,4 +1084,374 @@ public class MatrixConstruction {
 		return true;
 	}
 
+	/**
+	 * Create the QR code of the given data and error correction level in a row-major buffer,
+	 * the mask being computed automatically: the same QR code as renderQRCodeMatrix, where
+	 * a line of modules is contiguous
+	 *
+	 * @param version
+	 *            The version of the QR code
+	 * @param data
+	 *            The data to be written on the QR code, encoded with the same level
+	 * @param lvl
+	 *            The error correction level
+	 * @return the modules, DARK and FUNCTION bits, the module (col, row) at index row*size + col
+	 */
+	public static byte[] renderQRCodeModules(int version, boolean[] data, CorrectionLvl lvl) {
+		return renderQRCodeModules(version, data, lvl, PackedPenaltyScorer.isEnabled());
+	}
+
+	/**
+	 * Same as renderQRCodeModules, the masks being scored with the PackedPenaltyScorer or
+	 * with evaluate whatever qrcode.scalarMaskSearch asks for
+	 */
+	static byte[] renderQRCodeModules(int version, boolean[] data, CorrectionLvl lvl, boolean packed) {
+		byte[] modules = getModuleTemplate(version).clone();
+		searchMasks(new BufferStore(modules), version, data, lvl, null, false, packed);
+		return modules;
+	}
+
+	/**
+	 * Get the function patterns of a version in a row-major buffer, building them on
+	 * first use
+	 *
+	 * @param version
+	 *            the version number of the QR code
+	 * @return the cached buffer, which must not be modified
+	 */
+	static byte[] getModuleTemplate(int version) {
+		byte[] template = MODULE_TEMPLATES.get(version-1);
+		if (template == null)
+		  {
+			final int[][] MATRIX = getTemplate(version);
+			final int SIZE = MATRIX.length;
+			template = new byte[SIZE*SIZE];
+			for (int col = 0; col < SIZE; ++col)
+			  {
+				final int[] COLUMN = MATRIX[col];
+				for (int row = 0; row < SIZE; ++row)
+				  {
+					if (COLUMN[row] != 0)
+					  {
+						template[row*SIZE + col] = (COLUMN[row] == B) ? FUNCTION | DARK : FUNCTION;
+					  }
+				  }
+			  }
+			placeFormatWord(template, SIZE, 0);
+			if (!MODULE_TEMPLATES.compareAndSet(version-1, null, template))
+			  {
+				template = MODULE_TEMPLATES.get(version-1);
+			  }
+		  }
+		return template;
+	}
+
+	/**
+	 * Add the format information of a given error correction level to a row-major buffer
+	 *
+	 * @param modules
+	 *            the buffer of the QR code to modify
+	 * @param mask
+	 *            the mask id
+	 * @param lvl
+	 *            the error correction level
+	 */
+	public static void addFormatInformation(byte[] modules, int mask, CorrectionLvl lvl) {
+		placeFormatWord(modules, getSize(modules), QRCodeInfos.getFormatWord(mask, lvl));
+	}
+
+	/**
+	 * Same positions as addFormatInformation, the bit 14 of the word being the first module
+	 * of each line
+	 */
+	private static void placeFormatWord(byte[] modules, int size, int word) {
+
+		final int FORMAT_LEN = 15;
+		int first = 0, second = 0;
+		for (int i = 0; i < size; ++i)
+		  {
+			if (((i < 8) || (i > size-9)) && (i != 6) && (first < FORMAT_LEN))
+			  {
+				modules[8*size + i] = (byte) (FUNCTION | ((word >> (FORMAT_LEN-1-first)) & DARK));
+				++first;
+			  }
+			if (((i < 7) || (i > size-10)) && (i != size-7) && (second < FORMAT_LEN))
+			  {
+				modules[(size-1-i)*size + 8] = (byte) (FUNCTION | ((word >> (FORMAT_LEN-1-second)) & DARK));
+				++second;
+			  }
+		  }
+	}
+
+	/**
+	 * @param modules
+	 *            a row-major buffer
+	 * @return the number of modules of a line of the buffer
+	 */
+	public static int getSize(byte[] modules) {
+		final int SIZE = (int) Math.sqrt(modules.length);
+		if (SIZE*SIZE != modules.length)
+		  {
+			throw new IllegalArgumentException("A module buffer holds size*size modules");
+		  }
+		return SIZE;
+	}
+
+	/**
+	 * @param size
+	 *            the number of modules of a line
+	 * @return the index of the module (col, row) in a row-major buffer
+	 */
+	public static int moduleIndex(int size, int col, int row) {
+		return row*size + col;
+	}
+
+	/**
+	 * @return true if the module (col, row) of a row-major buffer is dark
+	 */
+	public static boolean isDark(byte[] modules, int size, int col, int row) {
+		return (modules[row*size + col] & DARK) != 0;
+	}
+
+	/**
+	 * @return true if the module (col, row) of a row-major buffer belongs to a function
+	 *         pattern or to the format information
+	 */
+	public static boolean isFunction(byte[] modules, int size, int col, int row) {
+		return (modules[row*size + col] & FUNCTION) != 0;
+	}
+
+	/**
+	 * Export a row-major buffer to the matrix used by the rest of the program
+	 *
+	 * @param modules
+	 *            the buffer of a QR code
+	 * @return the matrix, matrix[col][row] being B or W
+	 */
+	public static int[][] toMatrix(byte[] modules) {
+
+		final int SIZE = getSize(modules);
+		int[][] matrix = new int[SIZE][SIZE];
+		for (int row = 0; row < SIZE; ++row)
+		  {
+			final int ROW = row*SIZE;
+			for (int col = 0; col < SIZE; ++col)
+			  {
+				matrix[col][row] = ((modules[ROW + col] & DARK) != 0) ? B : W;
+			  }
+		  }
+		return matrix;
+	}
+
+	/**
+	 * Import the matrix of a QR code in a row-major buffer, the function modules being
+	 * those of its version
+	 *
+	 * @param matrix
+	 *            the complete matrix of a QR code
+	 * @return the buffer, the module (col, row) at index row*size + col
+	 */
+	public static byte[] toModules(int[][] matrix) {
+
+		final int SIZE = matrix.length;
+		final int VERSION = (SIZE - 17) / 4;
+		if ((SIZE - 17) % 4 != 0 || VERSION < QRCodeInfos.MIN_VERSION || VERSION > QRCodeInfos.MAX_VERSION)
+		  {
+			throw new IllegalArgumentException("A matrix of size " + SIZE + " is not the one of a QR code");
+		  }
+		byte[] modules = getModuleTemplate(VERSION).clone();
+		for (int col = 0; col < SIZE; ++col)
+		  {
+			final int[] COLUMN = matrix[col];
+			if (COLUMN.length != SIZE)
+			  {
+				throw new IllegalArgumentException("The matrix has to be square");
+			  }
+			for (int row = 0; row < SIZE; ++row)
+			  {
+				final int INDEX = row*SIZE + col;
+				modules[INDEX] = (byte) ((modules[INDEX] & FUNCTION) | ((COLUMN[row] == B) ? DARK : 0));
+			  }
+		  }
+		return modules;
+	}
+
+	/**
+	 * Compute the penalty score of a row-major buffer, the same as evaluate on its matrix.
+	 * The buffer is read in order: the streaks and finder-like lines of the columns are
+	 * followed in one state per column, updated row after row, and each streak is scored
+	 * module by module, so that no line has to be read again.
+	 *
+	 * @param modules
+	 *            the buffer of a QR code
+	 * @return the penalty score obtained by the QR code, lower the better
+	 */
+	public static int evaluate(byte[] modules) {
+
+		final Span SPAN = PipelineMetrics.begin();
+
+		final int SIZE = getSize(modules);
+		int penalty = 0;
+		int blackModules = 0;
+
+		//length of the current streak and last 11 modules (the oldest in bit 10) of each column
+		final int[] COLUMN_RUNS = new int[SIZE];
+		final int[] COLUMN_WINDOWS = new int[SIZE];
+
+		for (int row = 0; row < SIZE; ++row)
+		  {
+			final int ROW = row*SIZE;
+			int run = 0;
+			int window = 0;
+			for (int col = 0; col < SIZE; ++col)
+			  {
+				final int MODULE = modules[ROW + col] & DARK;
+				blackModules += MODULE;
+
+				//the previous module of the line is the bit 0 of its window
+				run = nextRun(run, window, MODULE);
+				window = nextWindow(window, MODULE);
+				penalty += STREAK_PENALTIES[Math.min(run, 6)] + finderLinePenalty(window, col);
+
+				final int COLUMN_RUN = nextRun(COLUMN_RUNS[col], COLUMN_WINDOWS[col], MODULE);
+				final int COLUMN_WINDOW = nextWindow(COLUMN_WINDOWS[col], MODULE);
+				penalty += STREAK_PENALTIES[Math.min(COLUMN_RUN, 6)] + finderLinePenalty(COLUMN_WINDOW, row);
+				COLUMN_RUNS[col] = COLUMN_RUN;
+				COLUMN_WINDOWS[col] = COLUMN_WINDOW;
+			  }
+
+			//2x2 squares ending on this row, read in this row and the previous one
+			if (row > 0)
+			  {
+				for (int k = ROW + 1; k < ROW + SIZE; ++k)
+				  {
+					penalty += SQUARE_PENALTIES[(modules[k] & DARK) | (modules[k-1] & DARK) << 1
+							| (modules[k-SIZE] & DARK) << 2 | (modules[k-SIZE-1] & DARK) << 3];
+				  }
+			  }
+		  }
+
+		double percentageBlackModules = ((double) blackModules/(SIZE*SIZE))*100;
+		int percentUnder, percentAbove, floorPercentageBlackMods;
+
+		floorPercentageBlackMods = (int) percentageBlackModules;
+		percentUnder = floorPercentageBlackMods - (floorPercentageBlackMods % 5);
+		percentAbove = percentUnder + 5;
+
+		percentUnder = Math.abs(percentUnder-50);
+		percentAbove = Math.abs(percentAbove-50);
+
+		penalty += Math.min(percentAbove,percentUnder)*2;
+
+		SPAN.end(Stage.EVALUATION);
+		return penalty;
+	}
+
+	/**
+	 * @param run
+	 *          length of the streak of the previous module, 0 for the first one of a line
+	 * @param window
+	 *          the modules of the line before this one, the previous one in bit 0
+	 * @return the length of the streak of this module, without branch
+	 */
+	private static int nextRun(int run, int window, int module) {
+		final int SAME = 1 ^ (window & DARK) ^ module;
+		return (run & -SAME) + 1;
+	}
+
+	/**
+	 * @return the last 11 modules of a line once the next one is read, the oldest in bit 10
+	 */
+	private static int nextWindow(int window, int module) {
+		return (window << 1 | module) & 0x7FF;
+	}
+
+	/**
+	 * @param window
+	 *          the last 11 modules of a line
+	 * @param position
+	 *          the position of the last one in the line
+	 * @return 40 if they are a finder-like line
+	 */
+	private static int finderLinePenalty(int window, int position) {
+
+		final int SEQUENCE_1 = 0b00001011101; //W,W,W,W,B,W,B,B,B,W,B
+		final int SEQUENCE_2 = 0b10111010000; //B,W,B,B,B,W,B,W,W,W,W
+		final int STILL_INBOUNDS = 10;
+		final int BIG_PENALTY = 40;
+
+		return ((position >= STILL_INBOUNDS) && ((window == SEQUENCE_1) || (window == SEQUENCE_2))) ? BIG_PENALTY : 0;
+	}
+
+	/**
+	 * QR code under construction as seen by searchMasks, a matrix or a row-major buffer
+	 */
+	private interface ModuleStore {
+		void placeData(MaskPlanes planes, boolean[] data);
+
+		void applyMask(MaskPlanes planes, int mask);
+
+		void addFormatInformation(int mask, CorrectionLvl lvl);
+
+		int evaluate(int version, boolean packed);
+	}
+
+	private static final class MatrixStore implements ModuleStore {
+		private final int[][] matrix;
+
+		private MatrixStore(int[][] matrix) {
+			this.matrix = matrix;
+		}
+
+		@Override
+		public void placeData(MaskPlanes planes, boolean[] data) {
+			planes.placeData(matrix, data);
+		}
+
+		@Override
+		public void applyMask(MaskPlanes planes, int mask) {
+			planes.applyMask(matrix, mask);
+		}
+
+		@Override
+		public void addFormatInformation(int mask, CorrectionLvl lvl) {
+			MatrixConstruction.addFormatInformation(matrix, mask, lvl);
+		}
+
+		@Override
+		public int evaluate(int version, boolean packed) {
+			//same score as evaluate, the function patterns being scored once per version
+			return packed ? PackedPenaltyScorer.forVersion(version).evaluate(matrix)
+					: PenaltyScorer.forVersion(version).evaluate(matrix);
+		}
+	}
+
+	private static final class BufferStore implements ModuleStore {
+		private final byte[] modules;
+
+		private BufferStore(byte[] modules) {
+			this.modules = modules;
+		}
+
+		@Override
+		public void placeData(MaskPlanes planes, boolean[] data) {
+			planes.placeData(modules, data);
+		}
+
+		@Override
+		public void applyMask(MaskPlanes planes, int mask) {
+			planes.applyMask(modules, mask);
+		}
+
+		@Override
+		public void addFormatInformation(int mask, CorrectionLvl lvl) {
+			MatrixConstruction.addFormatInformation(modules, mask, lvl);
+		}
+
+		@Override
+		public int evaluate(int version, boolean packed) {
+			return MatrixConstruction.evaluate(modules);
+		}
+	}
+
 }
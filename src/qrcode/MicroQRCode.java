@@ -0,0 +1,394 @@
+package qrcode;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+import reedsolomon.ErrorCorrectionEncoding;
+
+public final class MicroQRCode {
+
+	/*
+	 * Constants defining the color in ARGB format, same as MatrixConstruction
+	 */
+	private static final int B = 0xFF_00_00_00;
+	private static final int W = 0xFF_FF_FF_FF;
+
+	/*
+	 * Values of the mode indicator, also used to index the character count lengths
+	 */
+	public static final int NUMERIC_MODE = 0;
+	public static final int ALPHANUMERIC_MODE = 1;
+	public static final int BYTE_MODE = 2;
+
+	private static final String ALPHANUMERIC_CHARSET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ $%*+-./:";
+
+	/**
+	 * Create the Micro QR code of the input, in the smallest version holding it with
+	 * the correction level L, with the best mask
+	 *
+	 * @param input
+	 * @return The matrix of the Micro QR code
+	 * @throws IllegalArgumentException if the input does not fit in a M4 symbol
+	 */
+	public static int[][] renderMicroQRCode(String input) {
+		return renderMicroQRCode(input, chooseVersion(input, CorrectionLvl.L), CorrectionLvl.L);
+	}
+
+	/**
+	 * Create the Micro QR code of the input with the best mask
+	 *
+	 * @param input
+	 * @param version
+	 *            the version of the Micro QR code, 1 to 4 for M1 to M4
+	 * @param lvl
+	 *            the error correction level, which the version has to offer
+	 * @return The matrix of the Micro QR code
+	 */
+	public static int[][] renderMicroQRCode(String input, int version, CorrectionLvl lvl) {
+		boolean[] data = encode(input, version, lvl);
+		int mask = findBestMasking(version, lvl, data);
+		return renderMatrix(version, lvl, data, mask);
+	}
+
+	/*
+	 * =======================================================================
+	 * ****************************** ENCODING *******************************
+	 * =======================================================================
+	 */
+
+	/**
+	 * Find the smallest version offering the correction level and able to hold the input
+	 * in its most compact mode
+	 *
+	 * @param input
+	 * @param lvl
+	 * @return the version, 1 to 4 for M1 to M4
+	 * @throws IllegalArgumentException if no Micro QR version can hold the input
+	 */
+	public static int chooseVersion(String input, CorrectionLvl lvl) {
+		for (int version = MicroQRCodeInfos.MIN_VERSION; version <= MicroQRCodeInfos.MAX_VERSION; ++version)
+		  {
+			if (MicroQRCodeInfos.hasCorrectionLvl(version, lvl) && fits(input, version, lvl))
+			  {
+				return version;
+			  }
+		  }
+		throw new IllegalArgumentException("The input does not fit in a Micro QR code with the level "+lvl);
+	}
+
+	/**
+	 * Get the most compact mode able to encode the input
+	 *
+	 * @param input
+	 * @return NUMERIC_MODE for digits only, ALPHANUMERIC_MODE for digits, upper case letters
+	 *         and " $%*+-./:", BYTE_MODE otherwise
+	 */
+	public static int chooseMode(String input) {
+		int mode = NUMERIC_MODE;
+		for (int i = 0; i < input.length(); ++i)
+		  {
+			char c = input.charAt(i);
+			if (c < '0' || c > '9')
+			  {
+				if (ALPHANUMERIC_CHARSET.indexOf(c) < 0)
+				  {
+					return BYTE_MODE;
+				  }
+				mode = ALPHANUMERIC_MODE;
+			  }
+		  }
+		return mode;
+	}
+
+	/**
+	 * Encode the input into the data and error correction bits of a Micro QR code
+	 *
+	 * @param input
+	 * @param version
+	 *            the version of the Micro QR code, 1 to 4 for M1 to M4
+	 * @param lvl
+	 *            the error correction level
+	 * @return the data bits followed by the error correction bits
+	 * @throws IllegalArgumentException if the input does not fit in the version
+	 */
+	public static boolean[] encode(String input, int version, CorrectionLvl lvl) {
+		if (!fits(input, version, lvl))
+		  {
+			throw new IllegalArgumentException("The input does not fit in a M"+version+"-"+lvl+" Micro QR code");
+		  }
+		final int MODE = chooseMode(input);
+		final int DATA_BITS = MicroQRCodeInfos.getDataBitsLength(version, lvl);
+		final int ECC_LEN = MicroQRCodeInfos.getECCLength(version, lvl);
+
+		int[] codeWords = new int[MicroQRCodeInfos.getCodeWordsLength(version, lvl)];
+		int bitIndex = appendBits(codeWords, 0, MODE, MicroQRCodeInfos.getModeBits(version));
+
+		if (MODE == BYTE_MODE)
+		  {
+			int[] bytes = DataEncoding.encodeString(input, input.length());
+			bitIndex = appendBits(codeWords, bitIndex, bytes.length, MicroQRCodeInfos.getCharCountBits(version, MODE));
+			for (int datum : bytes)
+			  {
+				bitIndex = appendBits(codeWords, bitIndex, datum & 0xFF, 8);
+			  }
+		  }
+		else
+		  {
+			bitIndex = appendBits(codeWords, bitIndex, input.length(), MicroQRCodeInfos.getCharCountBits(version, MODE));
+			bitIndex = (MODE == NUMERIC_MODE) ? appendNumeric(codeWords, bitIndex, input)
+					: appendAlphanumeric(codeWords, bitIndex, input);
+		  }
+
+		//the terminator (zeros) is cut when the symbol is full, then the last byte is padded with zeros
+		bitIndex += Math.min(MicroQRCodeInfos.getTerminatorBits(version), DATA_BITS - bitIndex);
+		bitIndex = (bitIndex + 7) / 8 * 8;
+
+		//the 4 bits codeword of M1 and M3, if reached, stays 0000
+		for (int i = bitIndex/8, k = 0; i < DATA_BITS/8; ++i, ++k)
+		  {
+			codeWords[i] = (k%2 == 0) ? 236 : 17;
+		  }
+
+		int[] encodings = ErrorCorrectionEncoding.encode(codeWords, ECC_LEN);
+
+		boolean[] bits = new boolean[DATA_BITS + 8*ECC_LEN];
+		System.arraycopy(DataEncoding.bytesToBinaryArray(codeWords), 0, bits, 0, DATA_BITS);
+		System.arraycopy(DataEncoding.bytesToBinaryArray(encodings), 0, bits, DATA_BITS, 8*ECC_LEN);
+		return bits;
+	}
+
+	/**
+	 * Tell whether the input fits in a version with a correction level
+	 */
+	private static boolean fits(String input, int version, CorrectionLvl lvl) {
+		if (!MicroQRCodeInfos.hasCorrectionLvl(version, lvl))
+		  {
+			return false;
+		  }
+		final int MODE = chooseMode(input);
+		final int COUNT_BITS = MicroQRCodeInfos.getCharCountBits(version, MODE);
+		if (COUNT_BITS == 0)
+		  {
+			return false; //mode not offered by the version
+		  }
+
+		int count = input.length();
+		int dataBits;
+		switch (MODE)
+		    {
+				case NUMERIC_MODE: dataBits = 10*(count/3) + ((count%3 == 0) ? 0 : 1 + 3*(count%3)); break;
+				case ALPHANUMERIC_MODE: dataBits = 11*(count/2) + 6*(count%2); break;
+				default: count = DataEncoding.encodeString(input, input.length()).length; dataBits = 8*count;
+		    }
+
+		return (count < (1 << COUNT_BITS)) && (MicroQRCodeInfos.getModeBits(version) + COUNT_BITS + dataBits
+				<= MicroQRCodeInfos.getDataBitsLength(version, lvl));
+	}
+
+	/**
+	 * Write digits 3 by 3 on 10 bits, the last 2 or 1 digits on 7 or 4 bits
+	 */
+	private static int appendNumeric(int[] codeWords, int bitIndex, String input) {
+		for (int i = 0; i < input.length(); i += 3)
+		  {
+			int end = Math.min(i+3, input.length());
+			int group = Integer.parseInt(input.substring(i, end));
+			bitIndex = appendBits(codeWords, bitIndex, group, 3*(end-i)+1);
+		  }
+		return bitIndex;
+	}
+
+	/**
+	 * Write characters 2 by 2 on 11 bits, the last one on 6 bits
+	 */
+	private static int appendAlphanumeric(int[] codeWords, int bitIndex, String input) {
+		for (int i = 0; i < input.length(); i += 2)
+		  {
+			int value = ALPHANUMERIC_CHARSET.indexOf(input.charAt(i));
+			if (i+1 < input.length())
+			  {
+				value = 45*value + ALPHANUMERIC_CHARSET.indexOf(input.charAt(i+1));
+				bitIndex = appendBits(codeWords, bitIndex, value, 11);
+			  }
+			else
+			  {
+				bitIndex = appendBits(codeWords, bitIndex, value, 6);
+			  }
+		  }
+		return bitIndex;
+	}
+
+	/**
+	 * Write the length least significant bits of value, most significant bit first
+	 *
+	 * @return the index of the next bit to write
+	 */
+	private static int appendBits(int[] codeWords, int bitIndex, int value, int length) {
+		for (int i = length-1; i >= 0; --i)
+		  {
+			if (((value >> i) & 1) != 0)
+			  {
+				codeWords[bitIndex >> 3] |= 0x80 >> (bitIndex & 7);
+			  }
+			++bitIndex;
+		  }
+		return bitIndex;
+	}
+
+	/*
+	 * =======================================================================
+	 * ****************************** MATRIX *********************************
+	 * =======================================================================
+	 */
+
+	/**
+	 * Create the matrix of a Micro QR code with the given data
+	 *
+	 * @param version
+	 *            the version of the Micro QR code, 1 to 4 for M1 to M4
+	 * @param lvl
+	 *            the error correction level
+	 * @param data
+	 *            the bits produced by encode
+	 * @param mask
+	 *            the Micro QR mask, between 0 and 3
+	 * @return The matrix of the Micro QR code
+	 */
+	public static int[][] renderMatrix(int version, CorrectionLvl lvl, boolean[] data, int mask) {
+		int[][] matrix = constructMatrix(version, lvl, mask);
+		addDataInformation(matrix, data, mask);
+		return matrix;
+	}
+
+	/**
+	 * Create a matrix ready to accept data: the finder pattern and its separator, the
+	 * timing patterns on the top row and left column, and the format information
+	 *
+	 * @param version
+	 *            the version of the Micro QR code, 1 to 4 for M1 to M4
+	 * @param lvl
+	 *            the error correction level
+	 * @param mask
+	 *            the Micro QR mask, between 0 and 3
+	 * @return the matrix, data modules left empty
+	 */
+	public static int[][] constructMatrix(int version, CorrectionLvl lvl, int mask) {
+		final int LEN = MicroQRCodeInfos.getMatrixSize(version);
+		int[][] matrix = new int[LEN][LEN];
+
+		MatrixConstruction.placePattern(matrix, MatrixConstruction.createPatterns('s'), 0, 0);
+		MatrixConstruction.placePattern(matrix, MatrixConstruction.createPatterns('f'), 0, 0);
+
+		for (int i = 8; i < LEN; ++i)
+		  {
+			matrix[0][i] = matrix[i][0] = (i%2 == 0) ? B : W;
+		  }
+
+		addFormatInformation(matrix, version, lvl, mask);
+		return matrix;
+	}
+
+	/**
+	 * Add the single copy of the format information, along the row and column 8
+	 * next to the finder pattern
+	 *
+	 * @param matrix
+	 * @param version
+	 * @param lvl
+	 * @param mask
+	 *            the Micro QR mask, between 0 and 3
+	 */
+	public static void addFormatInformation(int[][] matrix, int version, CorrectionLvl lvl, int mask) {
+		//15 bits word, the element i of the sequence being the bit 14-i
+		final int SEQUENCE = MicroQRCodeInfos.getFormatWord(version, lvl, mask);
+
+		for (int i = 0; i < 8; ++i)
+		  {
+			//row 8 from left to right holds the bits 14 to 7, column 8 upwards the bits 7 to 0
+			matrix[i+1][8] = (((SEQUENCE >> (14-i)) & 1) != 0) ? B : W;
+			matrix[8][i+1] = (((SEQUENCE >> i) & 1) != 0) ? B : W;
+		  }
+	}
+
+	/**
+	 * Add the data bits in two-module-wide columns going up and down from the bottom
+	 * right corner. Unlike QR codes, the timing column is the leftmost one and no
+	 * column is skipped.
+	 *
+	 * @param matrix
+	 *            a matrix produced by constructMatrix
+	 * @param data
+	 *            the data to add
+	 * @param mask
+	 *            the Micro QR mask, between 0 and 3
+	 */
+	public static void addDataInformation(int[][] matrix, boolean[] data, int mask) {
+		final int LEN_1 = matrix.length-1;
+		final int QR_MASK = MicroQRCodeInfos.getQRCodeMask(mask);
+		int seqIndex = 0;
+		boolean goUpwards = true;
+
+		for (int col = LEN_1; col > 0; col -= 2)
+		  {
+			for (int k = 0; k <= LEN_1; ++k)
+			  {
+				int row = goUpwards ? LEN_1-k : k;
+				for (int c = col; c >= col-1; --c)
+				  {
+					if (matrix[c][row] == 0)
+					  {
+						boolean bit = (seqIndex < data.length) && data[seqIndex];
+						matrix[c][row] = MatrixConstruction.maskColor(c, row, bit, QR_MASK);
+						++seqIndex;
+					  }
+				  }
+			  }
+			goUpwards = !goUpwards;
+		  }
+	}
+
+	/**
+	 * Find the mask giving the highest evaluation
+	 *
+	 * @param version
+	 * @param lvl
+	 * @param data
+	 * @return the Micro QR mask, between 0 and 3
+	 */
+	public static int findBestMasking(int version, CorrectionLvl lvl, boolean[] data) {
+		int best = -1, mask = 0;
+		for (int i = 0; i < 4; ++i)
+		  {
+			int eval = evaluate(renderMatrix(version, lvl, data, i));
+			if (eval > best)
+			  {
+				best = eval;
+				mask = i;
+			  }
+		  }
+		return mask;
+	}
+
+	/**
+	 * Compute the score of a Micro QR code: it only looks at the dark modules of the right
+	 * column and of the bottom row (timing modules excluded), which should both be numerous
+	 *
+	 * @param matrix
+	 * @return the score, higher the better
+	 */
+	public static int evaluate(int[][] matrix) {
+		final int LEN_1 = matrix.length-1;
+		int sumRight = 0, sumBottom = 0;
+		for (int i = 1; i <= LEN_1; ++i)
+		  {
+			if (matrix[LEN_1][i] == B)
+			  {
+				++sumRight;
+			  }
+			if (matrix[i][LEN_1] == B)
+			  {
+				++sumBottom;
+			  }
+		  }
+		return (sumRight <= sumBottom) ? sumRight*16 + sumBottom : sumBottom*16 + sumRight;
+	}
+
+}
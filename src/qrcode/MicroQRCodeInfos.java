@@ -0,0 +1,223 @@
+package qrcode;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+public final class MicroQRCodeInfos {
+
+	private static final int MATRIX_SIZE_VERSION_M1 =11;
+	private static final int MATRIX_SIZE_STEP =2;
+
+	public static final int MIN_VERSION = 1;
+	public static final int MAX_VERSION = 4;
+
+	/*
+	 * Micro QR codes have four masks, which are the QR code masks 1, 4, 6 and 7
+	 */
+	private static final int[] MASKS = {1,4,6,7};
+
+	/*
+	 * Symbol number written in the format information, indexed by [version-1][correction level].
+	 * -1 when the version does not offer the correction level. M1 only detects errors, it is
+	 * given the level L.
+	 */
+	private static final int[][] SYMBOL_NUMBER = {
+			{ 0, -1, -1, -1 },
+			{ 1, 2, -1, -1 },
+			{ 3, 4, -1, -1 },
+			{ 5, 6, 7, -1 } };
+
+	/*
+	 * Total number of codewords of each version, M1 to M4
+	 */
+	private static final int[] TOTAL_CODE_WORDS = { 5, 10, 17, 24 };
+
+	/*
+	 * Number of error correction codewords indexed by symbol number (there is a single block)
+	 */
+	private static final int[] ERROR_CORRECTION_CODEWORDS = { 2, 5, 6, 6, 8, 8, 10, 14 };
+
+	/*
+	 * Bit lengths of the mode indicator, the terminator, and the character counts of the numeric,
+	 * alphanumeric and byte modes (0 when the version does not offer the mode), indexed by version-1
+	 */
+	private static final int[] MODE_BITS = { 0, 1, 2, 3 };
+	private static final int[] TERMINATOR_BITS = { 3, 5, 7, 9 };
+	private static final int[][] CHAR_COUNT_BITS = {
+			{ 3, 0, 0 },
+			{ 4, 3, 0 },
+			{ 5, 4, 4 },
+			{ 6, 5, 5 } };
+
+	/*
+	 * Format information words, indexed by the 5 bits (symbol number << 2 | mask)
+	 */
+	private static final int[] FORMAT_WORDS = {
+			0x4445, 0x4172, 0x4E2B, 0x4B1C, 0x55AE, 0x5099, 0x5FC0, 0x5AF7,
+			0x6793, 0x62A4, 0x6DFD, 0x68CA, 0x7678, 0x734F, 0x7C16, 0x7921,
+			0x06DE, 0x03E9, 0x0CB0, 0x0987, 0x1735, 0x1202, 0x1D5B, 0x186C,
+			0x2508, 0x203F, 0x2F66, 0x2A51, 0x34E3, 0x31D4, 0x3E8D, 0x3BBA };
+
+	/**
+	 * Get the size of the matrix for a specific Micro QR version.
+	 * i.e. For version M1, this method return 11 since the matrix has a size of 11x11
+	 * @param version
+	 *         version of the Micro QR code, 1 to 4 for M1 to M4
+	 * @return the size of the matrix
+	 */
+	public static int getMatrixSize(int version) {
+		checkVersion(version);
+		return MATRIX_SIZE_VERSION_M1 + MATRIX_SIZE_STEP*(version-1);
+	}
+
+	/**
+	 * Tell whether a version offers a correction level
+	 * @param version
+	 *         version of the Micro QR code
+	 * @param lvl
+	 *         the error correction level
+	 * @return false for H, for M and Q in M1, and for Q in M2 and M3
+	 */
+	public static boolean hasCorrectionLvl(int version, CorrectionLvl lvl) {
+		checkVersion(version);
+		return SYMBOL_NUMBER[version-1][lvl.ordinal()] >= 0;
+	}
+
+	/**
+	 * Get the total number of codewords (data and error correction) for a given version
+	 * @param version
+	 *         version of the Micro QR code
+	 * @return the number of codewords, counting the 4 bits codeword of M1 and M3 as one
+	 */
+	public static int getTotalCodeWordsLength(int version) {
+		checkVersion(version);
+		return TOTAL_CODE_WORDS[version-1];
+	}
+
+	/**
+	 * Get the number of error correction codewords for a given version and correction level
+	 * @param version
+	 *         version of the Micro QR code
+	 * @param lvl
+	 *         the error correction level
+	 * @return the number of error correction codewords
+	 */
+	public static int getECCLength(int version, CorrectionLvl lvl) {
+		return ERROR_CORRECTION_CODEWORDS[getSymbolNumber(version, lvl)];
+	}
+
+	/**
+	 * Get the number of codewords encoding the data for a given version and correction level
+	 * @param version
+	 *         version of the Micro QR code
+	 * @param lvl
+	 *         the error correction level
+	 * @return the number of data codewords, counting the 4 bits codeword of M1 and M3 as one
+	 */
+	public static int getCodeWordsLength(int version, CorrectionLvl lvl) {
+		return TOTAL_CODE_WORDS[version-1] - getECCLength(version, lvl);
+	}
+
+	/**
+	 * Get the number of data bits for a given version and correction level
+	 * @param version
+	 *         version of the Micro QR code
+	 * @param lvl
+	 *         the error correction level
+	 * @return the number of data bits, the last data codeword of M1 and M3 being only 4 bits long
+	 */
+	public static int getDataBitsLength(int version, CorrectionLvl lvl) {
+		int bits = getCodeWordsLength(version, lvl)*8;
+		return hasHalfCodeWord(version) ? bits-4 : bits;
+	}
+
+	/**
+	 * Tell whether the last data codeword of a version is only 4 bits long
+	 * @param version
+	 *         version of the Micro QR code
+	 * @return true for M1 and M3
+	 */
+	public static boolean hasHalfCodeWord(int version) {
+		checkVersion(version);
+		return version == 1 || version == 3;
+	}
+
+	/**
+	 * Get the length of the mode indicator
+	 * @param version
+	 *         version of the Micro QR code
+	 * @return 0 for M1 (numeric only) up to 3 for M4
+	 */
+	public static int getModeBits(int version) {
+		checkVersion(version);
+		return MODE_BITS[version-1];
+	}
+
+	/**
+	 * Get the length of the terminator
+	 * @param version
+	 *         version of the Micro QR code
+	 * @return 3 for M1 up to 9 for M4
+	 */
+	public static int getTerminatorBits(int version) {
+		checkVersion(version);
+		return TERMINATOR_BITS[version-1];
+	}
+
+	/**
+	 * Get the length of the character count indicator
+	 * @param version
+	 *         version of the Micro QR code
+	 * @param mode
+	 *         0 for numeric, 1 for alphanumeric, 2 for byte (the value of the mode indicator)
+	 * @return the number of bits, 0 if the version does not offer the mode
+	 */
+	public static int getCharCountBits(int version, int mode) {
+		checkVersion(version);
+		return CHAR_COUNT_BITS[version-1][mode];
+	}
+
+	/**
+	 * Get the QR code mask matching a Micro QR mask, for MatrixConstruction.maskColor
+	 * @param mask
+	 *         the Micro QR mask, between 0 and 3
+	 * @return the QR code mask
+	 */
+	public static int getQRCodeMask(int mask) {
+		if(mask>3 || mask <0) {
+			throw new IllegalArgumentException("The mask has to be between 0 and 3");
+		}
+		return MASKS[mask];
+	}
+
+	/**
+	 * Return the 15 bits format information word (BCH(15,5) code of the symbol number and mask,
+	 * already xored with the Micro QR format mask), read from a precomputed table
+	 * @param version
+	 *         version of the Micro QR code
+	 * @param lvl
+	 *         the error correction level
+	 * @param mask
+	 *         the Micro QR mask, between 0 and 3
+	 * @return the format information, bit 14 being the first pixel of the sequence
+	 */
+	public static int getFormatWord(int version, CorrectionLvl lvl, int mask) {
+		if(mask>3 || mask <0) {
+			throw new IllegalArgumentException("The mask has to be between 0 and 3");
+		}
+		return FORMAT_WORDS[getSymbolNumber(version, lvl) << 2 | mask];
+	}
+
+	private static int getSymbolNumber(int version, CorrectionLvl lvl) {
+		if (!hasCorrectionLvl(version, lvl)) {
+			throw new IllegalArgumentException("Micro QR version M"+version+" does not offer the level "+lvl);
+		}
+		return SYMBOL_NUMBER[version-1][lvl.ordinal()];
+	}
+
+	private static void checkVersion(int version) {
+		if(version<MIN_VERSION || version>MAX_VERSION) {
+			throw new IllegalArgumentException("The Micro QR version has to be between 1 (M1) and 4 (M4)");
+		}
+	}
+
+}
@@ -0,0 +1,350 @@
+package qrcode;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import qrcode.PipelineMetrics.Span;
+import qrcode.PipelineMetrics.Stage;
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+/**
+ * Penalty score of the QR codes of a version computed on bit-packed lines: every row and
+ * every column is a sequence of 64 bits words (dark modules being 1), so that the runs,
+ * squares and finder-like lines of 64 positions are tested by a few word operations.
+ * The masks are applied to the packed lines by XOR with packed mask planes, the matrix
+ * being only rendered for the chosen mask.
+ *
+ * The mask search uses it unless the system property qrcode.scalarMaskSearch is true, in
+ * which case PenaltyScorer scores the rendered matrices.
+ */
+public final class PackedPenaltyScorer {
+
+	private static final int B = 0xFF_00_00_00;
+
+	private static final int SQUARE_PENALTY = 3;
+	private static final int RUN_PENALTY = 3;
+	private static final int RUN_LENGTH = 5;
+	private static final int FINDER_PENALTY = 40;
+	private static final boolean[] FINDER_LINE_1 =
+		{false,false,false,false,true,false,true,true,true,false,true};
+	private static final boolean[] FINDER_LINE_2 =
+		{true,false,true,true,true,false,true,false,false,false,false};
+	private static final int FINDER_LEN = FINDER_LINE_1.length;
+
+	private static final int MASKS = 8;
+	private static final int FORMAT_LEN = 15;
+
+	private static final boolean ENABLED = !Boolean.getBoolean("qrcode.scalarMaskSearch");
+
+	private static final AtomicReferenceArray<PackedPenaltyScorer> SCORERS =
+			new AtomicReferenceArray<>(QRCodeInfos.MAX_VERSION);
+
+	private final int size;
+	private final int words;
+	private final MaskPlanes planes;
+
+	/*
+	 * Rows and columns of the function patterns (format information excluded), each line
+	 * being words long
+	 */
+	private final long[] fixedRows;
+	private final long[] fixedColumns;
+
+	/*
+	 * Data modules inverted by each mask, as rows and columns
+	 */
+	private final long[][] maskRows;
+	private final long[][] maskColumns;
+
+	/*
+	 * Position (col << 8 | row) of each format module, and the bit of the format word it shows
+	 */
+	private final int[] formatModules;
+	private final int[] formatBits;
+
+	/*
+	 * Positions of the lines where a window of 2, 5, 6 or 11 modules can start
+	 */
+	private final long[] windows2;
+	private final long[] windows5;
+	private final long[] windows6;
+	private final long[] windows11;
+
+	/**
+	 * @return false if the system property qrcode.scalarMaskSearch asks for the scalar mask search
+	 */
+	public static boolean isEnabled() {
+		return ENABLED;
+	}
+
+	/**
+	 * Get the scorer of a version, built on first use
+	 *
+	 * @param version
+	 *            the version of the QR codes to score
+	 * @return the scorer, which can be shared by several threads
+	 */
+	public static PackedPenaltyScorer forVersion(int version) {
+		PackedPenaltyScorer scorer = SCORERS.get(version-1);
+		if (scorer == null)
+		  {
+			scorer = new PackedPenaltyScorer(version);
+			if (!SCORERS.compareAndSet(version-1, null, scorer))
+			  {
+				scorer = SCORERS.get(version-1);
+			  }
+		  }
+		return scorer;
+	}
+
+	private PackedPenaltyScorer(int version) {
+		final int[][] TEMPLATE = MatrixConstruction.getTemplate(version);
+		size = TEMPLATE.length;
+		words = (size + 63) / 64;
+		planes = MaskPlanes.forVersion(version);
+
+		fixedRows = new long[size*words];
+		fixedColumns = new long[size*words];
+		for (int col = 0; col < size; ++col)
+		  {
+			for (int row = 0; row < size; ++row)
+			  {
+				if (TEMPLATE[col][row] == B)
+				  {
+					setModule(fixedRows, fixedColumns, col, row);
+				  }
+			  }
+		  }
+
+		maskRows = new long[MASKS][size*words];
+		maskColumns = new long[MASKS][size*words];
+		for (int i = 0; i < planes.getModuleCount(); ++i)
+		  {
+			final int COL = planes.getModule(i) >> 8;
+			final int ROW = planes.getModule(i) & 0xFF;
+			for (int mask = 0; mask < MASKS; ++mask)
+			  {
+				if (MatrixConstruction.maskColor(COL, ROW, false, mask) == B)
+				  {
+					setModule(maskRows[mask], maskColumns[mask], COL, ROW);
+				  }
+			  }
+		  }
+
+		//same positions as MatrixConstruction.addFormatInformation
+		formatModules = new int[2*FORMAT_LEN];
+		formatBits = new int[2*FORMAT_LEN];
+		int first = 0, second = 0;
+		for (int i = 0; i < size; ++i)
+		  {
+			if (((i < 8) || (i > size-9)) && (i != 6) && (first < FORMAT_LEN))
+			  {
+				formatModules[first] = i << 8 | 8;
+				formatBits[first] = FORMAT_LEN-1-first;
+				++first;
+			  }
+			if (((i < 7) || (i > size-10)) && (i != size-7) && (second < FORMAT_LEN))
+			  {
+				formatModules[FORMAT_LEN + second] = 8 << 8 | (size-1-i);
+				formatBits[FORMAT_LEN + second] = FORMAT_LEN-1-second;
+				++second;
+			  }
+		  }
+
+		windows2 = windows(2);
+		windows5 = windows(5);
+		windows6 = windows(6);
+		windows11 = windows(FINDER_LEN);
+	}
+
+	/**
+	 * Compute the penalty score of a QR code of the version of this scorer on its packed lines
+	 *
+	 * @param matrix
+	 *            the QR code, whose modules are all black or white
+	 * @return the same score as MatrixConstruction.evaluate(matrix)
+	 */
+	public int evaluate(int[][] matrix) {
+		if (matrix.length != size)
+		  {
+			throw new IllegalArgumentException("The matrix does not have the size of the version of the scorer");
+		  }
+		final Span SPAN = PipelineMetrics.begin();
+
+		long[] rows = new long[size*words];
+		long[] columns = new long[size*words];
+		for (int col = 0; col < size; ++col)
+		  {
+			for (int row = 0; row < size; ++row)
+			  {
+				if (matrix[col][row] == B)
+				  {
+					setModule(rows, columns, col, row);
+				  }
+			  }
+		  }
+		int penalty = score(rows, columns, new long[words]);
+
+		SPAN.end(Stage.EVALUATION);
+		return penalty;
+	}
+
+	/**
+	 * Compute the penalty score of the data with each of the 8 masks, without rendering
+	 * any matrix
+	 *
+	 * @param data
+	 *            the data bits, placed like MatrixConstruction.addDataInformation
+	 * @param lvl
+	 *            the error correction level written in the format information
+	 * @return the penalty of each mask, the same as MatrixConstruction.evaluate of the
+	 *         matrix rendered with it
+	 */
+	public int[] evaluateMasks(boolean[] data, CorrectionLvl lvl) {
+		final int LENGTH = size*words;
+
+		long[] dataRows = new long[LENGTH];
+		long[] dataColumns = new long[LENGTH];
+		final int DATA_LEN = Math.min(data.length, planes.getModuleCount());
+		for (int i = 0; i < DATA_LEN; ++i)
+		  {
+			if (data[i])
+			  {
+				setModule(dataRows, dataColumns, planes.getModule(i) >> 8, planes.getModule(i) & 0xFF);
+			  }
+		  }
+
+		int[] penalties = new int[MASKS];
+		long[] rows = new long[LENGTH];
+		long[] columns = new long[LENGTH];
+		long[] scratch = new long[words];
+		for (int mask = 0; mask < MASKS; ++mask)
+		  {
+			//a request abandoned (see AsyncGenerator) stops between two masks
+			Checkpoint.check();
+			final Span SPAN = PipelineMetrics.begin();
+
+			final long[] MASK_ROWS = maskRows[mask];
+			final long[] MASK_COLUMNS = maskColumns[mask];
+			for (int i = 0; i < LENGTH; ++i)
+			  {
+				rows[i] = fixedRows[i] | (dataRows[i] ^ MASK_ROWS[i]);
+				columns[i] = fixedColumns[i] | (dataColumns[i] ^ MASK_COLUMNS[i]);
+			  }
+			final int FORMAT = QRCodeInfos.getFormatWord(mask, lvl);
+			for (int i = 0; i < formatModules.length; ++i)
+			  {
+				if (((FORMAT >> formatBits[i]) & 1) != 0)
+				  {
+					setModule(rows, columns, formatModules[i] >> 8, formatModules[i] & 0xFF);
+				  }
+			  }
+			penalties[mask] = score(rows, columns, scratch);
+
+			SPAN.end(Stage.EVALUATION);
+		  }
+		return penalties;
+	}
+
+	private int score(long[] rows, long[] columns, long[] scratch) {
+		int darkModules = 0;
+		for (long word : rows)
+		  {
+			darkModules += Long.bitCount(word);
+		  }
+		return linesPenalty(rows, scratch) + linesPenalty(columns, scratch) + squaresPenalty(rows, scratch)
+				+ PenaltyScorer.darkModulesPenalty(darkModules, size);
+	}
+
+	/**
+	 * Penalty of the runs and finder-like lines of every line. A run of n >= 5 modules
+	 * contains n-4 windows of 5 equal modules and n-5 windows of 6: its penalty 3+(n-5) is
+	 * 3 per window of 5 minus 2 per window of 6.
+	 *
+	 * @param scratch
+	 *            receives the equal neighbours of a line
+	 */
+	private int linesPenalty(long[] lines, long[] scratch) {
+		final int LAST = words-1;
+		int windows5Count = 0, windows6Count = 0, finderLines = 0;
+		for (int offset = 0; offset < lines.length; offset += words)
+		  {
+			//bit i: the modules i and i+1 have the same colour
+			for (int w = 0; w < words; ++w)
+			  {
+				scratch[w] = ~(lines[offset + w] ^ shifted(lines, offset, w, LAST, 1));
+			  }
+
+			for (int w = 0; w < words; ++w)
+			  {
+				final long EQUAL = scratch[w];
+				final long RUN5 = EQUAL & shifted(scratch, 0, w, LAST, 1) & shifted(scratch, 0, w, LAST, 2)
+						& shifted(scratch, 0, w, LAST, 3) & windows5[w];
+				windows5Count += Long.bitCount(RUN5);
+				windows6Count += Long.bitCount(RUN5 & shifted(scratch, 0, w, LAST, 4) & windows6[w]);
+
+				//bit i: the 11 modules from i match a finder-like line
+				final long LINE = lines[offset + w];
+				long finder1 = windows11[w] & (FINDER_LINE_1[0] ? LINE : ~LINE);
+				long finder2 = windows11[w] & (FINDER_LINE_2[0] ? LINE : ~LINE);
+				for (int k = 1; k < FINDER_LEN; ++k)
+				  {
+					final long MODULES = shifted(lines, offset, w, LAST, k);
+					finder1 &= FINDER_LINE_1[k] ? MODULES : ~MODULES;
+					finder2 &= FINDER_LINE_2[k] ? MODULES : ~MODULES;
+				  }
+				finderLines += Long.bitCount(finder1) + Long.bitCount(finder2);
+			  }
+		  }
+		return RUN_PENALTY*windows5Count - (RUN_PENALTY-1)*windows6Count + FINDER_PENALTY*finderLines;
+	}
+
+	/**
+	 * Penalty of the 2x2 squares of one colour, two consecutive rows at a time
+	 *
+	 * @param scratch
+	 *            receives the modules equal to the one below them
+	 */
+	private int squaresPenalty(long[] rows, long[] scratch) {
+		final int LAST = words-1;
+		int squares = 0;
+		for (int offset = 0; offset + words < rows.length; offset += words)
+		  {
+			for (int w = 0; w < words; ++w)
+			  {
+				scratch[w] = ~(rows[offset + w] ^ rows[offset + words + w]);
+			  }
+			for (int w = 0; w < words; ++w)
+			  {
+				final long HORIZONTAL = ~(rows[offset + w] ^ shifted(rows, offset, w, LAST, 1));
+				squares += Long.bitCount(scratch[w] & shifted(scratch, 0, w, LAST, 1) & HORIZONTAL & windows2[w]);
+			  }
+		  }
+		return SQUARE_PENALTY*squares;
+	}
+
+	/**
+	 * Bits shift..shift+63 of a line, i.e. the word w of the line shifted towards bit 0
+	 *
+	 * @param shift
+	 *            between 1 and 63
+	 */
+	private static long shifted(long[] bits, int offset, int w, int last, int shift) {
+		final long VALUE = bits[offset + w] >>> shift;
+		return (w < last) ? VALUE | bits[offset + w + 1] << (64 - shift) : VALUE;
+	}
+
+	private void setModule(long[] rows, long[] columns, int col, int row) {
+		rows[row*words + (col >> 6)] |= 1L << col;
+		columns[col*words + (row >> 6)] |= 1L << row;
+	}
+
+	private long[] windows(int length) {
+		long[] bits = new long[words];
+		for (int i = 0; i + length <= size; ++i)
+		  {
+			bits[i >> 6] |= 1L << i;
+		  }
+		return bits;
+	}
+
+}
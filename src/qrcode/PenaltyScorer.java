@@ -0,0 +1,343 @@
+package qrcode;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import qrcode.PipelineMetrics.Span;
+import qrcode.PipelineMetrics.Stage;
+
+/**
+ * Penalty score of the QR codes of a version, equal to MatrixConstruction.evaluate but
+ * without scoring the function patterns again for every mask: the squares, finder-like
+ * lines and lines made of function pattern modules only are scored once per version.
+ * Only the parts touching the data and format modules are scanned for every matrix.
+ */
+public final class PenaltyScorer {
+
+	private static final int B = 0xFF_00_00_00;
+	private static final int W = 0xFF_FF_FF_FF;
+
+	private static final int SQUARE_PENALTY = 3;
+	private static final int RUN_PENALTY = 3;
+	private static final int RUN_LENGTH = 5;
+	private static final int FINDER_PENALTY = 40;
+	private static final int[] FINDER_LINE_1 = {W,W,W,W,B,W,B,B,B,W,B};
+	private static final int[] FINDER_LINE_2 = {B,W,B,B,B,W,B,W,W,W,W};
+	private static final int FINDER_LEN = FINDER_LINE_1.length;
+
+	/*
+	 * The finder-like lines as 11 bits, dark modules being 1 and the first module the highest bit
+	 */
+	private static final int FINDER_BITS_1 = 0b00001011101;
+	private static final int FINDER_BITS_2 = 0b10111010000;
+	private static final int FINDER_BITS_MASK = (1 << FINDER_LEN) - 1;
+
+	/*
+	 * Flags of a module, for the square and the finder-like lines starting on it
+	 */
+	private static final byte SQUARE = 1;
+	private static final byte HORIZONTAL = 2;
+	private static final byte VERTICAL = 4;
+
+	private static final AtomicReferenceArray<PenaltyScorer> SCORERS =
+			new AtomicReferenceArray<>(QRCodeInfos.MAX_VERSION);
+
+	private final int size;
+
+	/*
+	 * Penalty of the squares, finder-like lines and lines made of fixed modules only
+	 */
+	private final int fixedPenalty;
+
+	/*
+	 * Squares and finder-like lines to score for every matrix, indexed by col*size+row
+	 */
+	private final byte[] variable;
+	private final boolean[] variableColumns;
+	private final boolean[] variableRows;
+
+	/**
+	 * Get the scorer of a version, built on first use
+	 *
+	 * @param version
+	 *            the version of the QR codes to score
+	 * @return the scorer, which can be shared by several threads
+	 */
+	public static PenaltyScorer forVersion(int version) {
+		PenaltyScorer scorer = SCORERS.get(version-1);
+		if (scorer == null)
+		  {
+			scorer = new PenaltyScorer(MatrixConstruction.getTemplate(version));
+			if (!SCORERS.compareAndSet(version-1, null, scorer))
+			  {
+				scorer = SCORERS.get(version-1);
+			  }
+		  }
+		return scorer;
+	}
+
+	/**
+	 * @param template
+	 *            the function patterns of the version, 0 for the data and format modules
+	 */
+	private PenaltyScorer(int[][] template) {
+		size = template.length;
+		variable = new byte[size*size];
+		variableColumns = new boolean[size];
+		variableRows = new boolean[size];
+
+		int penalty = 0;
+		for (int col = 0; col < size; ++col)
+		  {
+			for (int row = 0; row < size; ++row)
+			  {
+				if (template[col][row] == 0)
+				  {
+					variableColumns[col] = true;
+					variableRows[row] = true;
+				  }
+
+				if ((col < size-1) && (row < size-1))
+				  {
+					if (isFixed(template, col, row, 2, 2))
+					  {
+						penalty += squarePenalty(template, col, row);
+					  }
+					else
+					  {
+						variable[col*size+row] |= SQUARE;
+					  }
+				  }
+				if (size - col >= FINDER_LEN)
+				  {
+					if (isFixed(template, col, row, FINDER_LEN, 1))
+					  {
+						penalty += finderPenalty(template, col, row, true);
+					  }
+					else
+					  {
+						variable[col*size+row] |= HORIZONTAL;
+					  }
+				  }
+				if (size - row >= FINDER_LEN)
+				  {
+					if (isFixed(template, col, row, 1, FINDER_LEN))
+					  {
+						penalty += finderPenalty(template, col, row, false);
+					  }
+					else
+					  {
+						variable[col*size+row] |= VERTICAL;
+					  }
+				  }
+			  }
+		  }
+
+		for (int i = 0; i < size; ++i)
+		  {
+			if (!variableColumns[i])
+			  {
+				penalty += columnPenalty(template, i);
+			  }
+			if (!variableRows[i])
+			  {
+				penalty += rowPenalty(template, i);
+			  }
+		  }
+		fixedPenalty = penalty;
+	}
+
+	/**
+	 * Compute the penalty score of a QR code of the version of this scorer, in a single pass
+	 * over the columns: the runs and finder-like lines of the rows are followed module by
+	 * module, the finder-like lines being compared as 11 bits shift registers
+	 *
+	 * @param matrix
+	 *            the QR code, whose function patterns are those of MatrixConstruction.constructMatrix
+	 *            and whose modules are all black or white
+	 * @return the same score as MatrixConstruction.evaluate(matrix)
+	 */
+	public int evaluate(int[][] matrix) {
+		if (matrix.length != size)
+		  {
+			throw new IllegalArgumentException("The matrix does not have the size of the version of the scorer");
+		  }
+		final Span SPAN = PipelineMetrics.begin();
+
+		int penalty = fixedPenalty;
+		int darkModules = 0;
+
+		//length of the current run and last 11 modules of every row
+		int[] rowRuns = new int[size];
+		int[] rowLines = new int[size];
+		int[] previous = null;
+
+		for (int col = 0; col < size; ++col)
+		  {
+			final int[] COLUMN = matrix[col];
+			final boolean SCORE_COLUMN = variableColumns[col];
+			final int OFFSET = col*size;
+			int columnRun = 0, columnLine = 0;
+
+			for (int row = 0; row < size; ++row)
+			  {
+				final int MODULE = COLUMN[row];
+				final int DARK = (MODULE == B) ? 1 : 0;
+				darkModules += DARK;
+
+				//runs of the column and of the row, without branching on the colours which
+				//are unpredictable in the data: a run ends when same is 0
+				final int UP = (row > 0) ? COLUMN[row-1] : ~MODULE;
+				final int LEFT = (col > 0) ? previous[row] : ~MODULE;
+				int same = (MODULE == UP) ? 1 : 0;
+				if (SCORE_COLUMN)
+				  {
+					penalty += runPenalty(columnRun) & (same-1);
+				  }
+				columnRun = columnRun*same + 1;
+				same = (MODULE == LEFT) ? 1 : 0;
+				if (variableRows[row])
+				  {
+					penalty += runPenalty(rowRuns[row]) & (same-1);
+				  }
+				rowRuns[row] = rowRuns[row]*same + 1;
+
+				//finder-like lines ending on this module
+				columnLine = (columnLine << 1 | DARK) & FINDER_BITS_MASK;
+				rowLines[row] = (rowLines[row] << 1 | DARK) & FINDER_BITS_MASK;
+				if ((row >= FINDER_LEN-1) && ((variable[OFFSET + row-FINDER_LEN+1] & VERTICAL) != 0)
+						&& isFinderLine(columnLine))
+				  {
+					penalty += FINDER_PENALTY;
+				  }
+				if ((col >= FINDER_LEN-1) && ((variable[OFFSET - (FINDER_LEN-1)*size + row] & HORIZONTAL) != 0)
+						&& isFinderLine(rowLines[row]))
+				  {
+					penalty += FINDER_PENALTY;
+				  }
+
+				//square ending on this module
+				if ((col > 0) && (row > 0) && ((variable[OFFSET - size + row-1] & SQUARE) != 0))
+				  {
+					final int DIFFERENT = (MODULE ^ UP) | (MODULE ^ LEFT) | (MODULE ^ previous[row-1]);
+					penalty += (DIFFERENT == 0) ? SQUARE_PENALTY : 0;
+				  }
+			  }
+
+			if (SCORE_COLUMN)
+			  {
+				penalty += runPenalty(columnRun);
+			  }
+			previous = COLUMN;
+		  }
+
+		for (int row = 0; row < size; ++row)
+		  {
+			if (variableRows[row])
+			  {
+				penalty += runPenalty(rowRuns[row]);
+			  }
+		  }
+		penalty += darkModulesPenalty(darkModules, size);
+
+		SPAN.end(Stage.EVALUATION);
+		return penalty;
+	}
+
+	private static boolean isFinderLine(int bits) {
+		return (bits == FINDER_BITS_1) || (bits == FINDER_BITS_2);
+	}
+
+	private static boolean isFixed(int[][] template, int col, int row, int width, int height) {
+		for (int c = col; c < col+width; ++c)
+		  {
+			for (int r = row; r < row+height; ++r)
+			  {
+				if (template[c][r] == 0)
+				  {
+					return false;
+				  }
+			  }
+		  }
+		return true;
+	}
+
+	private static int squarePenalty(int[][] matrix, int col, int row) {
+		final int COLOUR = matrix[col][row];
+		if ((matrix[col+1][row] == COLOUR) && (matrix[col][row+1] == COLOUR) && (matrix[col+1][row+1] == COLOUR))
+		  {
+			return SQUARE_PENALTY;
+		  }
+		return 0;
+	}
+
+	/**
+	 * Test the finder-like line starting at col,row: the first module tells which of the two
+	 * sequences it may be
+	 */
+	private static int finderPenalty(int[][] matrix, int col, int row, boolean horizontal) {
+		final int[] SEQUENCE = (matrix[col][row] == W) ? FINDER_LINE_1 : FINDER_LINE_2;
+		for (int i = 0; i < FINDER_LEN; ++i)
+		  {
+			int module = horizontal ? matrix[col+i][row] : matrix[col][row+i];
+			if (module != SEQUENCE[i])
+			  {
+				return 0;
+			  }
+		  }
+		return FINDER_PENALTY;
+	}
+
+	/**
+	 * Penalty of the runs of 5 or more modules of the same colour: 3, plus 1 per additional module
+	 */
+	private static int columnPenalty(int[][] matrix, int col) {
+		final int[] COLUMN = matrix[col];
+		int penalty = 0, run = 1;
+		for (int row = 1; row < COLUMN.length; ++row)
+		  {
+			if (COLUMN[row] == COLUMN[row-1])
+			  {
+				++run;
+			  }
+			else
+			  {
+				penalty += runPenalty(run);
+				run = 1;
+			  }
+		  }
+		return penalty + runPenalty(run);
+	}
+
+	private static int rowPenalty(int[][] matrix, int row) {
+		int penalty = 0, run = 1;
+		for (int col = 1; col < matrix.length; ++col)
+		  {
+			if (matrix[col][row] == matrix[col-1][row])
+			  {
+				++run;
+			  }
+			else
+			  {
+				penalty += runPenalty(run);
+				run = 1;
+			  }
+		  }
+		return penalty + runPenalty(run);
+	}
+
+	private static int runPenalty(int run) {
+		return (run < RUN_LENGTH) ? 0 : RUN_PENALTY + run - RUN_LENGTH;
+	}
+
+	/**
+	 * Penalty of the proportion of dark modules, computed like MatrixConstruction.evaluate
+	 */
+	static int darkModulesPenalty(int darkModules, int size) {
+		double percentageBlackModules = ((double) darkModules/(size*size))*100;
+		int floorPercentage = (int) percentageBlackModules;
+		int percentUnder = floorPercentage - (floorPercentage % 5);
+		int percentAbove = percentUnder + 5;
+		return Math.min(Math.abs(percentAbove-50), Math.abs(percentUnder-50))*2;
+	}
+
+}
@@ -0,0 +1,70 @@
+package qrcode;
+
+import qrcode.PipelineMetrics.Stage;
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+/**
+ * Receive the measures of the generation pipeline, once registered with
+ * PipelineMetrics.setListener. The methods are called by the thread running the stage,
+ * possibly by several threads at once.
+ */
+public interface PipelineListener {
+
+	/**
+	 * A stage of the pipeline ended. Stages can be nested: the error correction is part of the
+	 * data encoding, and the evaluations are part of the mask search.
+	 *
+	 * @param stage
+	 *            the stage
+	 * @param nanos
+	 *            the duration of the stage in nanoseconds
+	 * @param allocatedBytes
+	 *            the bytes allocated by the thread during the stage, -1 if not measured
+	 */
+	void stageCompleted(Stage stage, long nanos, long allocatedBytes);
+
+	/**
+	 * Tell whether the allocations of the stages have to be measured, which costs a call to the
+	 * thread management bean before and after every stage
+	 *
+	 * @return false by default
+	 */
+	default boolean measuresAllocation() {
+		return false;
+	}
+
+	/**
+	 * DataEncoding.chooseVersion found the version of an input
+	 *
+	 * @param version
+	 * @param lvl
+	 *            the error correction level
+	 * @param inputLength
+	 *            the length of the input in bytes
+	 */
+	default void versionChosen(int version, CorrectionLvl lvl, int inputLength) {
+	}
+
+	/**
+	 * MatrixConstruction.findBestMasking chose a mask
+	 *
+	 * @param version
+	 * @param mask
+	 * @param penalty
+	 *            the penalty score of the chosen mask
+	 */
+	default void maskChosen(int version, int mask, int penalty) {
+	}
+
+	/**
+	 * An image was written
+	 *
+	 * @param name
+	 *            the name of the image
+	 * @param bytes
+	 *            the size of the image file, -1 if the image could not be written
+	 */
+	default void imageWritten(String name, long bytes) {
+	}
+
+}
@@ -0,0 +1,146 @@
+package qrcode;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Optional instrumentation of the generation pipeline. Without listener (the default), the
+ * instrumented methods only read a volatile field.
+ */
+public final class PipelineMetrics {
+
+	/**
+	 * The measured stages of the pipeline
+	 */
+	public enum Stage {
+		/** DataEncoding.byteModeEncoding, error correction included */
+		DATA_ENCODING,
+		/** Reed-Solomon encoding of the blocks, in DataEncoding.addErrorCorrection */
+		ERROR_CORRECTION,
+		/** MatrixConstruction.findBestMasking, evaluations included */
+		MASK_SEARCH,
+		/** MatrixConstruction.evaluate */
+		EVALUATION,
+		/** Helpers.writeMatrix */
+		IMAGE_OUTPUT
+	}
+
+	private static volatile PipelineListener listener;
+
+	/**
+	 * Register the listener receiving the measures of every thread
+	 *
+	 * @param pipelineListener
+	 *            the listener, null to disable the instrumentation
+	 */
+	public static void setListener(PipelineListener pipelineListener) {
+		listener = pipelineListener;
+	}
+
+	/**
+	 * @return the registered listener, null if the instrumentation is disabled
+	 */
+	public static PipelineListener getListener() {
+		return listener;
+	}
+
+	/**
+	 * Start measuring a stage in the current thread
+	 *
+	 * @return the measure, to be ended with the stage once it is completed. Without listener,
+	 *         a shared measure which does nothing.
+	 */
+	static Span begin() {
+		final PipelineListener LISTENER = listener;
+		return (LISTENER == null) ? Span.DISABLED : new Span(LISTENER);
+	}
+
+	/**
+	 * Measure of a stage running in one thread, from begin to end
+	 */
+	static final class Span {
+
+		static final Span DISABLED = new Span();
+
+		private final PipelineListener listener;
+		private final long startNanos;
+		private final long startAllocated;
+
+		private Span() {
+			listener = null;
+			startNanos = 0;
+			startAllocated = -1;
+		}
+
+		private Span(PipelineListener listener) {
+			this.listener = listener;
+			startAllocated = allocatedBytes(listener);
+			startNanos = System.nanoTime();
+		}
+
+		/**
+		 * @return the listener receiving the measure, null if the instrumentation is disabled
+		 */
+		PipelineListener getListener() {
+			return listener;
+		}
+
+		/**
+		 * Send the completed stage to the listener, if any
+		 *
+		 * @param stage
+		 *            the measured stage
+		 */
+		void end(Stage stage) {
+			if (listener != null)
+			  {
+				final long NANOS = System.nanoTime() - startNanos;
+				final long ALLOCATED = (startAllocated < 0) ? -1 : allocatedBytes(listener) - startAllocated;
+				listener.stageCompleted(stage, NANOS, ALLOCATED);
+			  }
+		}
+
+	}
+
+	/**
+	 * Read the allocation counter of the current thread
+	 *
+	 * @param listener
+	 *            the listener which will receive the stage
+	 * @return the bytes allocated so far by the thread, -1 if not measured
+	 */
+	private static long allocatedBytes(PipelineListener listener) {
+		if (!listener.measuresAllocation() || AllocationCounter.THREADS == null)
+		  {
+			return -1;
+		  }
+		return AllocationCounter.THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/*
+	 * HotSpot extension giving the bytes allocated by a thread, null on other virtual machines.
+	 * Only loaded once a listener measures the allocations.
+	 */
+	private static final class AllocationCounter {
+		static final com.sun.management.ThreadMXBean THREADS = allocationBean();
+	}
+
+	private static com.sun.management.ThreadMXBean allocationBean() {
+		try
+		  {
+			ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+			if (bean instanceof com.sun.management.ThreadMXBean
+					&& ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported())
+			  {
+				((com.sun.management.ThreadMXBean) bean).setThreadAllocatedMemoryEnabled(true);
+				return (com.sun.management.ThreadMXBean) bean;
+			  }
+		  }
+		catch (LinkageError | UnsupportedOperationException e)
+		  {
+			//not a HotSpot virtual machine
+		  }
+		return null;
+	}
+
+}
@@ -0,0 +1,114 @@
+package qrcode;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import qrcode.PipelineMetrics.Stage;
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+/**
+ * Listener adding up the measures of the pipeline: count, total duration and total
+ * allocation of every stage, chosen versions and masks, written bytes
+ */
+public final class PipelineStatistics implements PipelineListener {
+
+	private static final int STAGES = Stage.values().length;
+
+	private final boolean measuresAllocation;
+	private final LongAdder[] counts = new LongAdder[STAGES];
+	private final LongAdder[] nanos = new LongAdder[STAGES];
+	private final LongAdder[] allocatedBytes = new LongAdder[STAGES];
+	private final AtomicLongArray versions = new AtomicLongArray(QRCodeInfos.MAX_VERSION+1);
+	private final AtomicLongArray masks = new AtomicLongArray(8);
+	private final LongAdder writtenBytes = new LongAdder();
+
+	/**
+	 * @param measuresAllocation
+	 *            true to also add up the bytes allocated by every stage
+	 */
+	public PipelineStatistics(boolean measuresAllocation) {
+		this.measuresAllocation = measuresAllocation;
+		for (int i = 0; i < STAGES; ++i)
+		  {
+			counts[i] = new LongAdder();
+			nanos[i] = new LongAdder();
+			allocatedBytes[i] = new LongAdder();
+		  }
+	}
+
+	@Override
+	public void stageCompleted(Stage stage, long stageNanos, long stageAllocatedBytes) {
+		counts[stage.ordinal()].increment();
+		nanos[stage.ordinal()].add(stageNanos);
+		if (stageAllocatedBytes > 0)
+		  {
+			allocatedBytes[stage.ordinal()].add(stageAllocatedBytes);
+		  }
+	}
+
+	@Override
+	public boolean measuresAllocation() {
+		return measuresAllocation;
+	}
+
+	@Override
+	public void versionChosen(int version, CorrectionLvl lvl, int inputLength) {
+		versions.incrementAndGet(version);
+	}
+
+	@Override
+	public void maskChosen(int version, int mask, int penalty) {
+		masks.incrementAndGet(mask);
+	}
+
+	@Override
+	public void imageWritten(String name, long bytes) {
+		if (bytes > 0)
+		  {
+			writtenBytes.add(bytes);
+		  }
+	}
+
+	/**
+	 * @return the number of times a stage ran
+	 */
+	public long getCount(Stage stage) {
+		return counts[stage.ordinal()].sum();
+	}
+
+	/**
+	 * @return the total duration of a stage in nanoseconds
+	 */
+	public long getNanos(Stage stage) {
+		return nanos[stage.ordinal()].sum();
+	}
+
+	/**
+	 * @return the total bytes allocated by a stage, 0 if the allocations are not measured
+	 */
+	public long getAllocatedBytes(Stage stage) {
+		return allocatedBytes[stage.ordinal()].sum();
+	}
+
+	/**
+	 * @return the number of times DataEncoding.chooseVersion chose a version
+	 */
+	public long getVersionCount(int version) {
+		return versions.get(version);
+	}
+
+	/**
+	 * @return the number of times MatrixConstruction.findBestMasking chose a mask
+	 */
+	public long getMaskCount(int mask) {
+		return masks.get(mask);
+	}
+
+	/**
+	 * @return the total size of the written images
+	 */
+	public long getWrittenBytes() {
+		return writtenBytes.sum();
+	}
+
+}
@@ -0,0 +1,363 @@
+package qrcode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import qrcode.PipelineMetrics.Span;
+import qrcode.PipelineMetrics.Stage;
+
+/**
+ * PNG encoder streaming a module matrix to an OutputStream or a WritableByteChannel, row
+ * by row. Black and white matrices are written as 1 bit grayscale, any other matrix as
+ * 8 bits RGBA. A writer only holds its settings and can be shared by several threads: the
+ * Deflater and the row and chunk buffers are reused by all the writes of a thread.
+ */
+public final class PngWriter {
+
+	private static final int B = 0xFF_00_00_00;
+	private static final int W = 0xFF_FF_FF_FF;
+
+	private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+	private static final int IHDR = 0x49484452;
+	private static final int IDAT = 0x49444154;
+	private static final int IEND = 0x49454E44;
+
+	private static final int GRAYSCALE = 0;
+	private static final int RGBA = 6;
+
+	/*
+	 * Size of the IDAT chunks, the length and type of a chunk being written in front of its data
+	 */
+	private static final int CHUNK_HEADER = 8;
+	private static final int CHUNK_SIZE = 1 << 16;
+
+	private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+	private final int scale;
+	private final int quietZone;
+	private final int compressionLevel;
+
+	/**
+	 * Create a writer of one pixel per module, without quiet zone, like Helpers.writeMatrix
+	 */
+	public PngWriter() {
+		this(1, 0, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * @param scale
+	 *            the width in pixels of a module, at least 1
+	 * @param quietZone
+	 *            the width in modules of the white border
+	 * @param compressionLevel
+	 *            the Deflater level, from 0 (no compression, fastest) to 9 (smallest), or
+	 *            -1 for the default level
+	 */
+	public PngWriter(int scale, int quietZone, int compressionLevel) {
+		if (scale < 1 || quietZone < 0)
+		  {
+			throw new IllegalArgumentException("The scale has to be positive and the quiet zone non negative");
+		  }
+		if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION)
+		  {
+			throw new IllegalArgumentException("The compression level has to be between -1 and 9");
+		  }
+		this.scale = scale;
+		this.quietZone = quietZone;
+		this.compressionLevel = compressionLevel;
+	}
+
+	/**
+	 * @return the Deflater level of the images, -1 for the default level
+	 */
+	int getCompressionLevel() {
+		return compressionLevel;
+	}
+
+	/**
+	 * Write the PNG image of a matrix to a stream, which is neither flushed nor closed
+	 *
+	 * @param matrix
+	 *            the square matrix to write, matrix[col][row] being an ARGB colour
+	 * @param out
+	 *            the stream receiving the image
+	 * @return the number of bytes written
+	 * @throws IOException if the stream cannot be written
+	 */
+	public long write(int[][] matrix, OutputStream out) throws IOException {
+		return write(matrix, ImageSink.of(out));
+	}
+
+	/**
+	 * Write the PNG image of a matrix to a blocking channel, which is not closed
+	 *
+	 * @param matrix
+	 *            the square matrix to write, matrix[col][row] being an ARGB colour
+	 * @param channel
+	 *            the channel receiving the image
+	 * @return the number of bytes written
+	 * @throws IOException if the channel cannot be written
+	 */
+	public long write(int[][] matrix, WritableByteChannel channel) throws IOException {
+		return write(matrix, ImageSink.of(channel));
+	}
+
+	private long write(int[][] matrix, ImageSink sink) throws IOException {
+		final Span SPAN = PipelineMetrics.begin();
+
+		final int SIZE = matrix.length;
+		final int WIDTH = (SIZE + 2*quietZone)*scale;
+		final boolean BLACK_AND_WHITE = isBlackAndWhite(matrix);
+		final int ROW_BYTES = 1 + (BLACK_AND_WHITE ? (WIDTH + 7) / 8 : 4*WIDTH);
+
+		Buffers buffers = BUFFERS.get();
+		byte[] row = buffers.row(ROW_BYTES);
+		long written = begin(sink, buffers, WIDTH, WIDTH, BLACK_AND_WHITE ? 1 : 8,
+				BLACK_AND_WHITE ? GRAYSCALE : RGBA, compressionLevel);
+
+		//the quiet zone rows, then every row of modules repeated scale times
+		fillRow(row, ROW_BYTES, null, SIZE, 0, BLACK_AND_WHITE);
+		for (int i = 0; i < quietZone*scale; ++i)
+		  {
+			deflate(sink, buffers, row, ROW_BYTES);
+		  }
+		for (int moduleRow = 0; moduleRow < SIZE; ++moduleRow)
+		  {
+			fillRow(row, ROW_BYTES, matrix, SIZE, moduleRow, BLACK_AND_WHITE);
+			for (int i = 0; i < scale; ++i)
+			  {
+				deflate(sink, buffers, row, ROW_BYTES);
+			  }
+		  }
+		fillRow(row, ROW_BYTES, null, SIZE, 0, BLACK_AND_WHITE);
+		for (int i = 0; i < quietZone*scale; ++i)
+		  {
+			deflate(sink, buffers, row, ROW_BYTES);
+		  }
+		written += end(sink, buffers);
+
+		SPAN.end(Stage.IMAGE_OUTPUT);
+		return written;
+	}
+
+	/**
+	 * Write a black and white image given row by row, as 1 bit grayscale: the rows are
+	 * compressed as they are packed, in strips of the size of the IDAT chunks
+	 *
+	 * @param width
+	 *            the width of the image in pixels
+	 * @param height
+	 *            the height of the image in pixels
+	 * @param rows
+	 *            the source of the rows
+	 * @param compressionLevel
+	 *            the Deflater level, -1 to 9
+	 * @param out
+	 *            the stream receiving the image, neither flushed nor closed
+	 * @return the number of bytes written
+	 */
+	static long writePacked(int width, int height, PackedRows rows, int compressionLevel, OutputStream out)
+			throws IOException {
+		final ImageSink SINK = ImageSink.of(out);
+		final int ROW_BYTES = 1 + (width + 7) / 8;
+		Buffers buffers = BUFFERS.get();
+		byte[] row = buffers.row(ROW_BYTES);
+		long written = begin(SINK, buffers, width, height, 1, GRAYSCALE, compressionLevel);
+		for (int y = 0; y < height; ++y)
+		  {
+			row[0] = 0;
+			rows.pack(y, row, 1);
+			deflate(SINK, buffers, row, ROW_BYTES);
+		  }
+		return written + end(SINK, buffers);
+	}
+
+	/**
+	 * Write the signature and the header, and prepare the Deflater
+	 *
+	 * @return the number of bytes written
+	 */
+	private static long begin(ImageSink sink, Buffers buffers, int width, int height, int bitDepth, int colourType,
+			int compressionLevel) throws IOException {
+		Deflater deflater = buffers.deflater;
+		deflater.reset();
+		deflater.setLevel(compressionLevel);
+		buffers.filled = 0;
+		buffers.written = 0;
+
+		sink.write(SIGNATURE, 0, SIGNATURE.length);
+
+		byte[] header = buffers.chunk;
+		putInt(header, CHUNK_HEADER, width);
+		putInt(header, CHUNK_HEADER + 4, height);
+		header[CHUNK_HEADER + 8] = (byte) bitDepth;
+		header[CHUNK_HEADER + 9] = (byte) colourType;
+		header[CHUNK_HEADER + 10] = 0; //deflate
+		header[CHUNK_HEADER + 11] = 0; //adaptive filtering, every row using the filter None
+		header[CHUNK_HEADER + 12] = 0; //no interlace
+		return SIGNATURE.length + writeChunk(sink, buffers, IHDR, 13);
+	}
+
+	/**
+	 * Flush the Deflater in the last IDAT chunk and write the end chunk
+	 *
+	 * @return the number of bytes written since begin, the header excepted
+	 */
+	private static long end(ImageSink sink, Buffers buffers) throws IOException {
+		Deflater deflater = buffers.deflater;
+		deflater.finish();
+		while (!deflater.finished())
+		  {
+			drain(sink, buffers);
+		  }
+		if (buffers.filled > 0)
+		  {
+			buffers.written += writeChunk(sink, buffers, IDAT, buffers.filled);
+		  }
+		return buffers.written + writeChunk(sink, buffers, IEND, 0);
+	}
+
+	/**
+	 * Compress a row, writing an IDAT chunk each time the chunk buffer is full
+	 */
+	private static void deflate(ImageSink sink, Buffers buffers, byte[] row, int length) throws IOException {
+		Deflater deflater = buffers.deflater;
+		deflater.setInput(row, 0, length);
+		while (!deflater.needsInput())
+		  {
+			drain(sink, buffers);
+		  }
+	}
+
+	private static void drain(ImageSink sink, Buffers buffers) throws IOException {
+		buffers.filled += buffers.deflater.deflate(buffers.chunk, CHUNK_HEADER + buffers.filled,
+				CHUNK_SIZE - buffers.filled);
+		if (buffers.filled == CHUNK_SIZE)
+		  {
+			buffers.written += writeChunk(sink, buffers, IDAT, CHUNK_SIZE);
+			buffers.filled = 0;
+		  }
+	}
+
+	/**
+	 * Write the chunk whose data is in the chunk buffer, after its header
+	 *
+	 * @return the size of the chunk
+	 */
+	private static int writeChunk(ImageSink sink, Buffers buffers, int type, int length) throws IOException {
+		byte[] chunk = buffers.chunk;
+		putInt(chunk, 0, length);
+		putInt(chunk, 4, type);
+		CRC32 crc = buffers.crc;
+		crc.reset();
+		crc.update(chunk, 4, length + 4);
+		putInt(chunk, CHUNK_HEADER + length, (int) crc.getValue());
+		sink.write(chunk, 0, CHUNK_HEADER + length + 4);
+		return CHUNK_HEADER + length + 4;
+	}
+
+	/**
+	 * Fill a row of pixels (after its filter byte) with one row of modules of the matrix,
+	 * the modules of the quiet zone being white
+	 *
+	 * @param matrix
+	 *            the matrix, null for a row of the quiet zone
+	 * @param size
+	 *            the size of the matrix
+	 */
+	private void fillRow(byte[] row, int length, int[][] matrix, int size, int moduleRow, boolean blackAndWhite) {
+		final boolean BLANK = (matrix == null);
+		final int MODULES = size + 2*quietZone;
+		row[0] = 0;
+		if (blackAndWhite)
+		  {
+			//white is 1 in grayscale, the padding bits of the last byte stay 0
+			Arrays.fill(row, 1, length, (byte) 0);
+			for (int module = 0, pixel = 0; module < MODULES; ++module)
+			  {
+				final int COL = module - quietZone;
+				final boolean WHITE = BLANK || (COL < 0) || (COL >= size) || (matrix[COL][moduleRow] == W);
+				for (int i = 0; i < scale; ++i, ++pixel)
+				  {
+					if (WHITE)
+					  {
+						row[1 + (pixel >> 3)] |= 0x80 >>> (pixel & 7);
+					  }
+				  }
+			  }
+		  }
+		else
+		  {
+			for (int module = 0, index = 1; module < MODULES; ++module)
+			  {
+				final int COL = module - quietZone;
+				final int ARGB = (BLANK || (COL < 0) || (COL >= size)) ? W : matrix[COL][moduleRow];
+				for (int i = 0; i < scale; ++i)
+				  {
+					row[index++] = (byte) (ARGB >> 16);
+					row[index++] = (byte) (ARGB >> 8);
+					row[index++] = (byte) ARGB;
+					row[index++] = (byte) (ARGB >>> 24);
+				  }
+			  }
+		  }
+	}
+
+	private static boolean isBlackAndWhite(int[][] matrix) {
+		if (matrix.length == 0 || matrix[0].length != matrix.length)
+		  {
+			throw new IllegalArgumentException("The matrix must be squared");
+		  }
+		for (int[] column : matrix)
+		  {
+			for (int module : column)
+			  {
+				if (module != B && module != W)
+				  {
+					return false;
+				  }
+			  }
+		  }
+		return true;
+	}
+
+	private static void putInt(byte[] bytes, int index, int value) {
+		bytes[index] = (byte) (value >>> 24);
+		bytes[index + 1] = (byte) (value >>> 16);
+		bytes[index + 2] = (byte) (value >>> 8);
+		bytes[index + 3] = (byte) value;
+	}
+
+	/**
+	 * Rows of a black and white image, 8 pixels per byte from the highest bit, white being 1
+	 */
+	interface PackedRows {
+		/**
+		 * @param y
+		 *            the index of the row
+		 * @param row
+		 *            receives the packed row
+		 * @param offset
+		 *            the index of the first byte of the row
+		 */
+		void pack(int y, byte[] row, int offset);
+	}
+
+	/**
+	 * Buffers of the writes of a thread
+	 */
+	private static final class Buffers extends ImageSink.RowBuffer {
+		private final Deflater deflater = new Deflater();
+		private final CRC32 crc = new CRC32();
+		//chunk header, data and CRC
+		private final byte[] chunk = new byte[CHUNK_HEADER + CHUNK_SIZE + 4];
+		//compressed bytes waiting in chunk, and size of the IDAT chunks already written
+		private int filled;
+		private long written;
+	}
+
+}
@@ -0,0 +1,222 @@
+package qrcode;
+
+import java.nio.charset.StandardCharsets;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+import reedsolomon.ErrorCorrectionDecoding;
+
+public final class QRCodeDecoder {
+
+	private static final int B = 0xFF_00_00_00;
+
+	/*
+	 * Format words closer than this (in bits) to a valid word are corrected
+	 */
+	private static final int MAX_FORMAT_ERRORS = 3;
+
+	/**
+	 * Decode a matrix produced by MatrixConstruction.renderQRCodeMatrix: read the format
+	 * information, unmask and read back the codewords, de-interleave the blocks, correct them
+	 * with their error correction codewords and parse the byte mode segments (structured
+	 * append headers are skipped).
+	 *
+	 * @param matrix
+	 *            the QR code, in the same orientation as MatrixConstruction (matrix[col][row])
+	 * @return the decoded text, bytes read in ISO-8859-1
+	 * @throws IllegalArgumentException if the matrix cannot be decoded
+	 */
+	public static String decode(int[][] matrix) {
+		final int VERSION = (matrix.length - 17) / 4;
+		if (QRCodeInfos.getMatrixSize(VERSION) != matrix.length || VERSION < QRCodeInfos.MIN_VERSION)
+		  {
+			throw new IllegalArgumentException("A QR code matrix has a size of 21 to 177, 4k+1");
+		  }
+
+		final int FORMAT = readFormat(matrix);
+		final CorrectionLvl LVL = CorrectionLvl.values()[FORMAT >> 3];
+		final int MASK = FORMAT & 0x7;
+
+		int[] codeWords = readCodeWords(matrix, VERSION, MASK);
+		int[] data = correctBlocks(codeWords, VERSION, LVL);
+		return parseSegments(data, VERSION);
+	}
+
+	/**
+	 * Tell whether a matrix decodes to the expected input
+	 *
+	 * @param matrix
+	 *            the QR code, in the same orientation as MatrixConstruction (matrix[col][row])
+	 * @param expected
+	 *            the input the matrix was generated from (characters outside ISO-8859-1
+	 *            are expected as '?', like DataEncoding.encodeString does)
+	 * @return true if the matrix is readable and holds the expected input
+	 */
+	public static boolean verify(int[][] matrix, String expected) {
+		String normalized = new String(expected.getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.ISO_8859_1);
+		try
+		  {
+			return normalized.equals(decode(matrix));
+		  }
+		catch (IllegalArgumentException e)
+		  {
+			return false;
+		  }
+	}
+
+	/**
+	 * Read both copies of the format information, in the same order as
+	 * MatrixConstruction.addFormatInformation writes them, and keep the nearest valid word
+	 *
+	 * @return (correction level ordinal << 3) | mask
+	 */
+	private static int readFormat(int[][] matrix) {
+		final int LEN = matrix.length;
+		int first = 0, second = 0;
+		int firstCount = 0, secondCount = 0;
+		for (int i = 0; i < LEN; ++i)
+		  {
+			//first copy along the row 8, second copy along the column 8, skipping the timing patterns
+			if (((i < 8) || (i > LEN-9)) && (i != 6) && (firstCount < 15))
+			  {
+				first = first << 1 | bit(matrix[i][8]);
+				++firstCount;
+			  }
+			if (((i < 7) || (i > LEN-10)) && (i != LEN-7) && (secondCount < 15))
+			  {
+				second = second << 1 | bit(matrix[8][LEN-1-i]);
+				++secondCount;
+			  }
+		  }
+
+		int best = -1, bestDistance = MAX_FORMAT_ERRORS+1;
+		for (CorrectionLvl lvl : CorrectionLvl.values())
+		  {
+			for (int mask = 0; mask < 8; ++mask)
+			  {
+				int word = QRCodeInfos.getFormatWord(mask, lvl);
+				int distance = Math.min(Integer.bitCount(word ^ first), Integer.bitCount(word ^ second));
+				if (distance < bestDistance)
+				  {
+					bestDistance = distance;
+					best = lvl.ordinal() << 3 | mask;
+				  }
+			  }
+		  }
+		if (best < 0)
+		  {
+			throw new IllegalArgumentException("The format information cannot be read");
+		  }
+		return best;
+	}
+
+	/**
+	 * Read the data modules in the order of MatrixConstruction.addDataInformation, removing the mask
+	 *
+	 * @return all the codewords of the version, still interleaved
+	 */
+	private static int[] readCodeWords(int[][] matrix, int version, int mask) {
+		int[] codeWords = new int[QRCodeInfos.getTotalCodeWordsLength(version)];
+		MaskPlanes.forVersion(version).readData(matrix, mask, codeWords);
+		return codeWords;
+	}
+
+	/**
+	 * De-interleave the codewords (inverse of DataEncoding.addErrorCorrection) and correct
+	 * every block
+	 *
+	 * @return the data codewords, in order
+	 * @throws IllegalArgumentException if a block has too many errors
+	 */
+	private static int[] correctBlocks(int[] codeWords, int version, CorrectionLvl lvl) {
+		final int DATA_LEN = QRCodeInfos.getCodeWordsLength(version, lvl);
+		final int BLOCKS = QRCodeInfos.getBlockCount(version, lvl);
+		final int ECC_LEN = QRCodeInfos.getECCLength(version, lvl);
+		final int SHORT_LEN = DATA_LEN / BLOCKS;
+		final int SHORT_BLOCKS = BLOCKS - DATA_LEN % BLOCKS;
+
+		int[] data = new int[DATA_LEN];
+		int[] block = new int[SHORT_LEN + 1 + ECC_LEN];
+		ErrorCorrectionDecoding decoder = new ErrorCorrectionDecoding(ECC_LEN);
+		int start = 0;
+
+		for (int b = 0; b < BLOCKS; ++b)
+		  {
+			int blockLen = (b < SHORT_BLOCKS) ? SHORT_LEN : SHORT_LEN+1;
+			int[] current = (blockLen + ECC_LEN == block.length) ? block : new int[blockLen + ECC_LEN];
+
+			for (int k = 0; k < blockLen; ++k)
+			  {
+				int offset = (k < SHORT_LEN) ? k*BLOCKS : SHORT_LEN*BLOCKS - SHORT_BLOCKS;
+				current[k] = codeWords[offset + b];
+			  }
+			for (int k = 0; k < ECC_LEN; ++k)
+			  {
+				current[blockLen + k] = codeWords[DATA_LEN + k*BLOCKS + b];
+			  }
+
+			decoder.correct(current, ECC_LEN);
+			System.arraycopy(current, 0, data, start, blockLen);
+			start += blockLen;
+		  }
+		return data;
+	}
+
+	/**
+	 * Read the segments of the data codewords: byte mode segments are appended to the text,
+	 * structured append headers are skipped, the terminator ends the reading
+	 *
+	 * @throws IllegalArgumentException for any other mode
+	 */
+	private static String parseSegments(int[] data, int version) {
+		final int DATA_BITS = data.length*8;
+		final int COUNT_BITS = QRCodeInfos.getCharCountBits(version);
+		StringBuilder text = new StringBuilder();
+		int bitIndex = 0;
+
+		while (bitIndex + 4 <= DATA_BITS)
+		  {
+			int mode = readBits(data, bitIndex, 4);
+			bitIndex += 4;
+			if (mode == 0b0000)
+			  {
+				break;
+			  }
+			if (mode == 0b0011)
+			  {
+				bitIndex += 16; //position, total and parity
+				continue;
+			  }
+			if (mode != 0b0100)
+			  {
+				throw new IllegalArgumentException("Only the byte mode is supported, found mode "+mode);
+			  }
+
+			int count = readBits(data, bitIndex, COUNT_BITS);
+			bitIndex += COUNT_BITS;
+			if (bitIndex + 8*count > DATA_BITS)
+			  {
+				throw new IllegalArgumentException("The segment is longer than the data");
+			  }
+			for (int i = 0; i < count; ++i)
+			  {
+				text.append((char) readBits(data, bitIndex, 8));
+				bitIndex += 8;
+			  }
+		  }
+		return text.toString();
+	}
+
+	private static int readBits(int[] data, int bitIndex, int length) {
+		int value = 0;
+		for (int i = 0; i < length; ++i, ++bitIndex)
+		  {
+			value = value << 1 | ((data[bitIndex >> 3] >> (7 - (bitIndex & 7))) & 1);
+		  }
+		return value;
+	}
+
+	private static int bit(int colour) {
+		return (colour == B) ? 1 : 0;
+	}
+
+}
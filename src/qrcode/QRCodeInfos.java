@@ -4,19 +4,143 @@ public final class QRCodeInfos {
 	
 	private static final int MATRIX_SIZE_VERSION_1 =21;
 	private static final int MATRIX_SIZE_STEP =4;
-	
-	private final static int[] VERSION_CODE_WORDS = { 19, 34, 55, 80 };
-	
+
+	public static final int MIN_VERSION = 1;
+	public static final int MAX_VERSION = 40;
+
 	private static final int[] LVL_CODE = {1,0,3,2};
-	
+
 	public enum CorrectionLvl{
 		L,M,Q,H
 	}
-	
-	private static final int[] ERROR_CORRECTION_CODEWORDS = {7,10,15,20};
-	
-	
-	
+
+	/*
+	 * Total number of codewords (data + error correction) of each version, 1 to 40
+	 */
+	private static final int[] TOTAL_CODE_WORDS = {
+			26, 44, 70, 100, 134, 172, 196, 242, 292, 346,
+			404, 466, 532, 581, 655, 733, 815, 901, 991, 1085,
+			1156, 1258, 1364, 1474, 1588, 1706, 1828, 1921, 2051, 2185,
+			2323, 2465, 2611, 2761, 2876, 3034, 3196, 3362, 3532, 3706 };
+
+	/*
+	 * Number of error correction codewords per block, indexed by [correction level][version-1]
+	 */
+	private static final int[][] ERROR_CORRECTION_CODEWORDS = {
+			{ 7, 10, 15, 20, 26, 18, 20, 24, 30, 18, 20, 24, 26, 30, 22, 24, 28, 30, 28, 28,
+			  28, 28, 30, 30, 26, 28, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30 },
+			{ 10, 16, 26, 18, 24, 16, 18, 22, 22, 26, 30, 22, 22, 24, 24, 28, 28, 26, 26, 26,
+			  26, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28 },
+			{ 13, 22, 18, 26, 18, 24, 18, 22, 20, 24, 28, 26, 24, 20, 30, 24, 28, 28, 26, 30,
+			  28, 30, 30, 30, 30, 28, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30 },
+			{ 17, 28, 22, 16, 22, 28, 26, 26, 24, 28, 24, 28, 22, 24, 24, 30, 28, 28, 26, 28,
+			  30, 24, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30 } };
+
+	/*
+	 * Number of error correction blocks, indexed by [correction level][version-1]
+	 */
+	private static final int[][] ERROR_CORRECTION_BLOCKS = {
+			{ 1, 1, 1, 1, 1, 2, 2, 2, 2, 4, 4, 4, 4, 4, 6, 6, 6, 6, 7, 8,
+			  8, 9, 9, 10, 12, 12, 12, 13, 14, 15, 16, 17, 18, 19, 19, 20, 21, 22, 24, 25 },
+			{ 1, 1, 1, 2, 2, 4, 4, 4, 5, 5, 5, 8, 9, 9, 10, 10, 11, 13, 14, 16,
+			  17, 17, 18, 20, 21, 23, 25, 26, 28, 29, 31, 33, 35, 37, 38, 40, 43, 45, 47, 49 },
+			{ 1, 1, 2, 2, 4, 4, 6, 6, 8, 8, 8, 10, 12, 16, 12, 17, 16, 18, 21, 20,
+			  23, 23, 25, 27, 29, 34, 34, 35, 38, 40, 43, 45, 48, 51, 53, 56, 59, 62, 65, 68 },
+			{ 1, 1, 2, 4, 4, 4, 5, 6, 8, 8, 11, 11, 16, 16, 18, 16, 19, 21, 25, 25,
+			  25, 34, 30, 32, 35, 37, 40, 42, 45, 48, 51, 54, 57, 60, 63, 66, 70, 74, 77, 81 } };
+
+	/*
+	 * Format information words, indexed by the 5 bits (level code << 3 | mask)
+	 */
+	private static final int[] FORMAT_WORDS = {
+			0x5412, 0x5125, 0x5E7C, 0x5B4B, 0x45F9, 0x40CE, 0x4F97, 0x4AA0,
+			0x77C4, 0x72F3, 0x7DAA, 0x789D, 0x662F, 0x6318, 0x6C41, 0x6976,
+			0x1689, 0x13BE, 0x1CE7, 0x19D0, 0x0762, 0x0255, 0x0D0C, 0x083B,
+			0x355F, 0x3068, 0x3F31, 0x3A06, 0x24B4, 0x2183, 0x2EDA, 0x2BED };
+
+	/*
+	 * Version information words of versions 7 to 40
+	 */
+	private static final int[] VERSION_WORDS = {
+			0x07C94, 0x085BC, 0x09A99, 0x0A4D3, 0x0BBF6, 0x0C762, 0x0D847, 0x0E60D, 0x0F928,
+			0x10B78, 0x1145D, 0x12A17, 0x13532, 0x149A6, 0x15683, 0x168C9, 0x177EC, 0x18EC4,
+			0x191E1, 0x1AFAB, 0x1B08E, 0x1CC1A, 0x1D33F, 0x1ED75, 0x1F250, 0x209D5, 0x216F0,
+			0x228BA, 0x2379F, 0x24B0B, 0x2542E, 0x26A64, 0x27541, 0x28C69 };
+
+	/*
+	 * Row/column coordinates of the alignment pattern centres of each version, 1 to 40
+	 */
+	private static final int[][] ALIGNMENT_POSITIONS = {
+			{ },
+			{ 6, 18 },
+			{ 6, 22 },
+			{ 6, 26 },
+			{ 6, 30 },
+			{ 6, 34 },
+			{ 6, 22, 38 },
+			{ 6, 24, 42 },
+			{ 6, 26, 46 },
+			{ 6, 28, 50 },
+			{ 6, 30, 54 },
+			{ 6, 32, 58 },
+			{ 6, 34, 62 },
+			{ 6, 26, 46, 66 },
+			{ 6, 26, 48, 70 },
+			{ 6, 26, 50, 74 },
+			{ 6, 30, 54, 78 },
+			{ 6, 30, 56, 82 },
+			{ 6, 30, 58, 86 },
+			{ 6, 34, 62, 90 },
+			{ 6, 28, 50, 72, 94 },
+			{ 6, 26, 50, 74, 98 },
+			{ 6, 30, 54, 78, 102 },
+			{ 6, 28, 54, 80, 106 },
+			{ 6, 32, 58, 84, 110 },
+			{ 6, 30, 58, 86, 114 },
+			{ 6, 34, 62, 90, 118 },
+			{ 6, 26, 50, 74, 98, 122 },
+			{ 6, 30, 54, 78, 102, 126 },
+			{ 6, 26, 52, 78, 104, 130 },
+			{ 6, 30, 56, 82, 108, 134 },
+			{ 6, 34, 60, 86, 112, 138 },
+			{ 6, 30, 58, 86, 114, 142 },
+			{ 6, 34, 62, 90, 118, 146 },
+			{ 6, 30, 54, 78, 102, 126, 150 },
+			{ 6, 24, 50, 76, 102, 128, 154 },
+			{ 6, 28, 54, 80, 106, 132, 158 },
+			{ 6, 32, 58, 84, 110, 136, 162 },
+			{ 6, 26, 54, 82, 110, 138, 166 },
+			{ 6, 30, 58, 86, 114, 142, 170 } };
+
+	/*
+	 * Derived tables, indexed by [correction level][version-1]:
+	 *    the number of data codewords and the maximal number of input bytes in byte mode
+	 */
+	private static final int[][] VERSION_CODE_WORDS = dataCodeWordsGenerator();
+	private static final int[][] MAX_INPUT_LENGTH = maxInputLengthGenerator();
+
+	private static int[][] dataCodeWordsGenerator() {
+		int[][] table = new int[LVL_CODE.length][MAX_VERSION];
+		for (int lvl = 0; lvl < table.length; ++lvl) {
+			for (int v = 0; v < MAX_VERSION; ++v) {
+				table[lvl][v] = TOTAL_CODE_WORDS[v] - ERROR_CORRECTION_CODEWORDS[lvl][v]*ERROR_CORRECTION_BLOCKS[lvl][v];
+			}
+		}
+		return table;
+	}
+
+	private static int[][] maxInputLengthGenerator() {
+		int[][] table = new int[LVL_CODE.length][MAX_VERSION];
+		for (int lvl = 0; lvl < table.length; ++lvl) {
+			for (int v = 0; v < MAX_VERSION; ++v) {
+				// mode (4 bits) + character count + terminator (4 bits), rounded to whole bytes
+				table[lvl][v] = VERSION_CODE_WORDS[lvl][v] - 1 - getCharCountBits(v+1)/8;
+			}
+		}
+		return table;
+	}
+
+
 	/**
 	 * Get the size of the matrix for a specific version.
 	 * i.e. For version 1, this method return 21 since the matrix has a size of 21x21
@@ -33,43 +157,185 @@ public final class QRCodeInfos {
 	
 	
 	/**
-	 * Get the maximum input length for a given QR code version
+	 * Get the maximum input length for a given QR code version, using the correction level L
 	 * @param version
 	 *        version of the QRcode
 	 * @return the maximum number of bytes of data that can be encoded for the given version
 	 */
 	public static int getMaxInputLength(int version) {
-		if(version>4) {
-			throw new UnsupportedOperationException("The version has to be between 1 and 5");
-		}
-		return VERSION_CODE_WORDS[version-1] -2 ;
+		return getMaxInputLength(version, CorrectionLvl.L);
 	}
-	
-	/** Get the number of error correction codewords needed for a given version
+
+	/**
+	 * Get the maximum input length for a given QR code version and correction level
 	 * @param version
-	 * 			 version of the QRcode	
-	 * @return
+	 *        version of the QRcode
+	 * @param lvl
+	 *        the error correction level
+	 * @return the maximum number of bytes of data that can be encoded for the given version
+	 */
+	public static int getMaxInputLength(int version, CorrectionLvl lvl) {
+		checkVersion(version);
+		return MAX_INPUT_LENGTH[lvl.ordinal()][version-1];
+	}
+
+	/** Get the number of error correction codewords needed for a given version, using the correction level L.
+	 * For versions with more than one block, this is the number of codewords of each block
+	 * @param version
+	 * 			 version of the QRcode
+	 * @return the number of error correction codewords per block
 	 */
 	public static int getECCLength(int version) {
-		if(version>4) {
-			throw new UnsupportedOperationException("The version has to be between 1 and 5");
-		}
-		return ERROR_CORRECTION_CODEWORDS[version-1] ;
+		return getECCLength(version, CorrectionLvl.L);
 	}
-	
+
+	/** Get the number of error correction codewords per block for a given version and correction level
+	 * @param version
+	 * 			 version of the QRcode
+	 * @param lvl
+	 *           the error correction level
+	 * @return the number of error correction codewords per block
+	 */
+	public static int getECCLength(int version, CorrectionLvl lvl) {
+		checkVersion(version);
+		return ERROR_CORRECTION_CODEWORDS[lvl.ordinal()][version-1] ;
+	}
+
 	/**
-	 * Get the number of codewords encoding the data for a given version
+	 * Get the number of blocks the codewords are split into for a given version and correction level
+	 * @param version
+	 *          version of the QRcode
+	 * @param lvl
+	 *          the error correction level
+	 * @return the number of error correction blocks
+	 */
+	public static int getBlockCount(int version, CorrectionLvl lvl) {
+		checkVersion(version);
+		return ERROR_CORRECTION_BLOCKS[lvl.ordinal()][version-1];
+	}
+
+	/**
+	 * Get the number of codewords encoding the data for a given version, using the correction level L
 	 * @param version
 	 *          version of the QRcode
 	 * @return the number of codewords in the version
 	 */
 	public static int getCodeWordsLength(int version) {
-		if(version>4) {
-			throw new UnsupportedOperationException("The version has to be between 1 and 5");
+		return getCodeWordsLength(version, CorrectionLvl.L);
+	}
+
+	/**
+	 * Get the number of codewords encoding the data for a given version and correction level
+	 * @param version
+	 *          version of the QRcode
+	 * @param lvl
+	 *          the error correction level
+	 * @return the number of data codewords in the version
+	 */
+	public static int getCodeWordsLength(int version, CorrectionLvl lvl) {
+		checkVersion(version);
+		return VERSION_CODE_WORDS[lvl.ordinal()][version-1] ;
+	}
+
+	/**
+	 * Get the total number of codewords (data and error correction) for a given version
+	 * @param version
+	 *          version of the QRcode
+	 * @return the number of codewords fitting in the matrix
+	 */
+	public static int getTotalCodeWordsLength(int version) {
+		checkVersion(version);
+		return TOTAL_CODE_WORDS[version-1];
+	}
+
+	/**
+	 * Get the number of distinct coordinates used by the alignment pattern centres of a version.
+	 * The centres are all the pairs of these coordinates, except the three overlapping the finder patterns
+	 * @param version
+	 *          version of the QRcode
+	 * @return 0 for version 1, between 2 and 7 otherwise
+	 */
+	public static int getAlignmentPatternCount(int version) {
+		checkVersion(version);
+		return ALIGNMENT_POSITIONS[version-1].length;
+	}
+
+	/**
+	 * Get one of the coordinates used by the alignment pattern centres of a version
+	 * @param version
+	 *          version of the QRcode
+	 * @param index
+	 *          between 0 and getAlignmentPatternCount(version)-1, in increasing order of coordinate
+	 * @return the row (or column) of the centres
+	 */
+	public static int getAlignmentPatternCenter(int version, int index) {
+		checkVersion(version);
+		return ALIGNMENT_POSITIONS[version-1][index];
+	}
+
+	/**
+	 * Get the size of the character count indicator in byte mode
+	 * @param version
+	 *          version of the QRcode
+	 * @return 8 for versions 1 to 9, 16 for versions 10 to 40
+	 */
+	public static int getCharCountBits(int version) {
+		return (version < 10) ? 8 : 16;
+	}
+
+	/**
+	 * Find the smallest version able to hold an input of the given length, using the correction level L
+	 * @param inputLength
+	 *          the number of bytes to encode
+	 * @return the smallest version whose capacity is at least inputLength
+	 */
+	public static int getMinimumVersion(int inputLength) {
+		return getMinimumVersion(inputLength, CorrectionLvl.L, MIN_VERSION, MAX_VERSION);
+	}
+
+	/**
+	 * Find the smallest version between minVersion and maxVersion (both included) able to hold
+	 * an input of the given length. The capacities grow with the version, so a binary search
+	 * over the capacity table is enough.
+	 * @param inputLength
+	 *          the number of bytes to encode
+	 * @param lvl
+	 *          the error correction level
+	 * @param minVersion
+	 *          the smallest acceptable version
+	 * @param maxVersion
+	 *          the largest acceptable version
+	 * @return the smallest version whose capacity is at least inputLength
+	 * @throws IllegalArgumentException if the range is empty or no version of the range can hold the input
+	 */
+	public static int getMinimumVersion(int inputLength, CorrectionLvl lvl, int minVersion, int maxVersion) {
+		checkVersion(minVersion);
+		checkVersion(maxVersion);
+		if (minVersion > maxVersion) {
+			throw new IllegalArgumentException("The range of versions "+minVersion+"-"+maxVersion+" is empty");
+		}
+		final int[] capacities = MAX_INPUT_LENGTH[lvl.ordinal()];
+		if (inputLength > capacities[maxVersion-1]) {
+			throw new IllegalArgumentException("An input of "+inputLength+" bytes does not fit in a version "
+					+maxVersion+"-"+lvl+" QR code (maximum "+capacities[maxVersion-1]+" bytes)");
+		}
+		int low = minVersion-1, high = maxVersion-1;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (capacities[middle] < inputLength) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
 		}
-		return VERSION_CODE_WORDS[version-1] ;
+		return low+1;
 	}
 
+	private static void checkVersion(int version) {
+		if(version<MIN_VERSION || version>MAX_VERSION) {
+			throw new IllegalArgumentException("The version has to be between 1 and 40");
+		}
+	}
 
 
 	/**
@@ -80,45 +346,58 @@ public final class QRCodeInfos {
 	 * @return the array of pixels encoding the format information. Most significant bit first
 	 */
 	public static boolean[] getFormatSequence(int mask) {
-		if(mask>7 || mask <0) {
-			throw new IllegalArgumentException("The mask has to be between 0 and 7");
-		}
-		int errorCorrectionLevel=CorrectionLvl.L.ordinal();
-		int code = ((LVL_CODE[errorCorrectionLevel]& 0x3)<<3) | (mask&0x7);
-		int current = code<<10;
-	
-		int poly = 0b10100110111;
-		int size = 15;
-		while(((0b1<<(size-1)) & current) ==0) {
-			size--;
-			if(size == 0) {
-				throw new IllegalAccessError();
-			}
-		}
-		
-		while(size>10) {
-			int paddedPoly = poly<<(size-11);
-	
-			current = paddedPoly^current;
-			
-			
-			while(((0b1<<(size-1)) & current) == 0) {
-				size--;
-				if(size == 0) {
-					throw new IllegalAccessError();
-				}
-			}
-		}
-		
-		int format = (code<<10 | (current& 0x3FF)) ^ 0b101010000010010;
-		
+		return getFormatSequence(mask, CorrectionLvl.L);
+	}
+
+	/**
+	 * Return the sequence of pixels that encodes the format information related to error correction level and used mask.
+	 * The array is a boolean array providing a binary representation of the data, with the most significant bit first
+	 * @param mask
+	 *        the integer code of the mask to be used (must be between 0 and 7)
+	 * @param lvl
+	 *        the error correction level
+	 * @return the array of pixels encoding the format information. Most significant bit first
+	 */
+	public static boolean[] getFormatSequence(int mask, CorrectionLvl lvl) {
+		int format = getFormatWord(mask, lvl);
+
 		boolean[] formatPixels = new boolean[15];
 		for(int i=0;i<formatPixels.length;i++) {
 			formatPixels[i] = !(((format >> (14 - i)) & 0b1) == 0);
 		}
-		
+
 		return formatPixels;
 	}
+
+	/**
+	 * Return the 15 bits format information word (BCH(15,5) code of the error correction level
+	 * and mask, already xored with the format mask), read from a precomputed table
+	 * @param mask
+	 *        the integer code of the mask to be used (must be between 0 and 7)
+	 * @param lvl
+	 *        the error correction level
+	 * @return the format information, bit 14 being the first pixel of the sequence
+	 */
+	public static int getFormatWord(int mask, CorrectionLvl lvl) {
+		if(mask>7 || mask <0) {
+			throw new IllegalArgumentException("The mask has to be between 0 and 7");
+		}
+		return FORMAT_WORDS[LVL_CODE[lvl.ordinal()]<<3 | mask];
+	}
+
+	/**
+	 * Return the 18 bits version information word (Golay code of the version), read from a
+	 * precomputed table
+	 * @param version
+	 *        version of the QRcode (must be between 7 and 40)
+	 * @return the version information, bit 0 being the first module placed
+	 */
+	public static int getVersionWord(int version) {
+		if(version<7 || version>40) {
+			throw new IllegalArgumentException("Only versions 7 to 40 hold version information");
+		}
+		return VERSION_WORDS[version-7];
+	}
 	
 	
 
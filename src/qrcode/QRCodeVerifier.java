@@ -0,0 +1,69 @@
+package qrcode;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decode back a sample of the generated QR codes to check them, for batch jobs.
+ * A verifier can be shared by several threads.
+ */
+public final class QRCodeVerifier {
+
+	private final int period;
+	private final AtomicLong submitted = new AtomicLong();
+	private final AtomicLong checked = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+
+	/**
+	 * Decoding a QR code takes about a third (version 10) to a half (version 40) of the time
+	 * needed to render it (see MatrixBenchmark.decode): a period of 4 keeps the overhead of
+	 * the verification near 10%.
+	 *
+	 * @param period
+	 *            one QR code out of period is decoded, 1 to check all of them
+	 */
+	public QRCodeVerifier(int period) {
+		if (period < 1)
+		  {
+			throw new IllegalArgumentException("The sampling period has to be at least 1");
+		  }
+		this.period = period;
+	}
+
+	/**
+	 * Decode the matrix if it is part of the sample
+	 *
+	 * @param matrix
+	 *            the QR code, as given by MatrixConstruction.renderQRCodeMatrix
+	 * @param expected
+	 *            the input the matrix was generated from
+	 * @return false only if the matrix was checked and does not hold the expected input
+	 */
+	public boolean verify(int[][] matrix, String expected) {
+		if (submitted.getAndIncrement() % period != 0)
+		  {
+			return true;
+		  }
+		checked.incrementAndGet();
+		if (QRCodeDecoder.verify(matrix, expected))
+		  {
+			return true;
+		  }
+		failed.incrementAndGet();
+		return false;
+	}
+
+	/**
+	 * @return the number of QR codes decoded so far
+	 */
+	public long getChecked() {
+		return checked.get();
+	}
+
+	/**
+	 * @return the number of decoded QR codes which did not hold their input
+	 */
+	public long getFailed() {
+		return failed.get();
+	}
+
+}
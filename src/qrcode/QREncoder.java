@@ -0,0 +1,150 @@
+package qrcode;
+
+import qrcode.PipelineMetrics.Span;
+import qrcode.PipelineMetrics.Stage;
+import qrcode.QRCodeInfos.CorrectionLvl;
+import reedsolomon.ErrorCorrectionEncoding;
+
+/**
+ * Byte mode encoder owning its buffers: once every used version has been encoded once,
+ * encoding does not allocate. An encoder must not be shared by several threads, get
+ * returns the encoder of the current thread.
+ */
+public final class QREncoder {
+
+	private static final ThreadLocal<QREncoder> ENCODERS = ThreadLocal.withInitial(QREncoder::new);
+
+	private static final int MODE_BYTE = 0b0100;
+	private static final int PAD_1 = 236;
+	private static final int PAD_2 = 17;
+	private static final int REPLACEMENT = '?';
+
+	/*
+	 * Data codewords in the order of the blocks, then all the codewords interleaved
+	 */
+	private final int[] dataCodeWords = new int[QRCodeInfos.getTotalCodeWordsLength(QRCodeInfos.MAX_VERSION)];
+	private final int[] codeWords = new int[QRCodeInfos.getTotalCodeWordsLength(QRCodeInfos.MAX_VERSION)];
+
+	/*
+	 * Binary sequence of each version, allocated on first use
+	 */
+	private final boolean[][] binaryArrays = new boolean[QRCodeInfos.MAX_VERSION][];
+
+	/**
+	 * @return the encoder of the current thread
+	 */
+	public static QREncoder get() {
+		return ENCODERS.get();
+	}
+
+	/**
+	 * Encode the input like DataEncoding.byteModeEncoding, in the buffers of this encoder
+	 *
+	 * @param input
+	 *            the text to encode in ISO-8859-1, truncated to the capacity of the version
+	 * @param version
+	 * @param lvl
+	 *            the error correction level
+	 * @return the encoded message, blocks interleaved. The array belongs to the encoder: it is
+	 *         overwritten by the next encoding of the same version.
+	 */
+	public boolean[] encode(String input, int version, CorrectionLvl lvl) {
+		final int DATA_LEN = QRCodeInfos.getCodeWordsLength(version, lvl);
+
+		int length = addInformations(input, version, QRCodeInfos.getMaxInputLength(version, lvl));
+		for (int i = length; i < DATA_LEN; ++i)
+		  {
+			dataCodeWords[i] = ((i - length) % 2 == 0) ? PAD_1 : PAD_2;
+		  }
+		addErrorCorrection(version, lvl);
+
+		final int TOTAL_LEN = QRCodeInfos.getTotalCodeWordsLength(version);
+		boolean[] binaryArray = binaryArrays[version-1];
+		if (binaryArray == null)
+		  {
+			binaryArray = new boolean[TOTAL_LEN*8];
+			binaryArrays[version-1] = binaryArray;
+		  }
+		for (int i = 0, bit = 0; i < TOTAL_LEN; ++i)
+		  {
+			final int CODE_WORD = codeWords[i];
+			for (int k = 7; k >= 0; --k)
+			  {
+				binaryArray[bit++] = (CODE_WORD >> k & 1) != 0;
+			  }
+		  }
+		return binaryArray;
+	}
+
+	/**
+	 * Write the mode, the character count, the ISO-8859-1 bytes of the input and the
+	 * terminator in the data codewords, like DataEncoding.encodeString then addInformations
+	 *
+	 * @return the number of codewords written
+	 */
+	private int addInformations(String input, int version, int maxLength) {
+		final int COUNT_BYTES = QRCodeInfos.getCharCountBits(version)/8;
+		final int INPUT_LEN = input.length();
+
+		//every input byte is split over two codewords, behind the 4 bits of the mode
+		int count = 0;
+		int index = COUNT_BYTES;
+		int previous = 0;
+		for (int i = 0; i < INPUT_LEN && count < maxLength; ++i, ++count)
+		  {
+			int value = input.charAt(i);
+			if (value > 0xFF)
+			  {
+				//like String.getBytes, a surrogate pair is replaced by a single character
+				if (Character.isHighSurrogate((char) value) && i+1 < INPUT_LEN
+						&& Character.isLowSurrogate(input.charAt(i+1)))
+				  {
+					++i;
+				  }
+				value = REPLACEMENT;
+			  }
+			dataCodeWords[index++] = previous | value >> 4;
+			previous = (value & 0xF) << 4;
+		  }
+		dataCodeWords[index++] = previous;
+
+		final int HEADER = MODE_BYTE << (8*COUNT_BYTES) | count;
+		for (int k = 0; k < COUNT_BYTES; ++k)
+		  {
+			dataCodeWords[k] = HEADER >> (4 + 8*(COUNT_BYTES-1-k)) & 0xFF;
+		  }
+		dataCodeWords[COUNT_BYTES] |= (HEADER & 0xF) << 4;
+
+		return index;
+	}
+
+	/**
+	 * Interleave the data codewords of the blocks and their error correction codewords in
+	 * codeWords, like DataEncoding.addErrorCorrection
+	 */
+	private void addErrorCorrection(int version, CorrectionLvl lvl) {
+		final Span SPAN = PipelineMetrics.begin();
+
+		final int DATA_LEN = QRCodeInfos.getCodeWordsLength(version, lvl);
+		final int BLOCKS = QRCodeInfos.getBlockCount(version, lvl);
+		final int ECC_LEN = QRCodeInfos.getECCLength(version, lvl);
+		final int SHORT_LEN = DATA_LEN / BLOCKS;
+		final int SHORT_BLOCKS = BLOCKS - DATA_LEN % BLOCKS;
+
+		int start = 0;
+		for (int b = 0; b < BLOCKS; ++b)
+		  {
+			int blockLen = (b < SHORT_BLOCKS) ? SHORT_LEN : SHORT_LEN+1;
+			for (int k = 0; k < blockLen; ++k)
+			  {
+				int offset = (k < SHORT_LEN) ? k*BLOCKS : SHORT_LEN*BLOCKS - SHORT_BLOCKS;
+				codeWords[offset + b] = dataCodeWords[start + k];
+			  }
+			ErrorCorrectionEncoding.encode(dataCodeWords, start, blockLen, ECC_LEN, codeWords, DATA_LEN + b, BLOCKS);
+			start += blockLen;
+		  }
+
+		SPAN.end(Stage.ERROR_CORRECTION);
+	}
+
+}
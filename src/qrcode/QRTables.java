@@ -0,0 +1,83 @@
+package qrcode;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+import reedsolomon.ErrorCorrectionEncoding;
+
+/**
+ * Explicit initialization of the lookup tables of the pipeline. The Galois field tables,
+ * the format and version words and the capacities are static final arrays, built when their
+ * class is initialized; the tables derived per version (function pattern templates, as
+ * matrices and row-major buffers, data placement order and mask planes, penalty scorers)
+ * and per number of ECC (generator polynomials, batch products) are built on first use.
+ * All of them are immutable once published and read without locks by every thread.
+ * <p>
+ * warmUp builds them all before the first QR code, so that it is not slower than the next
+ * ones. main does the same and renders one QR code per level: run as the training run of a
+ * class data sharing archive, it loads and links every class of the pipeline.
+ */
+public final class QRTables {
+
+	private QRTables() {
+	}
+
+	/**
+	 * Build the tables of all the versions
+	 */
+	public static void warmUp() {
+		warmUp(QRCodeInfos.MIN_VERSION, QRCodeInfos.MAX_VERSION);
+	}
+
+	/**
+	 * Build the tables of a range of versions. Tables already built are kept, so warmUp can
+	 * be called several times and by several threads.
+	 *
+	 * @param minVersion
+	 *            the first version to prepare
+	 * @param maxVersion
+	 *            the last version to prepare
+	 */
+	public static void warmUp(int minVersion, int maxVersion) {
+		if (minVersion < QRCodeInfos.MIN_VERSION || maxVersion > QRCodeInfos.MAX_VERSION || minVersion > maxVersion)
+		  {
+			throw new IllegalArgumentException("The versions have to be between " + QRCodeInfos.MIN_VERSION + " and "
+					+ QRCodeInfos.MAX_VERSION);
+		  }
+		for (int version = minVersion; version <= maxVersion; ++version)
+		  {
+			MatrixConstruction.getTemplate(version);
+			MatrixConstruction.getModuleTemplate(version);
+			MaskPlanes.forVersion(version);
+			if (PackedPenaltyScorer.isEnabled())
+			  {
+				PackedPenaltyScorer.forVersion(version);
+			  }
+			else
+			  {
+				PenaltyScorer.forVersion(version);
+			  }
+			for (CorrectionLvl lvl : CorrectionLvl.values())
+			  {
+				ErrorCorrectionEncoding.warmUp(QRCodeInfos.getECCLength(version, lvl));
+			  }
+		  }
+	}
+
+	/**
+	 * Build every table and render one QR code per level, e.g. as the training run of a class
+	 * data sharing archive:
+	 * <pre>
+	 * java -XX:ArchiveClassesAtExit=qrcode.jsa -cp &lt;classes&gt; qrcode.QRTables
+	 * java -XX:SharedArchiveFile=qrcode.jsa -cp &lt;classes&gt; ...
+	 * </pre>
+	 */
+	public static void main(String[] args) {
+		warmUp();
+		for (CorrectionLvl lvl : CorrectionLvl.values())
+		  {
+			final int VERSION = DataEncoding.chooseVersion("QRTables", lvl, QRCodeInfos.MIN_VERSION,
+					QRCodeInfos.MAX_VERSION);
+			MatrixConstruction.renderQRCodeMatrix(VERSION, QREncoder.get().encode("QRTables", VERSION, lvl), lvl);
+		  }
+	}
+
+}
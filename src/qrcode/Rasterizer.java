@@ -0,0 +1,183 @@
+package qrcode;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Integer scaling of a matrix into pixels, surrounded by a white quiet zone. The pixels of
+ * a row of modules are drawn once, by runs of equal modules, then the row is copied scale-1
+ * times below itself; the pixels are written straight into the array of the raster.
+ */
+public final class Rasterizer {
+
+	private static final int B = 0xFF_00_00_00;
+	private static final int W = 0xFF_FF_FF_FF;
+	private static final byte BLACK = 0;
+	private static final byte WHITE = (byte) 0xFF;
+
+	private Rasterizer() {}
+
+	/**
+	 * Draw a matrix in an ARGB image, the module matrix[x][y] covering scale x scale pixels
+	 *
+	 * @param matrix
+	 *            the matrix, of any colours
+	 * @param scale
+	 *            the width in pixels of a module
+	 * @param border
+	 *            the width in pixels of the quiet zone
+	 * @return the image, of type TYPE_INT_ARGB
+	 */
+	public static BufferedImage toImage(int[][] matrix, int scale, int border) {
+		final int WIDTH = getWidth(matrix, scale, border), HEIGHT = getHeight(matrix, scale, border);
+		BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+		rasterize(matrix, scale, border, ((DataBufferInt) image.getRaster().getDataBuffer()).getData());
+		return image;
+	}
+
+	/**
+	 * Draw a black and white matrix in a grayscale image, the module matrix[x][y] covering
+	 * scale x scale pixels
+	 *
+	 * @param matrix
+	 *            the matrix, the modules other than black being drawn white
+	 * @param scale
+	 *            the width in pixels of a module
+	 * @param border
+	 *            the width in pixels of the quiet zone
+	 * @return the image, of type TYPE_BYTE_GRAY
+	 */
+	public static BufferedImage toGrayImage(int[][] matrix, int scale, int border) {
+		final int WIDTH = getWidth(matrix, scale, border), HEIGHT = getHeight(matrix, scale, border);
+		BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+		rasterize(matrix, scale, border, ((DataBufferByte) image.getRaster().getDataBuffer()).getData());
+		return image;
+	}
+
+	/**
+	 * Draw a matrix in ARGB pixels, row by row
+	 *
+	 * @param matrix
+	 *            the matrix, of any colours
+	 * @param scale
+	 *            the width in pixels of a module
+	 * @param border
+	 *            the width in pixels of the quiet zone
+	 * @param pixels
+	 *            the pixels, of at least getWidth x getHeight elements
+	 */
+	public static void rasterize(int[][] matrix, int scale, int border, int[] pixels) {
+		final int WIDTH = getWidth(matrix, scale, border), HEIGHT = getHeight(matrix, scale, border);
+		if (pixels.length < (long) WIDTH*HEIGHT)
+		  {
+			throw new IllegalArgumentException("The raster needs "+WIDTH*HEIGHT+" pixels");
+		  }
+		final int COLUMNS = matrix.length, ROWS = matrix[0].length;
+
+		Arrays.fill(pixels, 0, border*WIDTH, W);
+		int offset = border*WIDTH;
+		for (int row = 0; row < ROWS; ++row)
+		  {
+			Arrays.fill(pixels, offset, offset + border, W);
+			int x = offset + border;
+			for (int col = 0; col < COLUMNS;)
+			  {
+				final int COLOR = matrix[col][row];
+				int end = col + 1;
+				while (end < COLUMNS && matrix[end][row] == COLOR)
+				  {
+					++end;
+				  }
+				Arrays.fill(pixels, x, x + (end - col)*scale, COLOR);
+				x += (end - col)*scale;
+				col = end;
+			  }
+			Arrays.fill(pixels, x, offset + WIDTH, W);
+			for (int i = 1; i < scale; ++i)
+			  {
+				System.arraycopy(pixels, offset, pixels, offset + i*WIDTH, WIDTH);
+			  }
+			offset += scale*WIDTH;
+		  }
+		Arrays.fill(pixels, offset, offset + border*WIDTH, W);
+	}
+
+	/**
+	 * Draw a black and white matrix in gray pixels (0 black, 255 white), row by row
+	 *
+	 * @param matrix
+	 *            the matrix, the modules other than black being drawn white
+	 * @param scale
+	 *            the width in pixels of a module
+	 * @param border
+	 *            the width in pixels of the quiet zone
+	 * @param pixels
+	 *            the pixels, of at least getWidth x getHeight elements
+	 */
+	public static void rasterize(int[][] matrix, int scale, int border, byte[] pixels) {
+		final int WIDTH = getWidth(matrix, scale, border), HEIGHT = getHeight(matrix, scale, border);
+		if (pixels.length < (long) WIDTH*HEIGHT)
+		  {
+			throw new IllegalArgumentException("The raster needs "+WIDTH*HEIGHT+" pixels");
+		  }
+		final int COLUMNS = matrix.length, ROWS = matrix[0].length;
+
+		Arrays.fill(pixels, 0, border*WIDTH, WHITE);
+		int offset = border*WIDTH;
+		for (int row = 0; row < ROWS; ++row)
+		  {
+			Arrays.fill(pixels, offset, offset + border, WHITE);
+			int x = offset + border;
+			for (int col = 0; col < COLUMNS;)
+			  {
+				final boolean DARK = matrix[col][row] == B;
+				int end = col + 1;
+				while (end < COLUMNS && (matrix[end][row] == B) == DARK)
+				  {
+					++end;
+				  }
+				Arrays.fill(pixels, x, x + (end - col)*scale, DARK ? BLACK : WHITE);
+				x += (end - col)*scale;
+				col = end;
+			  }
+			Arrays.fill(pixels, x, offset + WIDTH, WHITE);
+			for (int i = 1; i < scale; ++i)
+			  {
+				System.arraycopy(pixels, offset, pixels, offset + i*WIDTH, WIDTH);
+			  }
+			offset += scale*WIDTH;
+		  }
+		Arrays.fill(pixels, offset, offset + border*WIDTH, WHITE);
+	}
+
+	/**
+	 * @return the width in pixels of the scaled matrix with its quiet zone
+	 */
+	public static int getWidth(int[][] matrix, int scale, int border) {
+		return size(matrix.length, scale, border);
+	}
+
+	/**
+	 * @return the height in pixels of the scaled matrix with its quiet zone
+	 */
+	public static int getHeight(int[][] matrix, int scale, int border) {
+		return size(matrix[0].length, scale, border);
+	}
+
+	private static int size(int modules, int scale, int border) {
+		if (scale < 1 || border < 0)
+		  {
+			throw new IllegalArgumentException("The scale has to be positive and the border non negative");
+		  }
+		final long SIZE = (long) modules*scale + 2L*border;
+		//the raster is an array indexed by int
+		if (SIZE*SIZE > Integer.MAX_VALUE)
+		  {
+			throw new IllegalArgumentException("The image would be too large");
+		  }
+		return (int) SIZE;
+	}
+
+}
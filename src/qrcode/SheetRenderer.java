@@ -0,0 +1,420 @@
+package qrcode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Sheet of many QR codes laid out on a grid, for print jobs: the codes are placed in the
+ * cells of the grid, then the whole raster is rendered in bands of rows in parallel and
+ * written as PNG, PGM or PBM. The raster has one byte per pixel (0 black, 255 white); it is
+ * held in memory, or in a memory-mapped file for sheets too large for the heap. A sheet
+ * must not be used by several threads at once, apart from the tasks of render.
+ */
+public final class SheetRenderer implements AutoCloseable {
+
+	private static final int B = 0xFF_00_00_00;
+	private static final byte BLACK = 0;
+	private static final byte WHITE = (byte) 0xFF;
+
+	/*
+	 * A region of the raster holds at most 1 GiB of whole rows, the rows of a band being
+	 * rendered by one task
+	 */
+	private static final long MAX_REGION = 1L << 30;
+	private static final int BAND_ROWS = 64;
+
+	private final int columns;
+	private final int rows;
+	private final int cellSize;
+	private final int width;
+	private final int height;
+
+	/*
+	 * The raster as regions of regionRows rows each
+	 */
+	private final ByteBuffer[] regions;
+	private final int regionRows;
+	private final FileChannel file;
+
+	private final List<Placement> placements = new ArrayList<>();
+
+	/*
+	 * Row read back by the writers
+	 */
+	private final byte[] line;
+
+	/**
+	 * Create a sheet held in memory
+	 *
+	 * @param columns
+	 *            the number of cells of a row of the grid
+	 * @param rows
+	 *            the number of cells of a column of the grid
+	 * @param cellSize
+	 *            the width in pixels of a cell
+	 */
+	public SheetRenderer(int columns, int rows, int cellSize) {
+		this(columns, rows, cellSize, (FileChannel) null);
+	}
+
+	/**
+	 * Create a sheet whose raster is a memory-mapped file, created or truncated. The
+	 * mapping is released when the sheet is garbage collected.
+	 *
+	 * @param columns
+	 *            the number of cells of a row of the grid
+	 * @param rows
+	 *            the number of cells of a column of the grid
+	 * @param cellSize
+	 *            the width in pixels of a cell
+	 * @param raster
+	 *            the file receiving the raster
+	 * @throws IOException if the file cannot be mapped
+	 */
+	public SheetRenderer(int columns, int rows, int cellSize, Path raster) throws IOException {
+		this(columns, rows, cellSize, open(columns, rows, cellSize, raster));
+		try
+		  {
+			for (int i = 0; i < regions.length; ++i)
+			  {
+				final long FIRST_ROW = (long) i*regionRows;
+				regions[i] = file.map(FileChannel.MapMode.READ_WRITE, FIRST_ROW*width, regionLength(i));
+			  }
+		  }
+		catch (Throwable e)
+		  {
+			closeAfter(e);
+			throw e;
+		  }
+	}
+
+	/**
+	 * Open the file of the raster once the size of the sheet is checked, so that invalid
+	 * arguments leave the file untouched
+	 */
+	private static FileChannel open(int columns, int rows, int cellSize, Path raster) throws IOException {
+		checkSize(columns, rows, cellSize);
+		return FileChannel.open(raster, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	private static void checkSize(int columns, int rows, int cellSize) {
+		if (columns < 1 || rows < 1 || cellSize < 1)
+		  {
+			throw new IllegalArgumentException("The grid needs at least one cell of one pixel");
+		  }
+		if ((long) columns*cellSize > MAX_REGION || (long) rows*cellSize > Integer.MAX_VALUE)
+		  {
+			throw new IllegalArgumentException("The sheet is too large");
+		  }
+	}
+
+	/**
+	 * Close the file of a sheet which could not be created
+	 */
+	private void closeAfter(Throwable error) {
+		if (file != null)
+		  {
+			try
+			  {
+				file.close();
+			  }
+			catch (IOException e)
+			  {
+				error.addSuppressed(e);
+			  }
+		  }
+	}
+
+	/**
+	 * @param file
+	 *            the file of the raster, which is mapped by the caller, null to allocate
+	 *            the raster in memory
+	 */
+	private SheetRenderer(int columns, int rows, int cellSize, FileChannel file) {
+		this.file = file;
+		try
+		  {
+			checkSize(columns, rows, cellSize);
+			this.columns = columns;
+			this.rows = rows;
+			this.cellSize = cellSize;
+			width = columns*cellSize;
+			height = rows*cellSize;
+
+			regionRows = (int) Math.min(height, MAX_REGION / width);
+			line = new byte[width];
+			regions = new ByteBuffer[(height + regionRows - 1) / regionRows];
+			if (file == null)
+			  {
+				for (int i = 0; i < regions.length; ++i)
+				  {
+					regions[i] = ByteBuffer.allocate(regionLength(i));
+				  }
+			  }
+		  }
+		catch (RuntimeException | Error e)
+		  {
+			closeAfter(e);
+			throw e;
+		  }
+	}
+
+	/**
+	 * @return the size in bytes of the region i, all the regions but the last being full
+	 */
+	private int regionLength(int i) {
+		return Math.min(regionRows, height - i*regionRows)*width;
+	}
+
+	/**
+	 * @return the width of the sheet in pixels
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return the height of the sheet in pixels
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Place a QR code in the middle of a cell, the margins of the cell forming its quiet zone.
+	 * The code is drawn by render.
+	 *
+	 * @param matrix
+	 *            the QR code, which must not be modified before render
+	 * @param column
+	 *            the column of the cell
+	 * @param row
+	 *            the row of the cell
+	 * @param scale
+	 *            the width in pixels of a module
+	 */
+	public void place(int[][] matrix, int column, int row, int scale) {
+		if (column < 0 || column >= columns || row < 0 || row >= rows)
+		  {
+			throw new IllegalArgumentException("The cell "+column+", "+row+" is outside of the grid");
+		  }
+		final int SIZE = matrix.length*scale;
+		if (scale < 1 || SIZE > cellSize)
+		  {
+			throw new IllegalArgumentException("The QR code does not fit in a cell of "+cellSize+" pixels");
+		  }
+		final int MARGIN = (cellSize - SIZE) / 2;
+		placements.add(new Placement(matrix, column*cellSize + MARGIN, row*cellSize + MARGIN, scale));
+	}
+
+	/**
+	 * Place QR codes in the cells in reading order, from the first cell
+	 *
+	 * @param matrices
+	 *            the QR codes, at most one per cell
+	 * @param scale
+	 *            the width in pixels of a module
+	 */
+	public void placeAll(List<int[][]> matrices, int scale) {
+		if (matrices.size() > columns*rows)
+		  {
+			throw new IllegalArgumentException("The sheet has only "+columns*rows+" cells");
+		  }
+		for (int i = 0; i < matrices.size(); ++i)
+		  {
+			place(matrices.get(i), i % columns, i / columns, scale);
+		  }
+	}
+
+	/**
+	 * Render the placed QR codes on a white sheet, bands of rows in parallel in the common
+	 * fork join pool
+	 */
+	public void render() {
+		render(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Render the placed QR codes on a white sheet, every band of rows being drawn by a task
+	 * of the executor
+	 *
+	 * @param executor
+	 *            the executor running the bands
+	 */
+	public void render(Executor executor) {
+		final int BANDS = (height + BAND_ROWS - 1) / BAND_ROWS;
+		CompletableFuture<?>[] tasks = new CompletableFuture<?>[BANDS];
+		for (int i = 0; i < BANDS; ++i)
+		  {
+			final int FIRST = i*BAND_ROWS;
+			tasks[i] = CompletableFuture.runAsync(() -> renderBand(FIRST, Math.min(FIRST + BAND_ROWS, height)), executor);
+		  }
+		CompletableFuture.allOf(tasks).join();
+	}
+
+	/**
+	 * Draw the rows from first (included) to last (excluded): white rows, then the rows of
+	 * the codes crossing them, one scaled line per row of modules
+	 */
+	private void renderBand(int first, int last) {
+		byte[] line = new byte[width];
+		Arrays.fill(line, WHITE);
+		for (int y = first; y < last; ++y)
+		  {
+			region(y).put(line, 0, width);
+		  }
+
+		for (Placement placement : placements)
+		  {
+			final int SIZE = placement.matrix.length;
+			final int TOP = placement.y, BOTTOM = placement.y + SIZE*placement.scale;
+			if (BOTTOM <= first || TOP >= last)
+			  {
+				continue;
+			  }
+			int moduleRow = -1;
+			for (int y = Math.max(first, TOP); y < Math.min(last, BOTTOM); ++y)
+			  {
+				if ((y - TOP) / placement.scale != moduleRow)
+				  {
+					moduleRow = (y - TOP) / placement.scale;
+					for (int col = 0, x = 0; col < SIZE; ++col, x += placement.scale)
+					  {
+						Arrays.fill(line, x, x + placement.scale, (placement.matrix[col][moduleRow] == B) ? BLACK : WHITE);
+					  }
+				  }
+				ByteBuffer region = region(y);
+				region.position(region.position() + placement.x);
+				region.put(line, 0, SIZE*placement.scale);
+			  }
+		  }
+	}
+
+	/**
+	 * @return a view of the region holding the row y, positioned at its first pixel
+	 */
+	private ByteBuffer region(int y) {
+		ByteBuffer region = regions[y / regionRows].duplicate();
+		region.position((y % regionRows)*width);
+		return region;
+	}
+
+	/**
+	 * Write the sheet as a binary PGM (P5) image, straight from the raster
+	 *
+	 * @param channel
+	 *            the channel receiving the image, not closed
+	 * @throws IOException if the channel cannot be written
+	 */
+	public void writePgm(WritableByteChannel channel) throws IOException {
+		ImageSink.writeFully(channel, ByteBuffer.wrap(BitmapWriter.header(BitmapWriter.Format.PGM, width, height)));
+		for (ByteBuffer region : regions)
+		  {
+			ImageSink.writeFully(channel, region.duplicate());
+		  }
+	}
+
+	/**
+	 * Write the sheet as a binary PBM (P4) image, 8 pixels per byte, black being 1
+	 *
+	 * @param channel
+	 *            the channel receiving the image, not closed
+	 * @throws IOException if the channel cannot be written
+	 */
+	public void writePbm(WritableByteChannel channel) throws IOException {
+		ImageSink.writeFully(channel, ByteBuffer.wrap(BitmapWriter.header(BitmapWriter.Format.PBM, width, height)));
+		final int ROW_BYTES = (width + 7) / 8;
+		byte[] row = new byte[ROW_BYTES];
+		ByteBuffer buffer = ByteBuffer.wrap(row);
+		for (int y = 0; y < height; ++y)
+		  {
+			pack(y, row, 0);
+			for (int i = 0; i < ROW_BYTES; ++i)
+			  {
+				row[i] = (byte) ~row[i];
+			  }
+			//the padding bits are 0
+			if (width % 8 != 0)
+			  {
+				row[ROW_BYTES - 1] &= (byte) (0xFF << (8 - width % 8));
+			  }
+			buffer.clear();
+			ImageSink.writeFully(channel, buffer);
+		  }
+	}
+
+	/**
+	 * Write the sheet as a 1 bit grayscale PNG image, compressed in strips of rows
+	 *
+	 * @param out
+	 *            the stream receiving the image, neither flushed nor closed
+	 * @param compressionLevel
+	 *            the Deflater level, -1 to 9
+	 * @return the number of bytes written
+	 * @throws IOException if the stream cannot be written
+	 */
+	public long writePng(OutputStream out, int compressionLevel) throws IOException {
+		return PngWriter.writePacked(width, height, this::pack, compressionLevel, out);
+	}
+
+	/**
+	 * Pack a row of the raster, 8 pixels per byte from the highest bit, white being 1
+	 */
+	private void pack(int y, byte[] row, int offset) {
+		region(y).get(line, 0, width);
+		for (int x = 0; x < width; x += 8)
+		  {
+			int bits = 0;
+			for (int i = 0; i < 8; ++i)
+			  {
+				bits <<= 1;
+				if ((x + i < width) && line[x + i] != BLACK)
+				  {
+					bits |= 1;
+				  }
+			  }
+			row[offset + x / 8] = (byte) bits;
+		  }
+	}
+
+	/**
+	 * Close the file of a memory-mapped sheet
+	 */
+	@Override
+	public void close() throws IOException {
+		if (file != null)
+		  {
+			file.close();
+		  }
+	}
+
+	/**
+	 * QR code placed on the sheet, at x,y in pixels
+	 */
+	private static final class Placement {
+		private final int[][] matrix;
+		private final int x;
+		private final int y;
+		private final int scale;
+
+		private Placement(int[][] matrix, int x, int y, int scale) {
+			this.matrix = matrix;
+			this.x = x;
+			this.y = y;
+			this.scale = scale;
+		}
+	}
+
+}
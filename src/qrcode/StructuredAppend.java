@@ -0,0 +1,234 @@
+package qrcode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+public final class StructuredAppend {
+
+	/*
+	 * A structured append set holds at most 16 symbols
+	 */
+	public static final int MAX_SYMBOLS = 16;
+
+	/*
+	 * Bytes taken in every symbol by the 20 bits header: 4 bits fit in the half byte left
+	 * by getMaxInputLength, the terminator being left out of a full symbol
+	 */
+	private static final int HEADER_BYTES = 2;
+
+	/**
+	 * Receives the symbols of a set as soon as they are rendered. The symbols come in
+	 * any order, possibly from different threads, but the calls never overlap.
+	 */
+	public interface SymbolWriter {
+		void write(int position, int total, int[][] matrix);
+	}
+
+	/**
+	 * Split the input over as few symbols as possible, using the correction level L
+	 * and up to version 40
+	 *
+	 * @param input
+	 * @return the matrices of the symbols, in order
+	 */
+	public static List<int[][]> renderSymbols(String input) {
+		return renderSymbols(input, CorrectionLvl.L, QRCodeInfos.MAX_VERSION);
+	}
+
+	/**
+	 * Split the input over as few symbols as possible and render them in parallel
+	 *
+	 * @param input
+	 * @param lvl
+	 *            the error correction level of every symbol
+	 * @param maxVersion
+	 *            the largest version allowed for a symbol
+	 * @return the matrices of the symbols, in order
+	 * @throws IllegalArgumentException if the input needs more than 16 symbols
+	 */
+	public static List<int[][]> renderSymbols(String input, CorrectionLvl lvl, int maxVersion) {
+		int[][] chunks = splitInput(input, lvl, maxVersion);
+		int parity = computeParity(chunks);
+
+		List<CompletableFuture<int[][]>> futures = new ArrayList<>(chunks.length);
+		for (int i = 0; i < chunks.length; ++i)
+		  {
+			final int position = i;
+			futures.add(CompletableFuture.supplyAsync(
+					() -> renderSymbol(chunks[position], position, chunks.length, parity, lvl, maxVersion)));
+		  }
+
+		List<int[][]> symbols = new ArrayList<>(chunks.length);
+		for (CompletableFuture<int[][]> future : futures)
+		  {
+			symbols.add(future.join());
+		  }
+		return symbols;
+	}
+
+	/**
+	 * Split the input over as few symbols as possible, render them in parallel and hand
+	 * every symbol to the writer as soon as it is ready
+	 *
+	 * @param input
+	 * @param lvl
+	 *            the error correction level of every symbol
+	 * @param maxVersion
+	 *            the largest version allowed for a symbol
+	 * @param executor
+	 *            where the symbols are rendered and written
+	 * @param writer
+	 *            receives every symbol once
+	 * @return a future completing when all the symbols were written
+	 * @throws IllegalArgumentException if the input needs more than 16 symbols
+	 */
+	public static CompletableFuture<Void> writeSymbols(String input, CorrectionLvl lvl, int maxVersion,
+			Executor executor, SymbolWriter writer) {
+		int[][] chunks = splitInput(input, lvl, maxVersion);
+		int parity = computeParity(chunks);
+		final Object lock = new Object();
+
+		CompletableFuture<?>[] futures = new CompletableFuture<?>[chunks.length];
+		for (int i = 0; i < chunks.length; ++i)
+		  {
+			final int position = i;
+			futures[i] = CompletableFuture.supplyAsync(
+					() -> renderSymbol(chunks[position], position, chunks.length, parity, lvl, maxVersion), executor)
+					.thenAccept(matrix -> {
+						synchronized (lock) {
+							writer.write(position, chunks.length, matrix);
+						}
+					});
+		  }
+		return CompletableFuture.allOf(futures);
+	}
+
+	/**
+	 * Same as writeSymbols, with the common fork join pool
+	 */
+	public static CompletableFuture<Void> writeSymbols(String input, CorrectionLvl lvl, int maxVersion,
+			SymbolWriter writer) {
+		return writeSymbols(input, lvl, maxVersion, ForkJoinPool.commonPool(), writer);
+	}
+
+	/**
+	 * A writer saving every symbol as an image named name_position.png in the images directory
+	 *
+	 * @param name
+	 *            the common prefix of the file names
+	 * @return the writer
+	 */
+	public static SymbolWriter imageWriter(String name) {
+		return (position, total, matrix) -> Helpers.writeMatrix(name + "_" + position, matrix);
+	}
+
+	/**
+	 * Encode one symbol of a set: structured append header, byte mode data, padding and
+	 * error correction, in the smallest version able to hold them
+	 *
+	 * @param chunk
+	 *            the bytes of the input carried by this symbol
+	 * @param position
+	 *            the index of the symbol in the set
+	 * @param total
+	 *            the number of symbols of the set
+	 * @param parity
+	 *            the xor of all the bytes of the input
+	 * @param lvl
+	 * @param maxVersion
+	 * @return the encoded symbol in boolean[] format
+	 */
+	public static boolean[] encodeSymbol(int[] chunk, int position, int total, int parity,
+			CorrectionLvl lvl, int maxVersion) {
+		final int VERSION = symbolVersion(chunk.length, lvl, maxVersion);
+		final int CODEWORDS = QRCodeInfos.getCodeWordsLength(VERSION, lvl);
+
+		int[] encodedMessage = DataEncoding.addInformations(chunk, VERSION);
+		encodedMessage = DataEncoding.addStructuredAppend(encodedMessage, position, total, parity);
+		if (encodedMessage.length > CODEWORDS)
+		  {
+			//the last byte only holds the terminator, which a full symbol does without
+			encodedMessage = Arrays.copyOf(encodedMessage, CODEWORDS);
+		  }
+		encodedMessage = DataEncoding.fillSequence(encodedMessage, CODEWORDS);
+		encodedMessage = DataEncoding.addErrorCorrection(encodedMessage, VERSION, lvl);
+
+		return DataEncoding.bytesToBinaryArray(encodedMessage);
+	}
+
+	/**
+	 * Cut the input in ISO-8859-1 into chunks of equal length (the last one possibly
+	 * shorter), as few as the capacity of maxVersion allows
+	 *
+	 * @param input
+	 * @param lvl
+	 * @param maxVersion
+	 * @return the bytes carried by each symbol
+	 * @throws IllegalArgumentException if the input needs more than 16 symbols
+	 */
+	public static int[][] splitInput(String input, CorrectionLvl lvl, int maxVersion) {
+		byte[] byteMessage = input.getBytes(StandardCharsets.ISO_8859_1);
+		final int BYTE_LEN = byteMessage.length;
+		final int CAPACITY = QRCodeInfos.getMaxInputLength(maxVersion, lvl) - HEADER_BYTES;
+
+		int symbols = Math.max(1, (BYTE_LEN + CAPACITY - 1) / CAPACITY);
+		if (symbols > MAX_SYMBOLS)
+		  {
+			throw new IllegalArgumentException("An input of "+BYTE_LEN+" bytes needs "+symbols
+					+" symbols, a structured append set holds at most "+MAX_SYMBOLS);
+		  }
+		final int CHUNK_LEN = (BYTE_LEN + symbols - 1) / symbols;
+		//rounding the chunks up may leave the last symbols empty
+		symbols = (BYTE_LEN == 0) ? 1 : (BYTE_LEN + CHUNK_LEN - 1) / CHUNK_LEN;
+
+		int[][] chunks = new int[symbols][];
+		for (int i = 0; i < symbols; ++i)
+		  {
+			int from = i*CHUNK_LEN;
+			int to = Math.min(BYTE_LEN, from+CHUNK_LEN);
+			chunks[i] = new int[to-from];
+			for (int j = from; j < to; ++j)
+			  {
+				chunks[i][j-from] = byteMessage[j] & 0xFF;
+			  }
+		  }
+		return chunks;
+	}
+
+	/**
+	 * Get the smallest version able to hold a chunk and the structured append header
+	 *
+	 * @param chunkLength
+	 * @param lvl
+	 * @param maxVersion
+	 * @return the version of the symbol
+	 */
+	public static int symbolVersion(int chunkLength, CorrectionLvl lvl, int maxVersion) {
+		return QRCodeInfos.getMinimumVersion(chunkLength + HEADER_BYTES, lvl, QRCodeInfos.MIN_VERSION, maxVersion);
+	}
+
+	private static int computeParity(int[][] chunks) {
+		int parity = 0;
+		for (int[] chunk : chunks)
+		  {
+			for (int datum : chunk)
+			  {
+				parity ^= datum;
+			  }
+		  }
+		return parity;
+	}
+
+	private static int[][] renderSymbol(int[] chunk, int position, int total, int parity,
+			CorrectionLvl lvl, int maxVersion) {
+		boolean[] data = encodeSymbol(chunk, position, total, parity, lvl, maxVersion);
+		return MatrixConstruction.renderQRCodeMatrix(symbolVersion(chunk.length, lvl, maxVersion), data, lvl);
+	}
+}
@@ -0,0 +1,422 @@
+package reedsolomon;
+
+import java.util.Arrays;
+
+public final class ErrorCorrectionDecoding {
+
+	/*
+	 * alpha^p for p up to 2*254, so that the product of two non zero elements needs no
+	 * modulo, and the discrete logarithm of every non zero element
+	 */
+	private static final int[] EXP = expTable();
+	private static final int[] LOG = logTable();
+
+	/*
+	 * Scratch buffers, reused by every block corrected by this decoder
+	 */
+	private final int maxErrorCorrectionCodewords;
+	private final int[] syndromes;
+	private final int[] locator;
+	private final int[] previous;
+	private final int[] saved;
+	private final int[] evaluator;
+	private final int[] remainder;
+
+	/**
+	 * Create a decoder and its scratch buffers. A decoder does not allocate while correcting
+	 * blocks, but it must not be shared by several threads.
+	 *
+	 * @param maxErrorCorrectionCodewords
+	 *            the largest number of error correction codewords of the blocks to correct
+	 */
+	public ErrorCorrectionDecoding(int maxErrorCorrectionCodewords) {
+		if (maxErrorCorrectionCodewords < 1 || maxErrorCorrectionCodewords > 254)
+		  {
+			throw new IllegalArgumentException("The number of error correction codewords has to be between 1 and 254");
+		  }
+		this.maxErrorCorrectionCodewords = maxErrorCorrectionCodewords;
+		syndromes = new int[maxErrorCorrectionCodewords];
+		locator = new int[maxErrorCorrectionCodewords+1];
+		previous = new int[maxErrorCorrectionCodewords+1];
+		saved = new int[maxErrorCorrectionCodewords+1];
+		evaluator = new int[maxErrorCorrectionCodewords];
+		remainder = new int[maxErrorCorrectionCodewords];
+	}
+
+	/**
+	 * Correct in place the errors of a block made of data codewords followed by the error
+	 * correction codewords generated by ErrorCorrectionEncoding.encode. Up to
+	 * errorCorrectionCodewords/2 wrong codewords can be corrected.
+	 *
+	 * @param codeWords
+	 *            the data codewords followed by the error correction codewords (at most 255)
+	 * @param errorCorrectionCodewords
+	 *            the number of error correction codewords at the end of the block
+	 * @return the number of codewords that were corrected
+	 * @throws IllegalArgumentException if the block has too many errors to be corrected
+	 */
+	public static int decode(int[] codeWords, int errorCorrectionCodewords) {
+		return new ErrorCorrectionDecoding(errorCorrectionCodewords).correct(codeWords, errorCorrectionCodewords);
+	}
+
+	/**
+	 * Correct in place a block whose errors are partly known: e erasures (codewords known to
+	 * be unreliable) and v unknown errors can be corrected as long as 2v+e does not exceed
+	 * errorCorrectionCodewords.
+	 *
+	 * @param codeWords
+	 *            the data codewords followed by the error correction codewords (at most 255)
+	 * @param errorCorrectionCodewords
+	 *            the number of error correction codewords at the end of the block
+	 * @param erasures
+	 *            the distinct indices in codeWords of the unreliable codewords
+	 * @return the number of codewords that were corrected
+	 * @throws IllegalArgumentException if the block has too many errors to be corrected
+	 */
+	public static int decode(int[] codeWords, int errorCorrectionCodewords, int[] erasures) {
+		return new ErrorCorrectionDecoding(errorCorrectionCodewords)
+				.correct(codeWords, errorCorrectionCodewords, erasures, erasures.length);
+	}
+
+	/**
+	 * Correct in place the errors of a block, like decode, reusing the buffers of this decoder
+	 *
+	 * @see #decode(int[], int)
+	 */
+	public int correct(int[] codeWords, int errorCorrectionCodewords) {
+		return correct(codeWords, errorCorrectionCodewords, null, 0);
+	}
+
+	/**
+	 * Correct in place the errors and erasures of a block, like decode, reusing the buffers
+	 * of this decoder
+	 *
+	 * @param erasureCount
+	 *            the number of indices to read from erasures
+	 * @see #decode(int[], int, int[])
+	 */
+	public int correct(int[] codeWords, int errorCorrectionCodewords, int[] erasures, int erasureCount) {
+		final int ECC = errorCorrectionCodewords;
+		if (ECC < 1 || ECC > maxErrorCorrectionCodewords || codeWords.length > 255 || codeWords.length <= ECC)
+		  {
+			throw new IllegalArgumentException("The block does not match the decoder");
+		  }
+		if (erasureCount > ECC)
+		  {
+			throw new IllegalArgumentException("Too many errors to be corrected");
+		  }
+
+		/*
+		 * Most blocks have no error: their error correction codewords are generated again,
+		 * with one table lookup per codeword and coefficient of the generator
+		 */
+		if (isCodeword(codeWords, ECC))
+		  {
+			return 0;
+		  }
+
+		/*
+		 * Syndromes: the block evaluated at the roots alpha^0 ... alpha^(ECC-1) of the generator
+		 */
+		if (!computeSyndromes(codeWords, syndromes, ECC))
+		  {
+			return 0;
+		  }
+
+		/*
+		 * Errata locator polynomial, lowest degree first, starting from the erasure locator
+		 */
+		initializeLocator(codeWords.length, erasures, erasureCount, ECC);
+		final int DEGREE = berlekampMassey(syndromes, ECC, locator, previous, saved, erasureCount);
+		if (2*DEGREE - erasureCount > ECC)
+		  {
+			throw new IllegalArgumentException("Too many errors to be corrected");
+		  }
+
+		/*
+		 * Error evaluator polynomial: syndromes * locator mod x^ECC
+		 */
+		for (int i = 0; i < ECC; ++i)
+		  {
+			int value = 0;
+			for (int j = 0; j <= Math.min(i, DEGREE); ++j)
+			  {
+				value ^= mul(syndromes[i-j], locator[j]);
+			  }
+			evaluator[i] = value;
+		  }
+
+		return chienForney(codeWords, locator, DEGREE, evaluator, ECC);
+	}
+
+	/**
+	 * Correct many blocks sharing the same number of error correction codewords, for example
+	 * the blocks of a QR code or a whole batch of them
+	 *
+	 * @param blocks
+	 *            the blocks, corrected in place
+	 * @param errorCorrectionCodewords
+	 *            the number of error correction codewords at the end of each block
+	 * @param corrected
+	 *            receives the number of corrected codewords of each block, -1 when a block
+	 *            has too many errors (can be null)
+	 * @return the number of blocks that could not be corrected
+	 */
+	public int correctAll(int[][] blocks, int errorCorrectionCodewords, int[] corrected) {
+		return correctAll(blocks, errorCorrectionCodewords, null, corrected);
+	}
+
+	/**
+	 * Correct many blocks sharing the same number of error correction codewords, each with
+	 * its own erasures
+	 *
+	 * @param erasures
+	 *            the indices of the unreliable codewords of each block, null (or a null
+	 *            entry) when they are unknown
+	 * @see #correctAll(int[][], int, int[])
+	 * @see #decode(int[], int, int[])
+	 */
+	public int correctAll(int[][] blocks, int errorCorrectionCodewords, int[][] erasures, int[] corrected) {
+		int failures = 0;
+		for (int i = 0; i < blocks.length; ++i)
+		  {
+			final int[] ERASURES = (erasures == null) ? null : erasures[i];
+			int result;
+			try
+			  {
+				result = correct(blocks[i], errorCorrectionCodewords, ERASURES,
+						(ERASURES == null) ? 0 : ERASURES.length);
+			  }
+			catch (IllegalArgumentException e)
+			  {
+				result = -1;
+				++failures;
+			  }
+			if (corrected != null)
+			  {
+				corrected[i] = result;
+			  }
+		  }
+		return failures;
+	}
+
+	/**
+	 * @return true if the error correction codewords of the block are the ones of its data
+	 */
+	private boolean isCodeword(int[] codeWords, int ecc) {
+		final int DATA_LEN = codeWords.length - ecc;
+		ErrorCorrectionEncoding.encode(codeWords, 0, DATA_LEN, ecc, remainder, 0, 1);
+		for (int i = 0; i < ecc; ++i)
+		  {
+			if (remainder[i] != (codeWords[DATA_LEN + i] & 0xFF))
+			  {
+				return false;
+			  }
+		  }
+		return true;
+	}
+
+	/**
+	 * Evaluate the block at alpha^0 ... alpha^(count-1), the first codeword being the
+	 * coefficient of highest degree
+	 *
+	 * @return false if all the syndromes are null, i.e. the block has no detectable error
+	 */
+	static boolean computeSyndromes(int[] codeWords, int[] syndromes, int count) {
+		boolean error = false;
+		for (int j = 0; j < count; ++j)
+		  {
+			//Horner's method, the product by alpha^j being an addition of exponents
+			int syndrome = 0;
+			for (int word : codeWords)
+			  {
+				syndrome = ((syndrome == 0) ? 0 : EXP[LOG[syndrome] + j]) ^ (word & 0xFF);
+			  }
+			syndromes[j] = syndrome;
+			error |= syndrome != 0;
+		  }
+		return error;
+	}
+
+	/**
+	 * Set the locator and the previous locator of Berlekamp-Massey to the erasure locator,
+	 * the product of (1 - X x) for the position X of every erasure
+	 */
+	private void initializeLocator(int length, int[] erasures, int erasureCount, int ecc) {
+		Arrays.fill(locator, 0, ecc+1, 0);
+		locator[0] = 1;
+		for (int e = 0; e < erasureCount; ++e)
+		  {
+			if (erasures[e] < 0 || erasures[e] >= length)
+			  {
+				throw new IllegalArgumentException("The erasure "+erasures[e]+" is outside of the block");
+			  }
+			final int X = ErrorCorrectionEncoding.exp(length-1-erasures[e]);
+			for (int i = e+1; i > 0; --i)
+			  {
+				locator[i] ^= mul(X, locator[i-1]);
+			  }
+		  }
+		System.arraycopy(locator, 0, previous, 0, ecc+1);
+	}
+
+	/**
+	 * Berlekamp-Massey algorithm: shortest polynomial generating the syndromes
+	 *
+	 * @param syndromes
+	 * @param count
+	 *            the number of syndromes
+	 * @param locator
+	 *            the erasure locator (1 without erasure), receives the errata locator, lowest degree first
+	 * @param previous
+	 *            a copy of the initial locator, used as scratch buffer
+	 * @param saved
+	 *            scratch buffer
+	 * @param erasureCount
+	 *            the degree of the initial locator
+	 * @return the degree of the locator, i.e. the number of errors and erasures
+	 */
+	static int berlekampMassey(int[] syndromes, int count, int[] locator, int[] previous, int[] saved, int erasureCount) {
+		final int LEN = count+1;
+		int degree = erasureCount, shift = 1, previousDiscrepancy = 1;
+		for (int k = erasureCount; k < count; ++k)
+		  {
+			int discrepancy = syndromes[k];
+			for (int i = 1; i <= Math.min(degree, k); ++i)
+			  {
+				discrepancy ^= mul(locator[i], syndromes[k-i]);
+			  }
+
+			if (discrepancy == 0)
+			  {
+				++shift;
+				continue;
+			  }
+
+			int coefficient = div(discrepancy, previousDiscrepancy);
+			boolean lengthChange = 2*degree <= k + erasureCount;
+			if (lengthChange)
+			  {
+				System.arraycopy(locator, 0, saved, 0, LEN);
+			  }
+			for (int i = shift; i < LEN; ++i)
+			  {
+				locator[i] ^= mul(coefficient, previous[i-shift]);
+			  }
+			if (lengthChange)
+			  {
+				degree = k+1+erasureCount-degree;
+				System.arraycopy(saved, 0, previous, 0, LEN);
+				previousDiscrepancy = discrepancy;
+				shift = 1;
+			  }
+			else
+			  {
+				++shift;
+			  }
+		  }
+		return degree;
+	}
+
+	/**
+	 * Chien search for the roots of the locator, and Forney algorithm for the error values
+	 *
+	 * @return the number of corrected codewords
+	 * @throws IllegalArgumentException if the locator does not have as many roots as its degree
+	 */
+	private static int chienForney(int[] codeWords, int[] locator, int degree, int[] evaluator, int ecc) {
+		final int N = codeWords.length;
+		int found = 0, corrected = 0;
+
+		for (int p = 0; p < N && found < degree; ++p)
+		  {
+			//the codeword p is the coefficient of x^(N-1-p): its locator is X = alpha^(N-1-p)
+			final int POWER = N-1-p;
+			final int X_INV = ErrorCorrectionEncoding.exp(255 - POWER);
+			if (evaluate(locator, degree, X_INV) != 0)
+			  {
+				continue;
+			  }
+
+			//formal derivative of the locator: only the odd terms remain in GF(2^8)
+			int derivative = 0;
+			for (int i = 1; i <= degree; i += 2)
+			  {
+				derivative ^= mul(locator[i], pow(X_INV, i-1));
+			  }
+			if (derivative == 0)
+			  {
+				throw new IllegalArgumentException("Too many errors to be corrected");
+			  }
+			int magnitude = div(mul(ErrorCorrectionEncoding.exp(POWER), evaluate(evaluator, ecc-1, X_INV)), derivative);
+			//an erasure may hold the right value
+			if (magnitude != 0)
+			  {
+				codeWords[p] ^= magnitude;
+				++corrected;
+			  }
+			++found;
+		  }
+
+		if (found != degree)
+		  {
+			throw new IllegalArgumentException("Too many errors to be corrected");
+		  }
+		return corrected;
+	}
+
+	/**
+	 * Evaluate a polynomial (lowest degree first) with Horner's method
+	 */
+	static int evaluate(int[] poly, int degree, int x) {
+		int result = 0;
+		for (int i = degree; i >= 0; --i)
+		  {
+			result = mul(result, x) ^ poly[i];
+		  }
+		return result;
+	}
+
+	static int mul(int a, int b) {
+		if (a == 0 || b == 0)
+		  {
+			return 0;
+		  }
+		return EXP[LOG[a] + LOG[b]];
+	}
+
+	static int div(int a, int b) {
+		if (a == 0)
+		  {
+			return 0;
+		  }
+		return EXP[LOG[a] + 255 - LOG[b]];
+	}
+
+	static int pow(int a, int n) {
+		if (n == 0)
+		  {
+			return 1;
+		  }
+		return (a == 0) ? 0 : ErrorCorrectionEncoding.exp(ErrorCorrectionEncoding.log(a) * n);
+	}
+
+	private static int[] expTable() {
+		int[] table = new int[2*255];
+		for (int p = 0; p < table.length; ++p)
+		  {
+			table[p] = ErrorCorrectionEncoding.exp(p);
+		  }
+		return table;
+	}
+
+	private static int[] logTable() {
+		int[] table = new int[256];
+		for (int value = 1; value < table.length; ++value)
+		  {
+			table[value] = ErrorCorrectionEncoding.log(value);
+		  }
+		return table;
+	}
+
+}
@@ -1,9 +1,34 @@
 package reedsolomon;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 public final class ErrorCorrectionEncoding {
 	
 	private static final int[] ANTILOG_TABLE = antilogTableGenerator();
 	private static final int[] LOG_TABLE = logTableGenerator();
+
+	/*
+	 * Generator polynomials, built on first use: index n holds the exponents of the
+	 * coefficients of x^(n-1) down to x^0 of the generator with n roots (its x^n
+	 * coefficient being 1)
+	 */
+	private static final AtomicReferenceArray<int[]> GENERATORS = new AtomicReferenceArray<>(256);
+
+	/*
+	 * alpha^i for i up to 2*254, so that the sum of two exponents needs no modulo
+	 */
+	private static final int[] POWERS = powersGenerator();
+
+	/*
+	 * Batch encoding: 8 messages in the bytes of a long. Index 8*j+b holds the product of the
+	 * coefficient j of the generator with n roots by x^b, repeated in the 8 bytes
+	 */
+	private static final int LANES = 8;
+	private static final long LOW_BITS = 0x0101010101010101L;
+	private static final AtomicReferenceArray<long[]> BATCH_PRODUCTS = new AtomicReferenceArray<>(256);
 	
 	private static final int[] antilogTableGenerator() {
 		int[] table = new int[256];
@@ -42,6 +67,41 @@ public final class ErrorCorrectionEncoding {
 		return table;
 	}
 
+	private static int[] powersGenerator() {
+		int[] table = new int[2*255];
+		for(int i=0;i<table.length;i++) {
+			table[i] = LOG_TABLE[i % 255];
+		}
+		return table;
+	}
+
+	/**
+	 * Power of the generator alpha of GF(256), read in the shared tables
+	 * @param power any non negative exponent
+	 * @return alpha^power
+	 */
+	static int exp(int power) {
+		return LOG_TABLE[power % 255];
+	}
+
+	/**
+	 * Discrete logarithm in GF(256), read in the shared tables
+	 * @param value a non zero element of GF(256)
+	 * @return the exponent p, between 0 and 254, such that alpha^p == value
+	 */
+	static int log(int value) {
+		return ANTILOG_TABLE[value] % 255;
+	}
+
+	/**
+	 * Build the generator and the batch products of a number of ECC now rather than on first
+	 * use, e.g. before the first QR code or in the training run of a class data sharing archive
+	 * @param errorCorrectionCodewords the number of ECC per block to prepare
+	 */
+	public static void warmUp(int errorCorrectionCodewords) {
+		batchProducts(errorCorrectionCodewords);
+	}
+
 
 	/**
 	 * Generate a given number of error correction codewords (ECC) for the given sequence of bytes
@@ -115,6 +175,166 @@ public final class ErrorCorrectionEncoding {
 	}
 	
 	
+	/**
+	 * Generate the error correction codewords of a part of an array without allocating,
+	 * the codewords being written every resultStride elements of result (to interleave the
+	 * blocks of a QR code directly)
+	 * @param messageCodeWords the array holding the sequence of bytes
+	 * @param offset the index of the first byte of the sequence
+	 * @param length the length of the sequence
+	 * @param errorCorrectionCodewords the number of ECC to generate
+	 * @param result the array receiving the ECC
+	 * @param resultOffset the index of the first ECC in result
+	 * @param resultStride the distance between two ECC in result
+	 */
+	public static void encode(int[] messageCodeWords, int offset, int length, int errorCorrectionCodewords,
+			int[] result, int resultOffset, int resultStride) {
+		final int[] GENERATOR = generatorExponents(errorCorrectionCodewords);
+		final int LAST = resultOffset + (errorCorrectionCodewords-1)*resultStride;
+
+		for(int k=resultOffset;k<=LAST;k+=resultStride) {
+			result[k] = 0;
+		}
+
+		/*
+		 * Polynomial division as a shift register: result holds the remainder, highest degree first
+		 */
+		for(int i=offset;i<offset+length;i++) {
+			int factor = (messageCodeWords[i] & 0xFF) ^ result[resultOffset];
+			if(factor == 0) {
+				for(int k=resultOffset;k<LAST;k+=resultStride) {
+					result[k] = result[k+resultStride];
+				}
+				result[LAST] = 0;
+			} else {
+				//shift and subtract factor * generator in the same pass
+				int factorExponent = ANTILOG_TABLE[factor] % 255;
+				int j = 0;
+				for(int k=resultOffset;k<LAST;k+=resultStride) {
+					result[k] = result[k+resultStride] ^ POWERS[factorExponent + GENERATOR[j++]];
+				}
+				result[LAST] = POWERS[factorExponent + GENERATOR[j]];
+			}
+		}
+	}
+
+	/**
+	 * Generate the error correction codewords of many messages of the same length, the
+	 * messages being encoded 8 at a time in the bytes of a long: the factor of each division
+	 * step is split in its 8 bits, and the product of the 8 factors by a coefficient of the
+	 * generator is the XOR of the precomputed products by x^0 ... x^7 selected by these bits.
+	 * Shorter messages can be padded with leading zeros, which do not change their ECC.
+	 * @param messages the messages as a structure of arrays: byte i of message m at index i*count+m
+	 * @param count the number of messages
+	 * @param length the length of every message
+	 * @param errorCorrectionCodewords the number of ECC to generate for every message
+	 * @param result receives the ECC in the same layout: ECC k of message m at index k*count+m
+	 */
+	public static void encodeBatch(byte[] messages, int count, int length, int errorCorrectionCodewords, byte[] result) {
+		final int ECC = errorCorrectionCodewords;
+		final long[] PRODUCTS = batchProducts(ECC);
+		if(count < 0 || length < 0 || messages.length < count*length || result.length < count*ECC) {
+			throw new IllegalArgumentException("The buffers are too small for "+count+" messages");
+		}
+		final ByteBuffer IN = ByteBuffer.wrap(messages).order(ByteOrder.LITTLE_ENDIAN);
+		final ByteBuffer OUT = ByteBuffer.wrap(result).order(ByteOrder.LITTLE_ENDIAN);
+
+		//remainders of the 8 messages, highest degree first, followed by a 0 shifted in
+		long[] remainder = new long[ECC+1];
+		for(int first=0;first<count;first+=LANES) {
+			final int LANE_COUNT = Math.min(LANES, count-first);
+			Arrays.fill(remainder, 0);
+
+			for(int i=0;i<length;i++) {
+				long factor = load(IN, i*count+first, LANE_COUNT) ^ remainder[0];
+				//bit b of every factor spread over its byte
+				long b0 = (factor & LOW_BITS)*0xFF;
+				long b1 = (factor>>>1 & LOW_BITS)*0xFF;
+				long b2 = (factor>>>2 & LOW_BITS)*0xFF;
+				long b3 = (factor>>>3 & LOW_BITS)*0xFF;
+				long b4 = (factor>>>4 & LOW_BITS)*0xFF;
+				long b5 = (factor>>>5 & LOW_BITS)*0xFF;
+				long b6 = (factor>>>6 & LOW_BITS)*0xFF;
+				long b7 = (factor>>>7 & LOW_BITS)*0xFF;
+				for(int j=0,p=0;j<ECC;j++,p+=8) {
+					remainder[j] = remainder[j+1]
+							^ (b0 & PRODUCTS[p]) ^ (b1 & PRODUCTS[p+1]) ^ (b2 & PRODUCTS[p+2]) ^ (b3 & PRODUCTS[p+3])
+							^ (b4 & PRODUCTS[p+4]) ^ (b5 & PRODUCTS[p+5]) ^ (b6 & PRODUCTS[p+6]) ^ (b7 & PRODUCTS[p+7]);
+				}
+			}
+
+			for(int k=0;k<ECC;k++) {
+				store(OUT, k*count+first, LANE_COUNT, remainder[k]);
+			}
+		}
+	}
+
+	private static long load(ByteBuffer buffer, int index, int lanes) {
+		if(lanes == LANES) {
+			return buffer.getLong(index);
+		}
+		long value = 0;
+		for(int m=0;m<lanes;m++) {
+			value |= (buffer.get(index+m) & 0xFFL) << (8*m);
+		}
+		return value;
+	}
+
+	private static void store(ByteBuffer buffer, int index, int lanes, long value) {
+		if(lanes == LANES) {
+			buffer.putLong(index, value);
+			return;
+		}
+		for(int m=0;m<lanes;m++) {
+			buffer.put(index+m, (byte) (value >>> (8*m)));
+		}
+	}
+
+	private static long[] batchProducts(int n) {
+		final int[] GENERATOR = generatorExponents(n);
+		long[] products = BATCH_PRODUCTS.get(n);
+		if(products == null) {
+			products = new long[8*n];
+			for(int j=0;j<n;j++) {
+				//x^b is alpha^b for b < 8
+				for(int b=0;b<8;b++) {
+					products[8*j+b] = POWERS[GENERATOR[j]+b] * LOW_BITS;
+				}
+			}
+			BATCH_PRODUCTS.compareAndSet(n, null, products);
+		}
+		return products;
+	}
+
+	private static int[] generatorExponents(int n) {
+		if(n<1 || n>255) {
+			throw new IllegalArgumentException("The number of error correction codewords has to be between 1 and 255");
+		}
+		int[] exponents = GENERATORS.get(n);
+		if(exponents == null) {
+			/*
+			 * (x - alpha^0)(x - alpha^1)...(x - alpha^(n-1)), lowest degree first
+			 */
+			int[] poly = new int[n+1];
+			poly[0] = 1;
+			for(int i=0;i<n;i++) {
+				for(int j=i+1;j>0;j--) {
+					int product = (poly[j] == 0) ? 0 : LOG_TABLE[(ANTILOG_TABLE[poly[j]] + i) % 255];
+					poly[j] = poly[j-1] ^ product;
+				}
+				poly[0] = (poly[0] == 0) ? 0 : LOG_TABLE[(ANTILOG_TABLE[poly[0]] + i) % 255];
+			}
+			//all the coefficients of the generator are non zero
+			exponents = new int[n];
+			for(int j=0;j<n;j++) {
+				exponents[j] = ANTILOG_TABLE[poly[n-1-j]] % 255;
+			}
+			GENERATORS.compareAndSet(n, null, exponents);
+		}
+		return exponents;
+	}
+	
+	
 	private final static class GalloisNumber{
 		final int p;
 		
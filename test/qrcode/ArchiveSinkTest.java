@@ -0,0 +1,207 @@
+package qrcode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+class ArchiveSinkTest {
+
+	private static int[][] qrCode(int i) {
+		return Fixtures.qrCode("Code "+i, 2, CorrectionLvl.L);
+	}
+
+	private static void assertImage(int i, byte[] png) throws IOException {
+		int[][] matrix = qrCode(i);
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+		for (int col = 0; col < matrix.length; ++col) {
+			for (int row = 0; row < matrix.length; ++row) {
+				assertEquals(matrix[col][row], image.getRGB(col, row));
+			}
+		}
+	}
+
+	// submits count codes from 4 threads, named after their number
+	private static void submitAll(ArchiveSink sink, int count) {
+		CompletableFuture<?>[] workers = new CompletableFuture<?>[4];
+		for (int w = 0; w < workers.length; ++w) {
+			int first = w;
+			workers[w] = CompletableFuture.runAsync(() -> {
+				for (int i = first; i < count; i += 4) {
+					try {
+						sink.submit(String.format("qrcode_%03d.png", i), qrCode(i));
+					} catch (IOException e) {
+						throw new RuntimeException(e);
+					}
+				}
+			});
+		}
+		CompletableFuture.allOf(workers).join();
+	}
+
+	@Test
+	void testZip() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (ArchiveSink sink = new ArchiveSink(out, ArchiveSink.Format.ZIP, "qrcode_%03d.png", new PngWriter(), 8)) {
+			submitAll(sink, 50);
+		}
+
+		Map<String, byte[]> entries = new HashMap<>();
+		try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+			ZipEntry entry;
+			while ((entry = zip.getNextEntry()) != null) {
+				assertEquals(ZipEntry.STORED, entry.getMethod());
+				ByteArrayOutputStream content = new ByteArrayOutputStream();
+				byte[] buffer = new byte[4096];
+				for (int n; (n = zip.read(buffer)) > 0;) {
+					content.write(buffer, 0, n);
+				}
+				entries.put(entry.getName(), content.toByteArray());
+			}
+		}
+		assertEquals(50, entries.size());
+		for (int i = 0; i < 50; ++i) {
+			assertImage(i, entries.get(String.format("qrcode_%03d.png", i)));
+		}
+	}
+
+	@Test
+	void testTar() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (ArchiveSink sink = new ArchiveSink(out, ArchiveSink.Format.TAR, "code%d.png", new PngWriter(), 2)) {
+			assertEquals("code0.png", sink.submit(qrCode(0)));
+			assertEquals("code1.png", sink.submit(qrCode(1)));
+		}
+
+		byte[] tar = out.toByteArray();
+		assertEquals(0, tar.length % 512);
+		int offset = 0;
+		for (int i = 0; i < 2; ++i) {
+			String name = new String(tar, offset, 9, StandardCharsets.US_ASCII);
+			assertEquals("code"+i+".png", name);
+			assertEquals("ustar", new String(tar, offset+257, 5, StandardCharsets.US_ASCII));
+			int size = Integer.parseInt(new String(tar, offset+124, 11, StandardCharsets.US_ASCII), 8);
+			int checksum = 0;
+			for (int k = 0; k < 512; ++k) {
+				checksum += (k >= 148 && k < 156) ? ' ' : tar[offset+k] & 0xFF;
+			}
+			assertEquals(checksum, Integer.parseInt(new String(tar, offset+148, 6, StandardCharsets.US_ASCII), 8));
+
+			byte[] png = new byte[size];
+			System.arraycopy(tar, offset+512, png, 0, size);
+			assertImage(i, png);
+			offset += 512 + (size + 511) / 512 * 512;
+		}
+		// two empty blocks end the archive
+		assertEquals(offset + 1024, tar.length);
+	}
+
+	@Test
+	void testFailure() throws IOException {
+		OutputStream failing = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("Disk full");
+			}
+		};
+		ArchiveSink sink = new ArchiveSink(failing, ArchiveSink.Format.TAR, "%d.png", new PngWriter(), 1);
+		sink.submit(qrCode(0));
+		IOException error = assertThrows(IOException.class, sink::close);
+		assertEquals("Disk full", error.getCause().getMessage());
+		assertThrows(IllegalStateException.class, () -> sink.submit(qrCode(1)));
+	}
+
+	// names of the entries of a TAR archive
+	private static Set<String> tarNames(byte[] tar) {
+		Set<String> names = new HashSet<>();
+		for (int offset = 0; tar[offset] != 0;) {
+			int length = 0;
+			while (tar[offset+length] != 0) {
+				++length;
+			}
+			names.add(new String(tar, offset, length, StandardCharsets.US_ASCII));
+			int size = Integer.parseInt(new String(tar, offset+124, 11, StandardCharsets.US_ASCII), 8);
+			offset += 512 + (size + 511) / 512 * 512;
+		}
+		return names;
+	}
+
+	@Test
+	void testSubmitRacingClose() throws Exception {
+		for (int round = 0; round < 20; ++round) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			ArchiveSink sink = new ArchiveSink(out, ArchiveSink.Format.TAR, "%d.png", new PngWriter(), 2);
+			ConcurrentLinkedQueue<String> submitted = new ConcurrentLinkedQueue<>();
+			List<CompletableFuture<?>> workers = new ArrayList<>();
+			for (int w = 0; w < 3; ++w) {
+				workers.add(CompletableFuture.runAsync(() -> {
+					try {
+						for (int i = 0;; ++i) {
+							submitted.add(sink.submit(qrCode(i % 4)));
+						}
+					} catch (IllegalStateException e) {
+						// closed
+					} catch (IOException e) {
+						throw new RuntimeException(e);
+					}
+				}));
+			}
+			Thread.sleep(round % 5);
+			sink.close();
+			CompletableFuture.allOf(workers.toArray(new CompletableFuture<?>[0])).join();
+			assertEquals(new HashSet<>(submitted), tarNames(out.toByteArray()), "Round "+round);
+		}
+	}
+
+	@Test
+	void testWriterThreadStopped() {
+		PipelineMetrics.setListener(new PipelineListener() {
+			@Override
+			public void stageCompleted(PipelineMetrics.Stage stage, long nanos, long allocatedBytes) {
+			}
+
+			@Override
+			public void imageWritten(String name, long bytes) {
+				throw new AssertionError("Listener failure");
+			}
+		});
+		try {
+			ArchiveSink sink = new ArchiveSink(new ByteArrayOutputStream(), ArchiveSink.Format.TAR, "%d.png",
+					new PngWriter(), 1);
+			// neither submit nor close waits for the dead writer thread
+			assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+				IOException error = assertThrows(IOException.class, () -> {
+					for (int i = 0; i < 10; ++i) {
+						sink.submit(qrCode(i));
+					}
+				});
+				assertEquals("Listener failure", error.getCause().getCause().getMessage());
+				assertThrows(IOException.class, sink::close);
+			});
+		} finally {
+			PipelineMetrics.setListener(null);
+		}
+	}
+
+}
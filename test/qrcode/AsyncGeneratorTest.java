@@ -0,0 +1,110 @@
+package qrcode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import qrcode.PipelineMetrics.Stage;
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+class AsyncGeneratorTest {
+
+	@AfterEach
+	void removeListener() {
+		PipelineMetrics.setListener(null);
+	}
+
+	private static int[][] render(String input, CorrectionLvl lvl) {
+		return Fixtures.qrCode(input,
+				DataEncoding.chooseVersion(input, lvl, QRCodeInfos.MIN_VERSION, QRCodeInfos.MAX_VERSION), lvl);
+	}
+
+	@Test
+	void testRender() throws Exception {
+		AsyncGenerator generator = new AsyncGenerator();
+		assertArrayEquals(render(Fixtures.MESSAGE, CorrectionLvl.H),
+				generator.render(Fixtures.MESSAGE, CorrectionLvl.H).get());
+
+		List<String> inputs = Arrays.asList("first", "second", Fixtures.MESSAGE);
+		List<CompletableFuture<int[][]>> futures = generator.renderAll(inputs, CorrectionLvl.M, 1, TimeUnit.MINUTES);
+		for (int i = 0; i < inputs.size(); ++i) {
+			assertArrayEquals(render(inputs.get(i), CorrectionLvl.M), futures.get(i).get());
+		}
+
+		// a failure of the pipeline fails the future
+		char[] tooLong = new char[3000];
+		Arrays.fill(tooLong, 'a');
+		ExecutionException error = assertThrows(ExecutionException.class,
+				() -> generator.render(new String(tooLong), CorrectionLvl.L).get());
+		assertTrue(error.getCause() instanceof IllegalArgumentException);
+	}
+
+	@Test
+	void testDeadlineWhileQueued() throws Exception {
+		// an executor whose tasks only run when the test asks for it
+		List<Runnable> queued = new ArrayList<>();
+		AsyncGenerator generator = new AsyncGenerator(queued::add);
+		AtomicInteger stages = new AtomicInteger();
+		PipelineMetrics.setListener((stage, nanos, allocatedBytes) -> stages.incrementAndGet());
+
+		CompletableFuture<int[][]> future = generator.render(Fixtures.MESSAGE, CorrectionLvl.Q, 20,
+				TimeUnit.MILLISECONDS);
+		ExecutionException error = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+		assertTrue(error.getCause() instanceof TimeoutException);
+
+		// the expired request does not run
+		queued.get(0).run();
+		assertEquals(0, stages.get());
+		assertTrue(future.isCompletedExceptionally());
+	}
+
+	@Test
+	void testCancellationBetweenMasks() {
+		List<Runnable> queued = new ArrayList<>();
+		AsyncGenerator generator = new AsyncGenerator(queued::add);
+		CompletableFuture<int[][]> future = generator.render(Fixtures.MESSAGE, CorrectionLvl.L);
+
+		// cancelled once the first mask is scored
+		AtomicInteger evaluations = new AtomicInteger();
+		PipelineMetrics.setListener((stage, nanos, allocatedBytes) -> {
+			if (stage == Stage.EVALUATION && evaluations.incrementAndGet() == 1) {
+				future.cancel(false);
+			}
+		});
+		queued.get(0).run();
+		assertTrue(future.isCancelled());
+		assertThrows(CancellationException.class, future::join);
+		assertEquals(1, evaluations.get());
+
+		// the thread is left without the checkpoint of the cancelled request
+		assertDoesNotThrow(() -> render(Fixtures.MESSAGE, CorrectionLvl.L));
+	}
+
+	@Test
+	void testErrorCompletesTheFuture() {
+		List<Runnable> queued = new ArrayList<>();
+		AsyncGenerator generator = new AsyncGenerator(queued::add);
+		CompletableFuture<int[][]> future = generator.render(Fixtures.MESSAGE, CorrectionLvl.L);
+
+		StackOverflowError overflow = new StackOverflowError();
+		PipelineMetrics.setListener((stage, nanos, allocatedBytes) -> {
+			throw overflow;
+		});
+		// the error still reaches the thread running the request
+		assertSame(overflow, assertThrows(StackOverflowError.class, () -> queued.get(0).run()));
+		ExecutionException error = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+		assertSame(overflow, error.getCause());
+	}
+
+}
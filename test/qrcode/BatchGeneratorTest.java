@@ -0,0 +1,147 @@
+package qrcode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+class BatchGeneratorTest {
+
+	private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+	private int run(String input, String... args) {
+		return run(input, new ByteArrayOutputStream(), args);
+	}
+
+	private int run(String input, OutputStream out, String... args) {
+		InputStream in = new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8));
+		return BatchGenerator.run(args, in, out, new PrintStream(err, true));
+	}
+
+	private static int[][] matrix(InputStream png) throws IOException {
+		BufferedImage image = ImageIO.read(png);
+		int[][] matrix = new int[image.getWidth()][image.getHeight()];
+		for (int x = 0; x < image.getWidth(); ++x) {
+			for (int y = 0; y < image.getHeight(); ++y) {
+				matrix[x][y] = image.getRGB(x, y);
+			}
+		}
+		return matrix;
+	}
+
+	@Test
+	void testDirectory(@TempDir Path directory) throws IOException {
+		String[] payloads = { "first", "https://example.com/second", "third, with a comma" };
+		int status = run(String.join("\n", payloads), "--workers", "2", "--quiet-zone", "0", "--out",
+				directory.toString(), "--name", "code-%d.png");
+		assertEquals(0, status, err.toString());
+		for (int i = 0; i < payloads.length; ++i) {
+			try (InputStream png = Files.newInputStream(directory.resolve("code-" + i + ".png"))) {
+				assertEquals(payloads[i], QRCodeDecoder.decode(matrix(png)));
+			}
+		}
+		assertTrue(err.toString().startsWith("3 QR codes written, 0 failed"), err.toString());
+	}
+
+	@Test
+	void testCsvOverridesToZip(@TempDir Path directory) throws IOException {
+		Path zip = directory.resolve("codes.zip");
+		String input = "\"quoted, \"\"payload\"\"\",5,H,3\n"
+				+ "defaults\n"
+				+ "far too long for a version 1 QR code at level H,1,H\n"
+				+ "level only,,Q\n";
+		int status = run(input, "--csv", "--quiet-zone", "0", "--out", zip.toString());
+		assertEquals(1, status);
+		assertTrue(err.toString().startsWith("Line 3: "), err.toString());
+
+		Map<String, int[][]> entries = new HashMap<>();
+		try (ZipInputStream in = new ZipInputStream(Files.newInputStream(zip))) {
+			ZipEntry entry;
+			while ((entry = in.getNextEntry()) != null) {
+				entries.put(entry.getName(), matrix(in));
+			}
+		}
+		assertEquals(3, entries.size());
+		int[][] first = entries.get("qrcode_000000.png");
+		assertEquals(37, first.length);
+		assertEquals("quoted, \"payload\"", QRCodeDecoder.decode(first));
+		// the function patterns and the format information of level H and mask 3
+		int[][] expected = MatrixConstruction.constructMatrix(5, 3, CorrectionLvl.H);
+		for (int col = 0; col < expected.length; ++col) {
+			for (int row = 0; row < expected.length; ++row) {
+				if (expected[col][row] != 0) {
+					assertEquals(expected[col][row], first[col][row], "Module " + col + ", " + row);
+				}
+			}
+		}
+		assertEquals("defaults", QRCodeDecoder.decode(entries.get("qrcode_000001.png")));
+		assertEquals("level only", QRCodeDecoder.decode(entries.get("qrcode_000003.png")));
+	}
+
+	@Test
+	void testTarOnStandardOutput() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int status = run("first\nsecond\n", out, "--workers", "2", "--quiet-zone", "0", "--out", "-", "--name",
+				"%d.png");
+		assertEquals(0, status, err.toString());
+
+		Map<String, String> entries = new HashMap<>();
+		byte[] tar = out.toByteArray();
+		for (int offset = 0; tar[offset] != 0;) {
+			int length = 0;
+			while (tar[offset+length] != 0) {
+				++length;
+			}
+			String name = new String(tar, offset, length, StandardCharsets.US_ASCII);
+			int size = Integer.parseInt(new String(tar, offset+124, 11, StandardCharsets.US_ASCII), 8);
+			entries.put(name, QRCodeDecoder.decode(matrix(new ByteArrayInputStream(tar, offset+512, size))));
+			offset += 512 + (size + 511) / 512 * 512;
+		}
+		Map<String, String> expected = new HashMap<>();
+		expected.put("0.png", "first");
+		expected.put("1.png", "second");
+		assertEquals(expected, entries);
+		// the end of archive blocks
+		assertEquals(0, tar.length % 512);
+	}
+
+	@Test
+	void testMissingInput(@TempDir Path directory) throws IOException {
+		Path zip = directory.resolve("codes.zip");
+		Files.write(zip, new byte[] { 1, 2, 3 });
+		int status = run("", "--out", zip.toString(), directory.resolve("typo.txt").toString());
+		assertEquals(2, status);
+		assertTrue(err.toString().startsWith("The input could not be read: "), err.toString());
+		assertArrayEquals(new byte[] { 1, 2, 3 }, Files.readAllBytes(zip));
+	}
+
+	@Test
+	void testInvalidCommandLine() {
+		assertEquals(2, run("", "--level", "X"));
+		assertEquals(2, run("", "--workers"));
+		assertEquals(2, run("", "--mask", "8"));
+		assertEquals(Arrays.asList("a", "", "b,c"), BatchGenerator.parseCsv("a,,\"b,c\""));
+		assertThrows(IllegalArgumentException.class, () -> BatchGenerator.parseCsv("\"open"));
+	}
+
+}
@@ -0,0 +1,68 @@
+package qrcode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import qrcode.BitmapWriter.Format;
+
+class BitmapWriterTest {
+
+	private static byte[] write(BitmapWriter writer, int[][] matrix) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertEquals(writer.write(matrix, out), out.size());
+		return out.toByteArray();
+	}
+
+	@Test
+	void testFormats() throws IOException {
+		int[][] matrix = Fixtures.qrCode(4);
+		int scale = 3, quietZone = 4, width = (33 + 2*quietZone)*scale;
+		byte[] gray = new byte[width*width];
+		Rasterizer.rasterize(matrix, scale, quietZone*scale, gray);
+
+		byte[] pgm = write(new BitmapWriter(Format.PGM, scale, quietZone), matrix);
+		byte[] header = ("P5\n" + width + " " + width + "\n255\n").getBytes(StandardCharsets.US_ASCII);
+		assertArrayEquals(header, Arrays.copyOf(pgm, header.length));
+		assertArrayEquals(gray, Arrays.copyOfRange(pgm, header.length, pgm.length));
+
+		byte[] pbm = write(new BitmapWriter(Format.PBM, scale, quietZone), matrix);
+		header = ("P4\n" + width + " " + width + "\n").getBytes(StandardCharsets.US_ASCII);
+		final int ROW_BYTES = (width + 7) / 8;
+		assertArrayEquals(header, Arrays.copyOf(pbm, header.length));
+		assertEquals(header.length + ROW_BYTES*width, pbm.length);
+		for (int y = 0; y < width; ++y) {
+			for (int x = 0; x < ROW_BYTES*8; ++x) {
+				int bit = (pbm[header.length + y*ROW_BYTES + x/8] >> (7 - x%8)) & 1;
+				int expected = (x < width && gray[y*width + x] == 0) ? 1 : 0;
+				assertEquals(expected, bit, "Pixel "+x+", "+y);
+			}
+		}
+
+		byte[] raw = write(new BitmapWriter(Format.RAW, scale, quietZone), matrix);
+		assertArrayEquals(Arrays.copyOfRange(pbm, header.length, pbm.length), raw);
+
+		assertArrayEquals(write(new BitmapWriter(Format.PBM), matrix),
+				write(new BitmapWriter(Format.PBM, 1, 0), matrix));
+		assertThrows(IllegalArgumentException.class, () -> new BitmapWriter(Format.PBM, 0, 4));
+		assertThrows(IllegalArgumentException.class, () -> new BitmapWriter(Format.RAW, 2, -1));
+	}
+
+	@Test
+	void testChannelSpanningBlocks() throws IOException {
+		// 4 MB of pixels, written in many blocks
+		int[][] matrix = Fixtures.qrCode(10);
+		BitmapWriter writer = new BitmapWriter(Format.PGM, 30, 4);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		long written = writer.write(matrix, Channels.newChannel(out));
+		assertEquals(out.size(), written);
+		assertArrayEquals(write(writer, matrix), out.toByteArray());
+	}
+
+}
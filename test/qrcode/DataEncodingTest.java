@@ -78,4 +78,21 @@ class DataEncodingTest {
 		assertArrayEquals(binaryArray, res);
 	}
 
+	@Test
+	void testChooseVersion() {
+		assertEquals(3, DataEncoding.chooseVersion(message));
+		assertEquals(2, DataEncoding.chooseVersion(message.substring(0, 32)));
+		assertEquals(3, DataEncoding.chooseVersion(message.substring(0, 32), QRCodeInfos.CorrectionLvl.M, 1, 40));
+		assertEquals(10, DataEncoding.chooseVersion(message, QRCodeInfos.CorrectionLvl.L, 10, 40));
+		assertThrows(IllegalArgumentException.class, () -> DataEncoding.chooseVersion(message, QRCodeInfos.CorrectionLvl.L, 1, 2));
+		assertThrows(IllegalArgumentException.class, () -> DataEncoding.chooseVersion(message, QRCodeInfos.CorrectionLvl.L, 12, 11));
+	}
+
+	@Test
+	void testAddInformationsVersion10() {
+		int[] res = DataEncoding.addInformations(Arrays.copyOfRange(isoCode, 0, 2), 10);
+		int[] expected = { 64, 0, 37, 7, 32 };
+		assertArrayEquals(expected, res);
+	}
+
 }
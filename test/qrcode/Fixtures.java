@@ -0,0 +1,43 @@
+package qrcode;
+
+import java.util.Random;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+/**
+ * Data and QR codes shared by the tests
+ */
+final class Fixtures {
+
+	static final String MESSAGE = "Programming is a skill best acquired by practice.";
+
+	private Fixtures() {
+	}
+
+	/**
+	 * @return the QR code of MESSAGE in a version, level L
+	 */
+	static int[][] qrCode(int version) {
+		return qrCode(MESSAGE, version, CorrectionLvl.L);
+	}
+
+	/**
+	 * @return the QR code of an input in a version and a level, with the best mask
+	 */
+	static int[][] qrCode(String input, int version, CorrectionLvl lvl) {
+		boolean[] data = DataEncoding.byteModeEncoding(input, version, lvl);
+		return MatrixConstruction.renderQRCodeMatrix(version, data, lvl);
+	}
+
+	/**
+	 * @return length random bits, e.g. a whole encoded message of a version
+	 */
+	static boolean[] randomData(Random random, int length) {
+		boolean[] data = new boolean[length];
+		for (int i = 0; i < length; ++i) {
+			data[i] = random.nextBoolean();
+		}
+		return data;
+	}
+
+}
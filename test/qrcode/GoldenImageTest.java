@@ -0,0 +1,106 @@
+package qrcode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+class GoldenImageTest {
+
+	private static final int B = 0xFF_00_00_00;
+	private static final int W = 0xFF_FF_FF_FF;
+
+	private static int[][] copy(int[][] matrix) {
+		int[][] copy = new int[matrix.length][];
+		for (int i = 0; i < matrix.length; ++i) {
+			copy[i] = matrix[i].clone();
+		}
+		return copy;
+	}
+
+	@Test
+	void testMismatches() {
+		// 77 modules, across two words per row
+		int[][] matrix = Fixtures.qrCode(15);
+		GoldenImage golden = GoldenImage.of(matrix);
+		assertTrue(golden.compare(copy(matrix)).isSimilar());
+
+		int[][] modified = copy(matrix);
+		modified[3][0] ^= B ^ W;
+		modified[70][5] ^= B ^ W;
+		modified[64][76] = 0;
+		GoldenImage.Diff diff = golden.compare(modified);
+		assertFalse(diff.isSimilar());
+		assertEquals(3, diff.getMismatchCount());
+		assertEquals(3, diff.getColumn(0));
+		assertEquals(0, diff.getRow(0));
+		assertEquals(70, diff.getColumn(1));
+		assertEquals(5, diff.getRow(1));
+		assertEquals(64, diff.getColumn(2));
+		assertEquals(76, diff.getRow(2));
+	}
+
+	@Test
+	void testOtherColours() {
+		// empty data modules, compared on their value
+		int[][] matrix = MatrixConstruction.constructMatrix(2, 1);
+		GoldenImage golden = GoldenImage.of(matrix);
+		assertTrue(golden.compare(copy(matrix)).isSimilar());
+
+		int[][] modified = copy(matrix);
+		modified[12][12] = 0x00_FF_FF_FF;
+		modified[13][12] = W;
+		GoldenImage.Diff diff = golden.compare(modified);
+		assertEquals(2, diff.getMismatchCount());
+		assertEquals(12, diff.getColumn(0));
+		assertEquals(13, diff.getColumn(1));
+		assertThrows(IllegalArgumentException.class, () -> golden.compare(Fixtures.qrCode(1)));
+	}
+
+	@Test
+	void testScaledImage() throws IOException {
+		int[][] matrix = Fixtures.qrCode(5);
+		ByteArrayOutputStream png = new ByteArrayOutputStream();
+		new PngWriter(5, 4, 1).write(matrix, png);
+		GoldenImage golden = GoldenImage.of(ImageIO.read(new ByteArrayInputStream(png.toByteArray())), 5, 4);
+		assertEquals(matrix.length, golden.getSize());
+		assertTrue(golden.compare(matrix).isSimilar());
+		assertThrows(IllegalArgumentException.class,
+				() -> GoldenImage.of(ImageIO.read(new ByteArrayInputStream(png.toByteArray())), 4, 4));
+	}
+
+	@Test
+	void testImagesDirectory() {
+		int[][] matrix = Helpers.readMatrix("testV1M0");
+		assertTrue(Helpers.diff(matrix, "testV1M0").isSimilar());
+		matrix[20][20] ^= B ^ W;
+		assertEquals(1, Helpers.diff(matrix, "testV1M0").getMismatchCount());
+		assertFalse(Helpers.compare(matrix, "testV1M0"));
+	}
+
+	@Test
+	void testRewrittenImage() throws IOException {
+		String name = "goldenImageTest";
+		try {
+			int[][] first = Fixtures.qrCode(2);
+			Helpers.writeMatrix(name, first);
+			assertTrue(Helpers.diff(first, name).isSimilar());
+
+			int[][] second = copy(first);
+			second[20][20] ^= B ^ W;
+			Helpers.writeMatrix(name, second);
+			assertTrue(Helpers.diff(second, name).isSimilar());
+			assertEquals(1, Helpers.diff(first, name).getMismatchCount());
+		} finally {
+			Files.deleteIfExists(Paths.get(System.getProperty("user.dir"), "images", name + ".png"));
+		}
+	}
+
+}
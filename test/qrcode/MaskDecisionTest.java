@@ -0,0 +1,77 @@
+package qrcode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+class MaskDecisionTest {
+
+	private static boolean[] data(String input, int version, CorrectionLvl lvl) {
+		return DataEncoding.byteModeEncoding(input, version, lvl);
+	}
+
+	@Test
+	void testDecisionOfTheSearch() {
+		for (CorrectionLvl lvl : CorrectionLvl.values()) {
+			for (int version : new int[] { 1, 6, 21 }) {
+				boolean[] data = data(Fixtures.MESSAGE, version, lvl);
+				MaskDecision decision = MatrixConstruction.decideMasking(version, data, lvl);
+				assertEquals(MatrixConstruction.findBestMasking(version, data, lvl), decision.getMask());
+				for (int mask = 0; mask < 8; ++mask) {
+					int[][] matrix = MatrixConstruction.renderQRCodeMatrix(version, data, mask, lvl);
+					assertEquals(MatrixConstruction.evaluate(matrix), decision.getPenalty(mask));
+					assertTrue(decision.getPenalty(decision.getMask()) <= decision.getPenalty(mask));
+				}
+				assertEquals(decision, MaskDecision.parse(decision.toString()));
+			}
+		}
+	}
+
+	@Test
+	void testHint() {
+		CorrectionLvl lvl = CorrectionLvl.Q;
+		boolean[] data = data(Fixtures.MESSAGE, 7, lvl);
+		int[][] expected = MatrixConstruction.renderQRCodeMatrix(7, data, lvl);
+		MaskDecision decision = MaskDecision.parse(MatrixConstruction.decideMasking(7, data, lvl).toString());
+		assertArrayEquals(expected, MatrixConstruction.renderQRCodeMatrix(7, data, lvl, decision, false));
+		assertArrayEquals(expected, MatrixConstruction.renderQRCodeMatrix(7, data, lvl, decision, true));
+
+		// a decision for other data: kept unverified, searched again when verified
+		boolean[] other = data("Another payload", 7, lvl);
+		MaskDecision otherDecision = MatrixConstruction.decideMasking(7, other, lvl);
+		assertNotEquals(decision, otherDecision);
+		int[][] hinted = MatrixConstruction.renderQRCodeMatrix(7, data, lvl, otherDecision, false);
+		assertArrayEquals(MatrixConstruction.renderQRCodeMatrix(7, data, otherDecision.getMask(), lvl), hinted);
+		assertEquals(QRCodeDecoder.decode(expected), QRCodeDecoder.decode(hinted));
+		assertArrayEquals(expected, MatrixConstruction.renderQRCodeMatrix(7, data, lvl, otherDecision, true));
+
+		assertThrows(IllegalArgumentException.class,
+				() -> MatrixConstruction.renderQRCodeMatrix(7, data, CorrectionLvl.L, decision, false));
+		assertThrows(IllegalArgumentException.class, () -> MaskDecision.parse("7/Q/1,2,3"));
+		assertThrows(IllegalArgumentException.class, () -> MaskDecision.parse("7/X/1,2,3,4,5,6,7,8"));
+	}
+
+	@Test
+	void testCache() {
+		MaskHintCache cache = new MaskHintCache(2);
+		CorrectionLvl lvl = CorrectionLvl.M;
+		boolean[] first = data("first", 3, lvl), second = data("second", 3, lvl), third = data("third", 3, lvl);
+
+		int[][] matrix = MatrixConstruction.renderQRCodeMatrix(3, first, lvl, cache);
+		assertArrayEquals(MatrixConstruction.renderQRCodeMatrix(3, first, lvl), matrix);
+		assertEquals(MatrixConstruction.decideMasking(3, first, lvl), cache.get(3, lvl, first));
+		assertNull(cache.get(3, CorrectionLvl.L, first));
+		assertNull(cache.get(3, lvl, second));
+		assertArrayEquals(matrix, MatrixConstruction.renderQRCodeMatrix(3, first, lvl, cache));
+
+		MatrixConstruction.renderQRCodeMatrix(3, second, lvl, cache);
+		MatrixConstruction.renderQRCodeMatrix(3, third, lvl, cache);
+		assertEquals(2, cache.size());
+		assertNull(cache.get(3, lvl, third));
+		assertArrayEquals(MatrixConstruction.renderQRCodeMatrix(3, third, lvl),
+				MatrixConstruction.renderQRCodeMatrix(3, third, lvl, cache));
+	}
+
+}
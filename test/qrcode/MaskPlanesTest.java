@@ -0,0 +1,56 @@
+package qrcode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+class MaskPlanesTest {
+
+	@Test
+	void testSameAsMaskedPlacement() {
+		Random random = new Random(37);
+		for (int version = 1; version <= 40; ++version) {
+			boolean[] data = Fixtures.randomData(random, QRCodeInfos.getTotalCodeWordsLength(version)*8 - random.nextInt(40));
+			MaskPlanes planes = MaskPlanes.forVersion(version);
+			// without mask
+			int[][] matrix = MatrixConstruction.constructMatrix(version, 0);
+			MatrixConstruction.addDataInformation(matrix, data, -1);
+			for (int mask = 0; mask < 8; ++mask) {
+				planes.applyMask(matrix, mask);
+				MatrixConstruction.addFormatInformation(matrix, mask);
+				assertArrayEquals(MatrixConstruction.renderQRCodeMatrix(version, data, mask), matrix,
+						"Version "+version+", mask "+mask);
+				planes.applyMask(matrix, mask);
+			}
+		}
+	}
+
+	@Test
+	void testRenderBestMask() {
+		Random random = new Random(38);
+		for (CorrectionLvl lvl : CorrectionLvl.values()) {
+			for (int version = 1; version <= 40; version += 7) {
+				boolean[] data = DataEncoding.byteModeEncoding(Long.toString(random.nextLong()), version, lvl);
+				int mask = MatrixConstruction.findBestMasking(version, data, lvl);
+				int[][] expected = MatrixConstruction.constructMatrix(version, mask, lvl);
+				MatrixConstruction.addDataInformation(expected, data, mask);
+				assertArrayEquals(expected, MatrixConstruction.renderQRCodeMatrix(version, data, lvl));
+			}
+		}
+	}
+
+	@Test
+	void testPlaceData() {
+		boolean[] data = { true, false, true, true };
+		int[][] matrix = MatrixConstruction.constructMatrix(1, 0);
+		MaskPlanes.forVersion(1).placeData(matrix, data);
+		int[][] expected = MatrixConstruction.constructMatrix(1, 0);
+		MatrixConstruction.addDataInformation(expected, data, -1);
+		assertArrayEquals(expected, matrix);
+	}
+
+}
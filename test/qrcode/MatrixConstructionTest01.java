@@ -50,4 +50,58 @@ class MatrixConstructionTest01 {
 		assertTrue(Helpers.compare(matrix,"noDataV4M5"),"The format information is wrong. Run Debug.java for more informations");
 	}
 
+	@Test
+	void testAddVersionInformationV7() {
+		int size = QRCodeInfos.getMatrixSize(7);
+		int[][] matrix = new int[size][size];
+		MatrixConstruction.addVersionInformation(matrix, 7);
+		// 0b000111_110010_010100, least significant bit first
+		final int[] expectedTopRight = {
+				0, 0, 1, 0, 1, 0,
+				0, 1, 0, 0, 1, 1,
+				1, 1, 1, 0, 0, 0 };
+		int black = 0xFF_00_00_00;
+		for (int i = 0; i < 18; ++i) {
+			int expected = (expectedTopRight[i] == 1) ? black : -1;
+			assertEquals(expected, matrix[size-11 + i%3][i/3], "Wrong version module "+i);
+			assertEquals(expected, matrix[i/3][size-11 + i%3], "Wrong version module "+i);
+		}
+	}
+
+	@Test
+	void testAddAlignmentPatternsV7() {
+		int size = QRCodeInfos.getMatrixSize(7);
+		int[][] matrix = new int[size][size];
+		MatrixConstruction.addAlignmentPatterns(matrix, 7);
+		int black = 0xFF_00_00_00;
+		final int[] centers = { 6, 22, 38 };
+		for (int col : centers) {
+			for (int row : centers) {
+				if ((col == 6 && row != 22) || (row == 6 && col != 22)) {
+					assertEquals(0, matrix[col][row], "No alignment pattern expected over a finder pattern");
+				} else {
+					assertEquals(black, matrix[col][row]);
+					assertEquals(-1, matrix[col+1][row-1]);
+					assertEquals(black, matrix[col-2][row+2]);
+				}
+			}
+		}
+	}
+
+	@Test
+	void testConstructMatrixIsACopy() {
+		int[][] first = MatrixConstruction.constructMatrix(7, 0);
+		first[0][0] = 0;
+		int[][] second = MatrixConstruction.constructMatrix(7, 0);
+		assertEquals(0xFF_00_00_00, second[0][0]);
+	}
+
+	@Test
+	void testAddVersionInformationV6() {
+		int size = QRCodeInfos.getMatrixSize(6);
+		int[][] matrix = new int[size][size];
+		MatrixConstruction.addVersionInformation(matrix, 6);
+		assertArrayEquals(new int[size][size], matrix);
+	}
+
 }
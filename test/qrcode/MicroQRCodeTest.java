@@ -0,0 +1,97 @@
+package qrcode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+class MicroQRCodeTest {
+
+	// "01234567" in a M2-L symbol, example of the ISO/IEC 18004 standard
+	private final int[] isoExample = { 0x40, 0x18, 0xAC, 0xC3, 0x00, 0x86, 0x0D, 0x22, 0xAE, 0x30 };
+
+	@Test
+	void testMatrixSize() {
+		assertEquals(11, MicroQRCodeInfos.getMatrixSize(1));
+		assertEquals(17, MicroQRCodeInfos.getMatrixSize(4));
+	}
+
+	@Test
+	void testChooseMode() {
+		assertEquals(MicroQRCode.NUMERIC_MODE, MicroQRCode.chooseMode("01234567"));
+		assertEquals(MicroQRCode.ALPHANUMERIC_MODE, MicroQRCode.chooseMode("R10K-0603"));
+		assertEquals(MicroQRCode.BYTE_MODE, MicroQRCode.chooseMode("r10k"));
+	}
+
+	@Test
+	void testChooseVersion() {
+		assertEquals(1, MicroQRCode.chooseVersion("12345", CorrectionLvl.L));
+		assertEquals(2, MicroQRCode.chooseVersion("123456", CorrectionLvl.L));
+		assertEquals(3, MicroQRCode.chooseVersion("R10K-0603", CorrectionLvl.L));
+		assertEquals(4, MicroQRCode.chooseVersion("12345", CorrectionLvl.Q));
+		assertThrows(IllegalArgumentException.class, () -> MicroQRCode.chooseVersion("1", CorrectionLvl.H));
+		assertThrows(IllegalArgumentException.class,
+				() -> MicroQRCode.chooseVersion(Fixtures.MESSAGE, CorrectionLvl.L));
+	}
+
+	@Test
+	void testEncode() {
+		boolean[] res = MicroQRCode.encode("01234567", 2, CorrectionLvl.L);
+		assertArrayEquals(DataEncoding.bytesToBinaryArray(isoExample), res);
+	}
+
+	@Test
+	void testEncodeHalfCodeWord() {
+		// M1: 20 data bits (the last codeword is 4 bits long) and 2 error correction codewords
+		boolean[] res = MicroQRCode.encode("12345", 1, CorrectionLvl.L);
+		assertEquals(36, res.length);
+	}
+
+	@Test
+	void testConstructMatrix() {
+		int[][] matrix = MicroQRCode.constructMatrix(2, CorrectionLvl.L, 0);
+		int black = 0xFF_00_00_00;
+		assertEquals(black, matrix[0][0]);
+		assertEquals(black, matrix[3][3]);
+		assertEquals(-1, matrix[7][7]);
+		assertEquals(black, matrix[12][0]);
+		assertEquals(-1, matrix[11][0]);
+		assertEquals(black, matrix[0][10]);
+		// bottom right corner is data
+		assertEquals(0, matrix[12][12]);
+	}
+
+	@Test
+	void testAllModulesFilled() {
+		for (int version = 1; version <= 4; ++version) {
+			boolean[] data = MicroQRCode.encode("1", version, CorrectionLvl.L);
+			int[][] matrix = MicroQRCode.renderMatrix(version, CorrectionLvl.L, data, 0);
+			int dataModules = 0;
+			int[][] empty = MicroQRCode.constructMatrix(version, CorrectionLvl.L, 0);
+			for (int col = 0; col < matrix.length; ++col) {
+				for (int row = 0; row < matrix.length; ++row) {
+					assertNotEquals(0, matrix[col][row]);
+					if (empty[col][row] == 0) {
+						++dataModules;
+					}
+				}
+			}
+			assertEquals(data.length, dataModules, "Wrong number of data modules in M"+version);
+		}
+	}
+
+	@Test
+	void testEvaluate() {
+		int size = MicroQRCodeInfos.getMatrixSize(1);
+		int[][] matrix = new int[size][size];
+		int black = 0xFF_00_00_00;
+		for (int i = 1; i < size; ++i) {
+			matrix[size-1][i] = black;
+		}
+		matrix[3][size-1] = black;
+		// right column: 10 dark modules, bottom row: 2 (the corner counts for both)
+		assertEquals(2*16+10, MicroQRCode.evaluate(matrix));
+	}
+
+}
@@ -0,0 +1,71 @@
+package qrcode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+class ModuleBufferTest {
+
+	@Test
+	void testSameQRCodeAsTheMatrix() {
+		for (CorrectionLvl lvl : CorrectionLvl.values()) {
+			for (int version : new int[] { 1, 2, 7, 21, 40 }) {
+				boolean[] data = DataEncoding.byteModeEncoding(Fixtures.MESSAGE, version, lvl);
+				int[][] expected = MatrixConstruction.renderQRCodeMatrix(version, data, lvl);
+				byte[] modules = MatrixConstruction.renderQRCodeModules(version, data, lvl);
+				assertArrayEquals(expected, MatrixConstruction.toMatrix(modules));
+				assertArrayEquals(modules, MatrixConstruction.toModules(expected));
+			}
+		}
+	}
+
+	@Test
+	void testScalarSearch() {
+		for (CorrectionLvl lvl : CorrectionLvl.values()) {
+			for (int version : new int[] { 1, 7, 21, 40 }) {
+				boolean[] data = DataEncoding.byteModeEncoding(Fixtures.MESSAGE, version, lvl);
+				byte[] scalar = MatrixConstruction.renderQRCodeModules(version, data, lvl, false);
+				assertArrayEquals(MatrixConstruction.renderQRCodeModules(version, data, lvl, true), scalar);
+				assertArrayEquals(MatrixConstruction.toModules(MatrixConstruction.renderQRCodeMatrix(version, data, lvl)),
+						scalar);
+			}
+		}
+	}
+
+	@Test
+	void testSamePenaltyAsEvaluate() {
+		for (int version : new int[] { 1, 5, 12, 40 }) {
+			boolean[] data = DataEncoding.byteModeEncoding(Fixtures.MESSAGE, version, CorrectionLvl.H);
+			for (int mask = 0; mask < 8; ++mask) {
+				int[][] matrix = MatrixConstruction.renderQRCodeMatrix(version, data, mask, CorrectionLvl.H);
+				assertEquals(MatrixConstruction.evaluate(matrix),
+						MatrixConstruction.evaluate(MatrixConstruction.toModules(matrix)));
+			}
+		}
+	}
+
+	@Test
+	void testAccessors() {
+		boolean[] data = DataEncoding.byteModeEncoding(Fixtures.MESSAGE, 3, CorrectionLvl.M);
+		int[][] matrix = MatrixConstruction.renderQRCodeMatrix(3, data, CorrectionLvl.M);
+		byte[] modules = MatrixConstruction.renderQRCodeModules(3, data, CorrectionLvl.M);
+		int size = MatrixConstruction.getSize(modules);
+		assertEquals(29, size);
+		for (int col = 0; col < size; ++col) {
+			for (int row = 0; row < size; ++row) {
+				assertEquals(matrix[col][row] == 0xFF_00_00_00, MatrixConstruction.isDark(modules, size, col, row));
+				assertEquals(modules[MatrixConstruction.moduleIndex(size, col, row)] & MatrixConstruction.DARK,
+						MatrixConstruction.isDark(modules, size, col, row) ? 1 : 0);
+			}
+		}
+		//finder pattern, format module, data module
+		assertTrue(MatrixConstruction.isFunction(modules, size, 0, 0));
+		assertTrue(MatrixConstruction.isFunction(modules, size, 8, 0));
+		assertFalse(MatrixConstruction.isFunction(modules, size, size-1, size-1));
+		assertThrows(IllegalArgumentException.class, () -> MatrixConstruction.getSize(new byte[30]));
+		assertThrows(IllegalArgumentException.class, () -> MatrixConstruction.toModules(new int[23][23]));
+	}
+
+}
@@ -0,0 +1,49 @@
+package qrcode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+class PackedPenaltyScorerTest {
+
+	@Test
+	void testSameAsEvaluate() {
+		Random random = new Random(38);
+		for (int version = 1; version <= 40; ++version) {
+			CorrectionLvl lvl = CorrectionLvl.values()[version % 4];
+			boolean[] data = Fixtures.randomData(random, QRCodeInfos.getTotalCodeWordsLength(version)*8);
+			int[] penalties = PackedPenaltyScorer.forVersion(version).evaluateMasks(data, lvl);
+			for (int mask = 0; mask < 8; ++mask) {
+				int[][] matrix = MatrixConstruction.renderQRCodeMatrix(version, data, mask, lvl);
+				int expected = MatrixConstruction.evaluate(matrix);
+				assertEquals(expected, PackedPenaltyScorer.forVersion(version).evaluate(matrix),
+						"Version "+version+", mask "+mask);
+				assertEquals(expected, penalties[mask], "Version "+version+", mask "+mask);
+			}
+		}
+	}
+
+	@Test
+	void testUniformData() {
+		// long runs and squares crossing the function patterns and the words of the lines
+		for (int version : new int[] { 2, 14, 40 }) {
+			boolean[] data = new boolean[QRCodeInfos.getTotalCodeWordsLength(version)*8];
+			int[] penalties = PackedPenaltyScorer.forVersion(version).evaluateMasks(data, CorrectionLvl.Q);
+			for (int mask = 0; mask < 8; ++mask) {
+				int[][] matrix = MatrixConstruction.renderQRCodeMatrix(version, data, mask, CorrectionLvl.Q);
+				assertEquals(MatrixConstruction.evaluate(matrix), penalties[mask]);
+			}
+		}
+	}
+
+	@Test
+	void testWrongSize() {
+		assertThrows(IllegalArgumentException.class, () -> PackedPenaltyScorer.forVersion(2).evaluate(new int[21][21]));
+		assertSame(PackedPenaltyScorer.forVersion(7), PackedPenaltyScorer.forVersion(7));
+	}
+
+}
@@ -0,0 +1,48 @@
+package qrcode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+class PenaltyScorerTest {
+
+	@Test
+	void testSameAsEvaluate() {
+		Random random = new Random(36);
+		for (int version = 1; version <= 40; version += 3) {
+			CorrectionLvl lvl = CorrectionLvl.values()[version % 4];
+			boolean[] data = Fixtures.randomData(random, QRCodeInfos.getTotalCodeWordsLength(version)*8);
+			for (int mask = 0; mask < 8; ++mask) {
+				int[][] matrix = MatrixConstruction.renderQRCodeMatrix(version, data, mask, lvl);
+				assertEquals(MatrixConstruction.evaluate(matrix), PenaltyScorer.forVersion(version).evaluate(matrix),
+						"Version "+version+", mask "+mask);
+			}
+		}
+	}
+
+	@Test
+	void testUniformData() {
+		// the mask 1 turns empty data into horizontal stripes: long runs crossing the function patterns
+		boolean[] data = new boolean[QRCodeInfos.getTotalCodeWordsLength(2)*8];
+		int[][] matrix = MatrixConstruction.renderQRCodeMatrix(2, data, 1);
+		assertEquals(MatrixConstruction.evaluate(matrix), PenaltyScorer.forVersion(2).evaluate(matrix));
+	}
+
+	@Test
+	void testSameMask() {
+		boolean[] data = DataEncoding.byteModeEncoding(Fixtures.MESSAGE, 4);
+		int[][] matrix = MatrixConstruction.renderQRCodeMatrix(4, data);
+		int best = Integer.MAX_VALUE;
+		for (int mask = 0; mask < 8; ++mask) {
+			best = Math.min(best, MatrixConstruction.evaluate(MatrixConstruction.renderQRCodeMatrix(4, data, mask)));
+		}
+		assertEquals(best, MatrixConstruction.evaluate(matrix));
+		assertSame(PenaltyScorer.forVersion(4), PenaltyScorer.forVersion(4));
+		assertThrows(IllegalArgumentException.class, () -> PenaltyScorer.forVersion(4).evaluate(new int[21][21]));
+	}
+
+}
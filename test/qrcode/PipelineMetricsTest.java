@@ -0,0 +1,67 @@
+package qrcode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import qrcode.PipelineMetrics.Stage;
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+class PipelineMetricsTest {
+
+	@AfterEach
+	void removeListener() {
+		PipelineMetrics.setListener(null);
+	}
+
+	@Test
+	void testStages() {
+		List<Stage> stages = new ArrayList<>();
+		PipelineMetrics.setListener((stage, nanos, allocatedBytes) -> {
+			assertTrue(nanos >= 0);
+			assertEquals(-1, allocatedBytes);
+			stages.add(stage);
+		});
+		boolean[] data = DataEncoding.byteModeEncoding(Fixtures.MESSAGE, 4);
+		assertEquals(2, stages.size());
+		assertEquals(Stage.ERROR_CORRECTION, stages.get(0));
+		assertEquals(Stage.DATA_ENCODING, stages.get(1));
+
+		stages.clear();
+		MatrixConstruction.findBestMasking(4, data);
+		assertEquals(9, stages.size());
+		assertEquals(Stage.EVALUATION, stages.get(0));
+		assertEquals(Stage.MASK_SEARCH, stages.get(8));
+	}
+
+	@Test
+	void testStatistics() {
+		PipelineStatistics statistics = new PipelineStatistics(true);
+		PipelineMetrics.setListener(statistics);
+		int version = DataEncoding.chooseVersion(Fixtures.MESSAGE, CorrectionLvl.M, 1, 40);
+		boolean[] data = DataEncoding.byteModeEncoding(Fixtures.MESSAGE, version, CorrectionLvl.M);
+		int mask = MatrixConstruction.findBestMasking(version, data, CorrectionLvl.M);
+
+		assertEquals(1, statistics.getVersionCount(version));
+		assertEquals(1, statistics.getMaskCount(mask));
+		assertEquals(1, statistics.getCount(Stage.DATA_ENCODING));
+		assertEquals(8, statistics.getCount(Stage.EVALUATION));
+		assertTrue(statistics.getNanos(Stage.MASK_SEARCH) >= statistics.getNanos(Stage.EVALUATION));
+		assertTrue(statistics.getAllocatedBytes(Stage.MASK_SEARCH) > 0);
+		assertEquals(0, statistics.getCount(Stage.IMAGE_OUTPUT));
+	}
+
+	@Test
+	void testDisabled() {
+		PipelineStatistics statistics = new PipelineStatistics(false);
+		PipelineMetrics.setListener(statistics);
+		PipelineMetrics.setListener(null);
+		DataEncoding.byteModeEncoding(Fixtures.MESSAGE, 4);
+		assertEquals(0, statistics.getCount(Stage.DATA_ENCODING));
+	}
+
+}
@@ -0,0 +1,84 @@
+package qrcode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+
+class PngWriterTest {
+
+	private static final int W = 0xFF_FF_FF_FF;
+
+	private static BufferedImage read(byte[] png) throws IOException {
+		return ImageIO.read(new ByteArrayInputStream(png));
+	}
+
+	private static void assertImage(int[][] matrix, int scale, int quietZone, BufferedImage image) {
+		int width = (matrix.length + 2*quietZone)*scale;
+		assertEquals(width, image.getWidth());
+		assertEquals(width, image.getHeight());
+		for (int x = 0; x < width; ++x) {
+			for (int y = 0; y < width; ++y) {
+				int col = x/scale - quietZone, row = y/scale - quietZone;
+				boolean inside = col >= 0 && row >= 0 && col < matrix.length && row < matrix.length;
+				assertEquals(inside ? matrix[col][row] : W, image.getRGB(x, y), "Pixel "+x+", "+y);
+			}
+		}
+	}
+
+	@Test
+	void testBlackAndWhite() throws IOException {
+		int[][] matrix = Fixtures.qrCode(3);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		long written = new PngWriter(3, 4, 6).write(matrix, out);
+		assertEquals(out.size(), written);
+		assertImage(matrix, 3, 4, read(out.toByteArray()));
+	}
+
+	@Test
+	void testColours() throws IOException {
+		// data modules left empty (transparent) and a colour
+		int[][] matrix = MatrixConstruction.constructMatrix(2, 3);
+		matrix[10][12] = 0xFF_90_FF_90;
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new PngWriter().write(matrix, out);
+		assertImage(matrix, 1, 0, read(out.toByteArray()));
+	}
+
+	@Test
+	void testChannelAndLevels() throws IOException {
+		// without compression, the image needs several IDAT chunks
+		int[][] matrix = Fixtures.qrCode(40);
+		ByteArrayOutputStream stored = new ByteArrayOutputStream();
+		new PngWriter(10, 4, 0).write(matrix, Channels.newChannel(stored));
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		new PngWriter(10, 4, 9).write(matrix, compressed);
+
+		assertTrue(stored.size() > 4*compressed.size());
+		assertImage(matrix, 10, 4, read(stored.toByteArray()));
+		assertImage(matrix, 10, 4, read(compressed.toByteArray()));
+	}
+
+	@Test
+	void testErrors() {
+		OutputStream failing = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("Connection reset");
+			}
+		};
+		assertThrows(IOException.class, () -> new PngWriter().write(Fixtures.qrCode(1), failing));
+		assertThrows(IllegalArgumentException.class, () -> new PngWriter(0, 4, 6));
+		assertThrows(IllegalArgumentException.class, () -> new PngWriter(1, 4, 10));
+	}
+
+}
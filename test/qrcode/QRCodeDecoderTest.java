@@ -0,0 +1,109 @@
+package qrcode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+class QRCodeDecoderTest {
+
+	private final int black = 0xFF_00_00_00;
+	private final int white = 0xFF_FF_FF_FF;
+
+	// the byte mode encoding cuts the input to the capacity of the version
+	private String fitting(String input, int version, CorrectionLvl lvl) {
+		return input.substring(0, Math.min(input.length(), QRCodeInfos.getMaxInputLength(version, lvl)));
+	}
+
+	private int[][] render(String input, int version, CorrectionLvl lvl, int mask) {
+		boolean[] data = DataEncoding.byteModeEncoding(input, version, lvl);
+		return MatrixConstruction.renderQRCodeMatrix(version, data, mask, lvl);
+	}
+
+	@Test
+	void testDecodeGoldenImage() {
+		int[][] matrix = Helpers.readMatrix("testV1M0");
+		assertEquals(Fixtures.MESSAGE.substring(0, 17), QRCodeDecoder.decode(matrix));
+	}
+
+	@Test
+	void testRoundTrip() {
+		for (CorrectionLvl lvl : CorrectionLvl.values()) {
+			for (int version : new int[] { 1, 2, 7, 10, 27, 40 }) {
+				int mask = version % 8;
+				int[][] matrix = render(Fixtures.MESSAGE, version, lvl, mask);
+				assertEquals(fitting(Fixtures.MESSAGE, version, lvl), QRCodeDecoder.decode(matrix),
+						"Version "+version+", level "+lvl);
+			}
+		}
+	}
+
+	@Test
+	void testRoundTripBestMasking() {
+		int[][] matrix = Fixtures.qrCode(4);
+		assertTrue(QRCodeDecoder.verify(matrix, Fixtures.MESSAGE));
+		assertFalse(QRCodeDecoder.verify(matrix, Fixtures.MESSAGE+"!"));
+	}
+
+	@Test
+	void testCorrectsDamagedModules() {
+		int[][] matrix = render(Fixtures.MESSAGE, 5, CorrectionLvl.H, 3);
+		int[][] empty = MatrixConstruction.constructMatrix(5, 3, CorrectionLvl.H);
+		Random random = new Random(31);
+		// a few modules in the data area, far below the 30% recovery capacity of the level H
+		for (int flipped = 0; flipped < 20;) {
+			int col = random.nextInt(matrix.length), row = random.nextInt(matrix.length);
+			if (empty[col][row] == 0) {
+				matrix[col][row] = (matrix[col][row] == black) ? white : black;
+				++flipped;
+			}
+		}
+		assertEquals(fitting(Fixtures.MESSAGE, 5, CorrectionLvl.H), QRCodeDecoder.decode(matrix));
+	}
+
+	@Test
+	void testTooDamaged() {
+		int[][] matrix = render(Fixtures.MESSAGE, 3, CorrectionLvl.L, 0);
+		int[][] empty = MatrixConstruction.constructMatrix(3, 0, CorrectionLvl.L);
+		for (int col = matrix.length-1; col > matrix.length-9; --col) {
+			for (int row = 0; row < matrix.length; ++row) {
+				if (empty[col][row] == 0) {
+					matrix[col][row] = (matrix[col][row] == black) ? white : black;
+				}
+			}
+		}
+		assertFalse(QRCodeDecoder.verify(matrix, Fixtures.MESSAGE));
+	}
+
+	@Test
+	void testStructuredAppendSymbol() {
+		String input = Fixtures.MESSAGE+Fixtures.MESSAGE+Fixtures.MESSAGE;
+		List<int[][]> symbols = StructuredAppend.renderSymbols(input, CorrectionLvl.L, 2);
+		StringBuilder decoded = new StringBuilder();
+		for (int[][] symbol : symbols) {
+			decoded.append(QRCodeDecoder.decode(symbol));
+		}
+		assertEquals(input, decoded.toString());
+	}
+
+	@Test
+	void testVerifierSampling() {
+		QRCodeVerifier verifier = new QRCodeVerifier(3);
+		int[][] matrix = render(Fixtures.MESSAGE, 4, CorrectionLvl.M, 1);
+		for (int i = 0; i < 6; ++i) {
+			assertTrue(verifier.verify(matrix, Fixtures.MESSAGE));
+		}
+		assertEquals(2, verifier.getChecked());
+		// the 7th code is checked, the 8th is not
+		assertFalse(verifier.verify(matrix, "Wrong"));
+		assertTrue(verifier.verify(matrix, "Wrong"));
+		assertEquals(1, verifier.getFailed());
+		assertEquals(3, verifier.getChecked());
+		assertThrows(IllegalArgumentException.class, () -> new QRCodeVerifier(0));
+	}
+
+}
@@ -0,0 +1,76 @@
+package qrcode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+class QREncoderTest {
+
+	// the step by step encoding of DataEncoding
+	private static boolean[] stepByStep(String input, int version, CorrectionLvl lvl) {
+		int[] encoded = DataEncoding.encodeString(input, QRCodeInfos.getMaxInputLength(version, lvl));
+		encoded = DataEncoding.addInformations(encoded, version);
+		encoded = DataEncoding.fillSequence(encoded, QRCodeInfos.getCodeWordsLength(version, lvl));
+		encoded = DataEncoding.addErrorCorrection(encoded, version, lvl);
+		return DataEncoding.bytesToBinaryArray(encoded);
+	}
+
+	@Test
+	void testSameAsStepByStep() {
+		Random random = new Random(35);
+		QREncoder encoder = new QREncoder();
+		for (int version = 1; version <= 40; ++version) {
+			for (CorrectionLvl lvl : CorrectionLvl.values()) {
+				StringBuilder builder = new StringBuilder();
+				int length = random.nextInt(QRCodeInfos.getMaxInputLength(version, lvl) + 10);
+				for (int i = 0; i < length; ++i) {
+					builder.append((char) random.nextInt(0x180));
+				}
+				String input = builder.toString();
+				assertArrayEquals(stepByStep(input, version, lvl), encoder.encode(input, version, lvl),
+						"Version "+version+", level "+lvl);
+			}
+		}
+	}
+
+	@Test
+	void testReplacedCharacters() {
+		// one '?' for a surrogate pair, one for a lone surrogate
+		String input = "a😀b\uD83Dc€";
+		assertArrayEquals(stepByStep(input, 1, CorrectionLvl.L), new QREncoder().encode(input, 1, CorrectionLvl.L));
+	}
+
+	@Test
+	void testBufferReused() {
+		QREncoder encoder = QREncoder.get();
+		assertSame(encoder, QREncoder.get());
+		boolean[] first = encoder.encode(Fixtures.MESSAGE, 4, CorrectionLvl.M);
+		assertSame(first, encoder.encode("other", 4, CorrectionLvl.Q));
+		// the static API returns a copy
+		assertNotSame(DataEncoding.byteModeEncoding(Fixtures.MESSAGE, 4),
+				DataEncoding.byteModeEncoding(Fixtures.MESSAGE, 4));
+	}
+
+	@Test
+	void testNoAllocation() {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long id = Thread.currentThread().getId();
+		QREncoder encoder = new QREncoder();
+		for (int i = 0; i < 100; ++i) {
+			encoder.encode(Fixtures.MESSAGE, 40, CorrectionLvl.H);
+		}
+		long before = threads.getThreadAllocatedBytes(id);
+		for (int i = 0; i < 100; ++i) {
+			encoder.encode(Fixtures.MESSAGE, 40, CorrectionLvl.H);
+		}
+		long allocated = threads.getThreadAllocatedBytes(id) - before;
+		// less than a single binary array of a version 40
+		assertTrue(allocated < 1024, allocated+" bytes allocated");
+	}
+
+}
@@ -0,0 +1,62 @@
+package qrcode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+class QRTablesTest {
+
+	/**
+	 * @return the scorer built by warmUp, the packed one unless the scalar search is forced
+	 */
+	private static Object scorer(int version) {
+		return PackedPenaltyScorer.isEnabled() ? PackedPenaltyScorer.forVersion(version)
+				: PenaltyScorer.forVersion(version);
+	}
+
+	@Test
+	void testWarmUpKeepsTheTables() {
+		QRTables.warmUp(1, 10);
+		int[][] template = MatrixConstruction.getTemplate(7);
+		MaskPlanes planes = MaskPlanes.forVersion(7);
+		Object scorer = scorer(7);
+		QRTables.warmUp();
+		assertSame(template, MatrixConstruction.getTemplate(7));
+		assertSame(planes, MaskPlanes.forVersion(7));
+		assertSame(scorer, scorer(7));
+	}
+
+	@Test
+	void testConcurrentWarmUp() throws InterruptedException {
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 4; ++i) {
+			Thread thread = new Thread(() -> QRTables.warmUp(30, 40));
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		for (CorrectionLvl lvl : CorrectionLvl.values()) {
+			for (int version : new int[] { 30, 35, 40 }) {
+				boolean[] data = DataEncoding.byteModeEncoding(Fixtures.MESSAGE, version, lvl);
+				int mask = MatrixConstruction.findBestMasking(version, data, lvl);
+				assertArrayEquals(MatrixConstruction.renderQRCodeMatrix(version, data, mask, lvl),
+						MatrixConstruction.renderQRCodeMatrix(version, data, lvl));
+			}
+		}
+	}
+
+	@Test
+	void testInvalidRange() {
+		assertThrows(IllegalArgumentException.class, () -> QRTables.warmUp(0, 10));
+		assertThrows(IllegalArgumentException.class, () -> QRTables.warmUp(1, 41));
+		assertThrows(IllegalArgumentException.class, () -> QRTables.warmUp(10, 9));
+	}
+
+}
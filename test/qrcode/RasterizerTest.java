@@ -0,0 +1,106 @@
+package qrcode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.jupiter.api.Test;
+
+class RasterizerTest {
+
+	private static final int B = 0xFF_00_00_00;
+	private static final int W = 0xFF_FF_FF_FF;
+
+	/*
+	 * The scaling by setRGB that Rasterizer replaces in Helpers
+	 */
+	private static BufferedImage reshape(int[][] matrix, int scale, int borderSize) {
+		int previousSize = matrix.length;
+		int size = previousSize * scale + borderSize * 2;
+		BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < borderSize; j++) {
+				image.setRGB(i, j, -1);
+				image.setRGB(i, j + size - borderSize, -1);
+				if (i >= borderSize && i < size - borderSize) {
+					image.setRGB(j, i, -1);
+					image.setRGB(j + size - borderSize, i, -1);
+				}
+			}
+		}
+		for (int x = 0; x < previousSize; x++) {
+			for (int y = 0; y < previousSize; y++) {
+				for (int i = x * scale + borderSize; i < (x + 1) * scale + borderSize; i++) {
+					for (int j = y * scale + borderSize; j < (y + 1) * scale + borderSize; j++) {
+						image.setRGB(i, j, matrix[x][y]);
+					}
+				}
+			}
+		}
+		return image;
+	}
+
+	@Test
+	void testSameAsReshape() {
+		int[][] diff = Fixtures.qrCode(3);
+		//empty (transparent) and coloured modules, as in the differences of Helpers.compare
+		diff[10][12] = 0;
+		diff[11][12] = 0xFF_90_FF_90;
+		diff[0][28] = 0xFF_80_00_00;
+		for (int[][] matrix : new int[][][] { Fixtures.qrCode(1), Fixtures.qrCode(7), diff }) {
+			for (int scale : new int[] { 1, 3, 10 }) {
+				for (int border : new int[] { 0, 4, 4*scale }) {
+					BufferedImage expected = reshape(matrix, scale, border);
+					BufferedImage image = Rasterizer.toImage(matrix, scale, border);
+					assertEquals(expected.getWidth(), image.getWidth());
+					assertEquals(expected.getHeight(), image.getHeight());
+					assertArrayEquals(expected.getRGB(0, 0, expected.getWidth(), expected.getHeight(), null, 0, expected.getWidth()),
+							image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth()),
+							"Scale "+scale+", border "+border);
+				}
+			}
+		}
+	}
+
+	@Test
+	void testGray() {
+		int[][] matrix = Fixtures.qrCode(5);
+		BufferedImage expected = reshape(matrix, 3, 12);
+		byte[] pixels = new byte[expected.getWidth()*expected.getHeight()];
+		Rasterizer.rasterize(matrix, 3, 12, pixels);
+		BufferedImage gray = Rasterizer.toGrayImage(matrix, 3, 12);
+		for (int y = 0; y < expected.getHeight(); ++y) {
+			for (int x = 0; x < expected.getWidth(); ++x) {
+				boolean black = expected.getRGB(x, y) == B;
+				assertEquals(black ? 0 : 255, pixels[y*expected.getWidth() + x] & 0xFF);
+				assertEquals(black ? B : 0xFF_FF_FF_FF, gray.getRGB(x, y));
+			}
+		}
+	}
+
+	@Test
+	void testRectangularMatrix() {
+		// 3 columns of 2 rows, as a part of a QR code
+		int[][] matrix = { { B, W }, { W, W }, { W, B } };
+		assertEquals(3*2 + 2, Rasterizer.getWidth(matrix, 2, 1));
+		assertEquals(2*2 + 2, Rasterizer.getHeight(matrix, 2, 1));
+		int[] pixels = new int[8*6];
+		Rasterizer.rasterize(matrix, 2, 1, pixels);
+		for (int y = 0; y < 6; ++y) {
+			for (int x = 0; x < 8; ++x) {
+				boolean inside = x >= 1 && x < 7 && y >= 1 && y < 5;
+				int expected = inside ? matrix[(x-1)/2][(y-1)/2] : W;
+				assertEquals(expected, pixels[y*8 + x], "Pixel "+x+", "+y);
+			}
+		}
+	}
+
+	@Test
+	void testInvalidArguments() {
+		int[][] matrix = Fixtures.qrCode(1);
+		assertThrows(IllegalArgumentException.class, () -> Rasterizer.toImage(matrix, 0, 4));
+		assertThrows(IllegalArgumentException.class, () -> Rasterizer.toImage(matrix, 1, -1));
+		assertThrows(IllegalArgumentException.class, () -> Rasterizer.rasterize(matrix, 2, 8, new int[57*57]));
+	}
+
+}
@@ -0,0 +1,120 @@
+package qrcode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SheetRendererTest {
+
+	private static final int B = 0xFF_00_00_00;
+	private static final int CELL = 90;
+	private static final int SCALE = 3;
+
+	private static List<int[][]> qrCodes(int count) {
+		List<int[][]> matrices = new ArrayList<>();
+		for (int i = 0; i < count; ++i) {
+			boolean[] data = DataEncoding.byteModeEncoding("Label "+i, 2);
+			matrices.add(MatrixConstruction.renderQRCodeMatrix(2, data));
+		}
+		return matrices;
+	}
+
+	// expected pixel of a 3x2 sheet holding 5 codes, the last cell being empty
+	private static boolean black(List<int[][]> matrices, int x, int y) {
+		int cell = (y / CELL) * 3 + x / CELL;
+		int margin = (CELL - 25*SCALE) / 2;
+		int col = (x % CELL - margin) / SCALE, row = (y % CELL - margin) / SCALE;
+		if (cell >= matrices.size() || x % CELL < margin || y % CELL < margin || col >= 25 || row >= 25) {
+			return false;
+		}
+		return matrices.get(cell)[col][row] == B;
+	}
+
+	private static byte[] pgm(SheetRenderer sheet) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		sheet.writePgm(Channels.newChannel(out));
+		return out.toByteArray();
+	}
+
+	@Test
+	void testPgm() throws IOException {
+		List<int[][]> matrices = qrCodes(5);
+		SheetRenderer sheet = new SheetRenderer(3, 2, CELL);
+		sheet.placeAll(matrices, SCALE);
+		sheet.render();
+
+		byte[] pgm = pgm(sheet);
+		String header = "P5\n270 180\n255\n";
+		assertEquals(header, new String(pgm, 0, header.length(), "US-ASCII"));
+		assertEquals(header.length() + 270*180, pgm.length);
+		for (int y = 0; y < 180; ++y) {
+			for (int x = 0; x < 270; ++x) {
+				assertEquals(black(matrices, x, y) ? 0 : 255, pgm[header.length() + y*270 + x] & 0xFF, "Pixel "+x+", "+y);
+			}
+		}
+	}
+
+	@Test
+	void testMappedPngAndPbm(@TempDir Path directory) throws IOException {
+		List<int[][]> matrices = qrCodes(5);
+		try (SheetRenderer sheet = new SheetRenderer(3, 2, CELL, directory.resolve("sheet.raw"))) {
+			sheet.placeAll(matrices, SCALE);
+			sheet.render();
+
+			SheetRenderer inMemory = new SheetRenderer(3, 2, CELL);
+			inMemory.placeAll(matrices, SCALE);
+			inMemory.render();
+			assertArrayEquals(pgm(inMemory), pgm(sheet));
+
+			ByteArrayOutputStream png = new ByteArrayOutputStream();
+			assertEquals(sheet.writePng(png, 9), png.size());
+			BufferedImage image = ImageIO.read(new ByteArrayInputStream(png.toByteArray()));
+			ByteArrayOutputStream pbm = new ByteArrayOutputStream();
+			sheet.writePbm(Channels.newChannel(pbm));
+			byte[] bits = pbm.toByteArray();
+			int offset = "P4\n270 180\n".length();
+			assertEquals(offset + 34*180, bits.length);
+
+			for (int y = 0; y < 180; ++y) {
+				for (int x = 0; x < 270; ++x) {
+					boolean black = black(matrices, x, y);
+					assertEquals(black ? B : 0xFF_FF_FF_FF, image.getRGB(x, y));
+					assertEquals(black, ((bits[offset + y*34 + x/8] >> (7 - x%8)) & 1) != 0);
+				}
+			}
+		}
+	}
+
+	@Test
+	void testPlacement() {
+		SheetRenderer sheet = new SheetRenderer(2, 2, 60);
+		int[][] matrix = qrCodes(1).get(0);
+		assertThrows(IllegalArgumentException.class, () -> sheet.place(matrix, 0, 0, 3));
+		assertThrows(IllegalArgumentException.class, () -> sheet.place(matrix, 2, 0, 2));
+		assertThrows(IllegalArgumentException.class, () -> sheet.placeAll(qrCodes(5), 2));
+	}
+
+	@Test
+	void testInvalidSheetKeepsTheFile(@TempDir Path directory) throws IOException {
+		Path raster = directory.resolve("raster.bin");
+		byte[] content = { 1, 2, 3 };
+		Files.write(raster, content);
+		assertThrows(IllegalArgumentException.class, () -> new SheetRenderer(0, 2, 100, raster));
+		assertThrows(IllegalArgumentException.class, () -> new SheetRenderer(2, 2, 0, raster));
+		assertArrayEquals(content, Files.readAllBytes(raster));
+	}
+
+}
@@ -0,0 +1,102 @@
+package qrcode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.junit.jupiter.api.Test;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+class StructuredAppendTest {
+
+	private static String repeat(String s, int times) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < times; ++i) {
+			builder.append(s);
+		}
+		return builder.toString();
+	}
+
+	@Test
+	void testAddStructuredAppend() {
+		int[] informations = { 0x41, 0x15, 0x07, 0x20 };
+		int[] res = DataEncoding.addStructuredAppend(informations, 2, 5, 0xAB);
+		int[] expected = { 0x32, 0x4A, 0xB4, 0x11, 0x50, 0x72, 0x00 };
+		assertArrayEquals(expected, res);
+	}
+
+	@Test
+	void testAddStructuredAppendTooManySymbols() {
+		assertThrows(IllegalArgumentException.class, () -> DataEncoding.addStructuredAppend(new int[2], 0, 17, 0));
+		assertThrows(IllegalArgumentException.class, () -> DataEncoding.addStructuredAppend(new int[2], 3, 3, 0));
+	}
+
+	@Test
+	void testSplitInput() {
+		// 49 bytes, a version 2-L symbol holds 32-2 bytes
+		int[][] chunks = StructuredAppend.splitInput(Fixtures.MESSAGE, CorrectionLvl.L, 2);
+		assertEquals(2, chunks.length);
+		assertEquals(25, chunks[0].length);
+		assertEquals(24, chunks[1].length);
+		assertEquals('P', chunks[0][0]);
+		assertEquals('.', chunks[1][23]);
+	}
+
+	@Test
+	void testSixteenFullSymbols() {
+		// a version 1-L symbol holds 17-2 bytes
+		String input = repeat("0123456789ABCDEF", 15);
+		List<int[][]> symbols = StructuredAppend.renderSymbols(input, CorrectionLvl.L, 1);
+		assertEquals(StructuredAppend.MAX_SYMBOLS, symbols.size());
+		StringBuilder decoded = new StringBuilder();
+		for (int[][] symbol : symbols) {
+			assertEquals(21, symbol.length);
+			decoded.append(QRCodeDecoder.decode(symbol));
+		}
+		assertEquals(input, decoded.toString());
+		assertThrows(IllegalArgumentException.class,
+				() -> StructuredAppend.splitInput(input + "!", CorrectionLvl.L, 1));
+
+		// the 16 bits length field of version 10
+		String full = repeat("x", QRCodeInfos.getMaxInputLength(10, CorrectionLvl.L) - 2);
+		List<int[][]> symbol = StructuredAppend.renderSymbols(full, CorrectionLvl.L, 10);
+		assertEquals(1, symbol.size());
+		assertEquals(full, QRCodeDecoder.decode(symbol.get(0)));
+	}
+
+	@Test
+	void testSplitInputTooLong() {
+		String input = repeat(Fixtures.MESSAGE, 20);
+		assertThrows(IllegalArgumentException.class, () -> StructuredAppend.splitInput(input, CorrectionLvl.L, 1));
+	}
+
+	@Test
+	void testRenderSymbolsInOrder() {
+		String input = repeat(Fixtures.MESSAGE, 3);
+		List<int[][]> symbols = StructuredAppend.renderSymbols(input, CorrectionLvl.M, 3);
+		int[][] chunks = StructuredAppend.splitInput(input, CorrectionLvl.M, 3);
+		assertEquals(chunks.length, symbols.size());
+		for (int i = 0; i < chunks.length; ++i) {
+			int version = StructuredAppend.symbolVersion(chunks[i].length, CorrectionLvl.M, 3);
+			assertEquals(QRCodeInfos.getMatrixSize(version), symbols.get(i).length);
+		}
+	}
+
+	@Test
+	void testWriteSymbols() {
+		String input = repeat(Fixtures.MESSAGE, 3);
+		ConcurrentMap<Integer, int[][]> written = new ConcurrentHashMap<>();
+		StructuredAppend.writeSymbols(input, CorrectionLvl.L, 2, (position, total, matrix) -> {
+			assertNull(written.put(position, matrix), "A symbol was written twice");
+		}).join();
+		List<int[][]> symbols = StructuredAppend.renderSymbols(input, CorrectionLvl.L, 2);
+		assertEquals(symbols.size(), written.size());
+		for (int i = 0; i < symbols.size(); ++i) {
+			assertArrayEquals(symbols.get(i), written.get(i));
+		}
+	}
+
+}
@@ -0,0 +1,151 @@
+package reedsolomon;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class ErrorCorrectionDecodingTest {
+
+	// data and error correction codewords of the version 1-L example of DataEncodingTest
+	private final int[] block = { 65, 21, 7, 38, 246, 119, 38, 22, 214, 214, 150, 230, 114, 6, 151, 50, 6, 18, 0,
+			143, 165, 236, 181, 112, 47, 93 };
+	private final int ecc = 7;
+
+	private static int[] randomBlock(Random random, int dataLength, int ecc) {
+		int[] data = new int[dataLength];
+		for (int i = 0; i < dataLength; ++i) {
+			data[i] = random.nextInt(256);
+		}
+		int[] errorCorrection = ErrorCorrectionEncoding.encode(data, ecc);
+		int[] res = new int[dataLength+ecc];
+		System.arraycopy(data, 0, res, 0, dataLength);
+		System.arraycopy(errorCorrection, 0, res, dataLength, ecc);
+		return res;
+	}
+
+	// damage count distinct codewords, the damaged positions are written to positions
+	private static void damage(Random random, int[] block, int count, int[] positions) {
+		boolean[] used = new boolean[block.length];
+		for (int i = 0; i < count;) {
+			int p = random.nextInt(block.length);
+			if (!used[p]) {
+				used[p] = true;
+				block[p] ^= 1+random.nextInt(255);
+				positions[i++] = p;
+			}
+		}
+	}
+
+	@Test
+	void testNoError() {
+		int[] copy = block.clone();
+		assertEquals(0, ErrorCorrectionDecoding.decode(copy, ecc));
+		assertArrayEquals(block, copy);
+	}
+
+	@Test
+	void testCorrectErrors() {
+		int[] damaged = block.clone();
+		damaged[0] = 0;
+		damaged[10] ^= 0xFF;
+		damaged[25] = 1;
+		assertEquals(3, ErrorCorrectionDecoding.decode(damaged, ecc));
+		assertArrayEquals(block, damaged);
+	}
+
+	@Test
+	void testTooManyErrors() {
+		int[] damaged = block.clone();
+		for (int i = 0; i < 6; ++i) {
+			damaged[3*i] ^= 0x55;
+		}
+		assertThrows(IllegalArgumentException.class, () -> ErrorCorrectionDecoding.decode(damaged, ecc));
+	}
+
+	@Test
+	void testCorrectErasures() {
+		// 7 erasures use all the error correction codewords, 3 errors could not be corrected
+		int[] damaged = block.clone();
+		int[] erasures = { 1, 4, 8, 9, 16, 20, 24 };
+		for (int p : erasures) {
+			damaged[p] = 0;
+		}
+		ErrorCorrectionDecoding.decode(damaged, ecc, erasures);
+		assertArrayEquals(block, damaged);
+	}
+
+	@Test
+	void testFaultInjection() {
+		Random random = new Random(32);
+		ErrorCorrectionDecoding decoder = new ErrorCorrectionDecoding(30);
+		int[] positions = new int[30];
+		for (int i = 0; i < 2000; ++i) {
+			int ecc = 2+random.nextInt(29);
+			int[] original = randomBlock(random, 1+random.nextInt(120), ecc);
+			int[] damaged = original.clone();
+			int erasures = random.nextInt(ecc+1);
+			int errors = random.nextInt((ecc-erasures)/2+1);
+			damage(random, damaged, erasures+errors, positions);
+			decoder.correct(damaged, ecc, positions, erasures);
+			assertArrayEquals(original, damaged, "Block "+i+": "+erasures+" erasures and "+errors+" errors");
+		}
+	}
+
+	@Test
+	void testCorrectAll() {
+		Random random = new Random(33);
+		int[][] blocks = new int[8][];
+		int[][] originals = new int[8][];
+		int[] positions = new int[10];
+		for (int i = 0; i < blocks.length; ++i) {
+			originals[i] = randomBlock(random, 40, 18);
+			blocks[i] = originals[i].clone();
+			damage(random, blocks[i], i, positions);
+		}
+		// the last block has too many errors
+		damage(random, blocks[7], 10, positions);
+
+		int[] corrected = new int[8];
+		assertEquals(1, new ErrorCorrectionDecoding(18).correctAll(blocks, 18, corrected));
+		for (int i = 0; i < 7; ++i) {
+			assertEquals(i, corrected[i]);
+			assertArrayEquals(originals[i], blocks[i]);
+		}
+		assertEquals(-1, corrected[7]);
+	}
+
+	@Test
+	void testCorrectAllErasures() {
+		Random random = new Random(34);
+		int[][] blocks = new int[4][];
+		int[][] originals = new int[4][];
+		int[][] erasures = new int[4][];
+		for (int i = 0; i < blocks.length; ++i) {
+			originals[i] = randomBlock(random, 40, 18);
+			blocks[i] = originals[i].clone();
+			// 2*4 errors and 2*i erasures, the last block being beyond the 18 codewords
+			int[] positions = new int[4 + 2*i + (i == 3 ? 5 : 0)];
+			damage(random, blocks[i], positions.length, positions);
+			erasures[i] = Arrays.copyOfRange(positions, 0, positions.length - 4);
+		}
+		erasures[0] = null;
+
+		int[] corrected = new int[4];
+		assertEquals(1, new ErrorCorrectionDecoding(18).correctAll(blocks, 18, erasures, corrected));
+		for (int i = 0; i < 3; ++i) {
+			assertEquals(4 + 2*i, corrected[i]);
+			assertArrayEquals(originals[i], blocks[i]);
+		}
+		assertEquals(-1, corrected[3]);
+	}
+
+	@Test
+	void testDecoderTooSmall() {
+		assertThrows(IllegalArgumentException.class, () -> new ErrorCorrectionDecoding(10).correct(block.clone(), 11));
+		assertThrows(IllegalArgumentException.class, () -> new ErrorCorrectionDecoding(0));
+	}
+
+}
@@ -0,0 +1,56 @@
+package reedsolomon;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class ErrorCorrectionEncodingTest {
+
+	@Test
+	void testBatchSameAsEncode() {
+		Random random = new Random(39);
+		// full and partial groups of 8 messages
+		for (int count : new int[] { 1, 7, 8, 13, 64 }) {
+			int length = 1+random.nextInt(60);
+			int ecc = 1+random.nextInt(30);
+			byte[] messages = new byte[count*length];
+			random.nextBytes(messages);
+			byte[] result = new byte[count*ecc];
+			ErrorCorrectionEncoding.encodeBatch(messages, count, length, ecc, result);
+
+			for (int m = 0; m < count; ++m) {
+				int[] message = new int[length];
+				for (int i = 0; i < length; ++i) {
+					message[i] = messages[i*count + m] & 0xFF;
+				}
+				int[] expected = ErrorCorrectionEncoding.encode(message, ecc);
+				for (int k = 0; k < ecc; ++k) {
+					assertEquals(expected[k], result[k*count + m] & 0xFF, count+" messages, message "+m+", ECC "+k);
+				}
+			}
+		}
+	}
+
+	@Test
+	void testBatchLeadingZeros() {
+		// a shorter message padded with a leading zero, next to another message
+		byte[] messages = { 0, 1, 65, 2, 21, 3, 7, 4 };
+		byte[] result = new byte[2*10];
+		ErrorCorrectionEncoding.encodeBatch(messages, 2, 4, 10, result);
+		int[] expected = ErrorCorrectionEncoding.encode(new int[] { 65, 21, 7 }, 10);
+		for (int k = 0; k < 10; ++k) {
+			assertEquals(expected[k], result[2*k] & 0xFF);
+		}
+	}
+
+	@Test
+	void testBatchTooSmall() {
+		assertThrows(IllegalArgumentException.class,
+				() -> ErrorCorrectionEncoding.encodeBatch(new byte[10], 4, 3, 5, new byte[20]));
+		assertThrows(IllegalArgumentException.class,
+				() -> ErrorCorrectionEncoding.encodeBatch(new byte[12], 4, 3, 0, new byte[20]));
+	}
+
+}